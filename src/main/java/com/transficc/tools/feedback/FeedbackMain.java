@@ -14,11 +14,15 @@ package com.transficc.tools.feedback;
 
 import java.io.File;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -26,21 +30,41 @@ import java.util.concurrent.TimeUnit;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.offbytwo.jenkins.JenkinsServer;
-import com.transficc.tools.feedback.ci.ContinuousIntegrationServer;
+import com.offbytwo.jenkins.client.JenkinsHttpClient;
+import com.transficc.tools.feedback.ci.AsyncContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.BlockingContinuousIntegrationServerAdapter;
+import com.transficc.tools.feedback.ci.BuildNotificationService;
+import com.transficc.tools.feedback.ci.CoalescingContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.JobMetadataCache;
+import com.transficc.tools.feedback.ci.JobNamespace;
 import com.transficc.tools.feedback.ci.JobService;
+import com.transficc.tools.feedback.ci.NamespacedContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.PollScheduler;
+import com.transficc.tools.feedback.ci.RateLimitedContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.RateLimiter;
+import com.transficc.tools.feedback.ci.ResilientContinuousIntegrationServer;
 import com.transficc.tools.feedback.ci.jenkins.JenkinsFacade;
+import com.transficc.tools.feedback.ci.jenkins.VertxJenkinsClient;
+import com.transficc.tools.feedback.ci.replay.RecordingContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.replay.ReplayingContinuousIntegrationServer;
 import com.transficc.tools.feedback.dao.IterationDao;
 import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.util.Counters;
 import com.transficc.tools.feedback.util.FeedbackProperties;
 import com.transficc.tools.feedback.util.LoggingThreadFactory;
+import com.transficc.tools.feedback.util.MonitoredExecutors;
 import com.transficc.tools.feedback.util.SafeSerialisation;
+import com.transficc.tools.feedback.web.messaging.ConflatingMessageQueue;
 import com.transficc.tools.feedback.web.messaging.JobUpdateSubscriber;
 import com.transficc.tools.feedback.web.messaging.MessageBus;
 import com.transficc.tools.feedback.web.routes.Routes;
 import com.transficc.tools.feedback.web.routes.WebSocketPublisher;
-import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
+import com.transficc.tools.feedback.web.routes.websocket.SessionRegistry;
 
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHeader;
 import org.flywaydb.core.Flyway;
 import org.h2.jdbcx.JdbcConnectionPool;
 import org.slf4j.Logger;
@@ -70,9 +94,6 @@ public class FeedbackMain
         final ClockService clockService = System::currentTimeMillis;
         final JobRepository jobRepository = new JobRepository(feedbackProperties.getJobsWithPriorities());
         final long startUpTime = clockService.currentTimeMillis();
-        final WebSocketPublisher webSocketPublisher = new WebSocketPublisher(vertx.eventBus(), safeSerialisation, clockService, jobRepository, startUpTime);
-        final JenkinsServer jenkins = createJenkinsServer(feedbackProperties);
-        final BlockingQueue<OutboundWebSocketFrame> messageQueue = new LinkedBlockingQueue<>();
 
         final JdbcConnectionPool dataSource = JdbcConnectionPool.create("jdbc:h2:~/data/feedback", "feedback", "");
 
@@ -80,34 +101,171 @@ public class FeedbackMain
         flyway.setDataSource(dataSource);
         flyway.migrate();
 
+        final Counters counters = new Counters();
+        final SessionRegistry sessionRegistry = new SessionRegistry(feedbackProperties.getSessionMaxPendingFrames(), safeSerialisation, counters);
+        final WebSocketPublisher webSocketPublisher = new WebSocketPublisher(sessionRegistry, vertx.eventBus(), safeSerialisation, clockService, jobRepository, startUpTime,
+                                                                             feedbackProperties.getSlowConsumerTimeoutMillis(), feedbackProperties.getReplayWindowSize(),
+                                                                             counters);
+        final ConflatingMessageQueue messageQueue = new ConflatingMessageQueue(feedbackProperties.getPublishBufferSize(), feedbackProperties.getPublishWaitStrategy(),
+                                                                               feedbackProperties.getPublishOverflowPolicy(), counters);
         final ThreadFactory threadFactory = new LoggingThreadFactory(SERVICE_NAME);
         final ExecutorService statusCheckerService = Executors.newFixedThreadPool(1, threadFactory);
-        final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(threadFactory);
-        statusCheckerService.submit(new JobUpdateSubscriber(messageQueue, webSocketPublisher));
+        statusCheckerService.submit(new JobUpdateSubscriber(messageQueue, webSocketPublisher, feedbackProperties.getPublishBatchSize(),
+                                                            feedbackProperties.getPublishBatchMillis(), clockService));
+        //The subscriber holds its thread for good, so how far publishing has fallen behind shows in the queue of frames rather than in the executor
+        counters.gauge("feedback.publishing.queued", messageQueue::size);
+        counters.gauge("feedback.publishing.capacity", messageQueue::capacity);
+        counters.gauge("feedback.sessions", sessionRegistry::size);
+        counters.gauge("feedback.sessions.pendingWrites", sessionRegistry::totalPendingWrites);
         final MessageBus messageBus = new MessageBus(messageQueue);
-        final ContinuousIntegrationServer ciServer = new JenkinsFacade(jenkins, clockService, feedbackProperties.getVersionControl());
-        final JobService jobService = new JobService(jobRepository, messageBus, scheduledExecutorService, ciServer, feedbackProperties.getMasterJobName());
-        final IterationRepository iterationRepository = new IterationRepository(messageBus, new IterationDao(dataSource));
-        Routes.setup(server, jobRepository, iterationRepository, new BreakingNewsService(messageBus), webSocketPublisher, Router.router(vertx), startUpTime);
+        final Map<String, BuildNotificationService> serverNameToNotificationService = new HashMap<>();
+        for (final FeedbackProperties jenkinsServerProperties : feedbackProperties.getJenkinsServers())
+        {
+            final String serverName = jenkinsServerProperties.getJenkinsServerName();
+            serverNameToNotificationService.put(serverName, startPolling(vertx, jenkinsServerProperties, clockService, jobRepository, messageBus, counters));
+        }
+        //A single thread keeps writes in the order they were made
+        final ExecutorService persistenceService = MonitoredExecutors.newFixedThreadPool("feedback.persistence", 1, counters);
+        final IterationRepository iterationRepository = new IterationRepository(messageBus, new IterationDao(dataSource), persistenceService);
+        Routes.setup(server, iterationRepository, new BreakingNewsService(messageBus), serverNameToNotificationService, counters, webSocketPublisher,
+                     Router.router(vertx), startUpTime);
 
-        scheduledExecutorService.scheduleAtFixedRate(jobService, 0, 5, TimeUnit.MINUTES);
         server.listen(feedbackProperties.getFeedbackPort());
     }
 
-    private static JenkinsServer createJenkinsServer(final FeedbackProperties feedbackProperties)
+    private static BuildNotificationService startPolling(final Vertx vertx,
+                                                         final FeedbackProperties jenkinsServerProperties,
+                                                         final ClockService clockService,
+                                                         final JobRepository jobRepository,
+                                                         final MessageBus messageBus,
+                                                         final Counters counters)
     {
-        final JenkinsServer jenkins;
-        final String jenkinsUrl = feedbackProperties.getJenkinsUrl();
-        if (feedbackProperties.getJenkinsUsername() == null)
+        //Every Jenkins server has its own threads, connections and circuit breaker so that an overloaded server cannot hold up polling of the others
+        final String serverName = jenkinsServerProperties.getJenkinsServerName();
+        final String metricName = serverName.isEmpty() ? "jenkins" : "jenkins." + serverName;
+        final JobNamespace namespace = new JobNamespace(serverName);
+        //Discovery walks every folder on the server, so it gets threads of its own rather than hold up status polls queued behind it
+        final ScheduledExecutorService scheduledExecutorService = MonitoredExecutors.newScheduledThreadPool(metricName + ".polling", jenkinsServerProperties.getPollingThreads(),
+                                                                                                            counters);
+        final ScheduledExecutorService discoveryExecutorService = MonitoredExecutors.newScheduledThreadPool(metricName + ".discovery",
+                                                                                                            jenkinsServerProperties.getDiscoveryThreads(),
+                                                                                                            counters);
+        final RateLimiter rateLimiter = new RateLimiter(jenkinsServerProperties.getRequestsPerSecond(), jenkinsServerProperties.getRequestBurst(), scheduledExecutorService,
+                                                        clockService);
+        final AsyncContinuousIntegrationServer resilientCiServer = new ResilientContinuousIntegrationServer(createContinuousIntegrationServer(vertx,
+                                                                                                                                           jenkinsServerProperties,
+                                                                                                                                           clockService,
+                                                                                                                                           metricName,
+                                                                                                                                           counters),
+                                                                                                           metricName,
+                                                                                                           jenkinsServerProperties.getBreakerFailureThreshold(),
+                                                                                                           jenkinsServerProperties.getBreakerOpenMillis(),
+                                                                                                           jenkinsServerProperties.getPollTimeoutMillis(),
+                                                                                                           scheduledExecutorService,
+                                                                                                           clockService,
+                                                                                                           counters);
+        //Only requests which reach Jenkins spend from the rate limit, so coalescing sits in front of it
+        final AsyncContinuousIntegrationServer rateLimitedCiServer = new RateLimitedContinuousIntegrationServer(resilientCiServer, rateLimiter);
+        final AsyncContinuousIntegrationServer coalescingCiServer = new CoalescingContinuousIntegrationServer(rateLimitedCiServer,
+                                                                                                              metricName,
+                                                                                                              jenkinsServerProperties.getCoalescingWindowMillis(),
+                                                                                                              scheduledExecutorService,
+                                                                                                              clockService,
+                                                                                                              counters);
+        final AsyncContinuousIntegrationServer ciServer = serverName.isEmpty() ? coalescingCiServer : new NamespacedContinuousIntegrationServer(coalescingCiServer, namespace);
+        final PollScheduler pollScheduler = new PollScheduler();
+        //Shared with notifications, which need to know the downstream jobs of a build pushed as complete
+        final JobMetadataCache jobMetadataCache = new JobMetadataCache(ciServer, jenkinsServerProperties.getJobMetadataTimeToLiveMillis(), clockService);
+        final JobService jobService = new JobService(jobRepository, messageBus, scheduledExecutorService, discoveryExecutorService, ciServer, jenkinsServerProperties.getMasterJobName(),
+                                                     jenkinsServerProperties.isBulkPolling(), jenkinsServerProperties.getPollBudgetMillis(),
+                                                     jobMetadataCache, jenkinsServerProperties.getDiscoveryRequests(), clockService,
+                                                     pollScheduler, namespace);
+        discoveryExecutorService.scheduleAtFixedRate(jobService, 0, 5, TimeUnit.MINUTES);
+        return new BuildNotificationService(jobRepository, messageBus, pollScheduler, clockService, namespace, jobMetadataCache);
+    }
+
+    private static AsyncContinuousIntegrationServer createContinuousIntegrationServer(final Vertx vertx,
+                                                                                      final FeedbackProperties feedbackProperties,
+                                                                                      final ClockService clockService,
+                                                                                      final String metricName,
+                                                                                      final Counters counters)
+    {
+        final Optional<Path> replayFile = feedbackProperties.getReplayFile();
+        if (replayFile.isPresent())
+        {
+            LOGGER.info("Replaying Jenkins traffic from {} at {} times the recorded speed", replayFile.get(), feedbackProperties.getReplaySpeed());
+            return new ReplayingContinuousIntegrationServer(replayFile.get(), feedbackProperties.getReplaySpeed(), clockService, feedbackProperties.getVersionControl());
+        }
+        final AsyncContinuousIntegrationServer jenkinsClient = createJenkinsClient(vertx, feedbackProperties, clockService, metricName, counters);
+        final Optional<Path> recordingFile = feedbackProperties.getRecordingFile();
+        if (recordingFile.isPresent())
+        {
+            LOGGER.info("Recording Jenkins traffic to {}", recordingFile.get());
+            return new RecordingContinuousIntegrationServer(jenkinsClient, recordingFile.get(), clockService);
+        }
+        return jenkinsClient;
+    }
+
+    private static AsyncContinuousIntegrationServer createJenkinsClient(final Vertx vertx,
+                                                                        final FeedbackProperties feedbackProperties,
+                                                                        final ClockService clockService,
+                                                                        final String metricName,
+                                                                        final Counters counters)
+    {
+        if (feedbackProperties.isBlockingJenkinsClient())
         {
-            jenkins = new JenkinsServer(URI.create(jenkinsUrl));
+            final JenkinsHttpClient jenkinsHttpClient = createJenkinsHttpClient(feedbackProperties);
+            final ExecutorService pollerService = createPollerService(feedbackProperties, metricName, counters);
+            return new BlockingContinuousIntegrationServerAdapter(new JenkinsFacade(jenkinsHttpClient, clockService, feedbackProperties.getVersionControl()),
+                                                                  pollerService);
         }
-        else
+        LOGGER.info("Connecting to Jenkins server at {}", feedbackProperties.getJenkinsUrl());
+        return new VertxJenkinsClient(vertx,
+                                      URI.create(feedbackProperties.getJenkinsUrl()),
+                                      feedbackProperties.getJenkinsUsername(),
+                                      feedbackProperties.getJenkinsPassword(),
+                                      feedbackProperties.getPollerThreads(),
+                                      feedbackProperties.getPollTimeoutMillis(),
+                                      clockService,
+                                      feedbackProperties.getVersionControl());
+    }
+
+    private static ExecutorService createPollerService(final FeedbackProperties feedbackProperties, final String metricName, final Counters counters)
+    {
+        if (feedbackProperties.isVirtualThreads())
+        {
+            //A blocked virtual thread costs next to nothing, so each fetch gets its own; the connection pool still bounds how many reach Jenkins at once
+            final Optional<ExecutorService> virtualThreads = MonitoredExecutors.newVirtualThreadPerTaskExecutor();
+            if (virtualThreads.isPresent())
+            {
+                return virtualThreads.get();
+            }
+            LOGGER.warn("Virtual threads are not supported by this Java runtime, falling back to {} poller threads", feedbackProperties.getPollerThreads());
+        }
+        return MonitoredExecutors.newFixedThreadPool(metricName + ".poller", feedbackProperties.getPollerThreads(), counters);
+    }
+
+    private static JenkinsHttpClient createJenkinsHttpClient(final FeedbackProperties feedbackProperties)
+    {
+        final String jenkinsUrl = feedbackProperties.getJenkinsUrl();
+        final int pollTimeoutMillis = feedbackProperties.getPollTimeoutMillis();
+        //The default connection pool only allows two connections per route, which would serialise the poller threads
+        final HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
+                .setMaxConnPerRoute(feedbackProperties.getPollerThreads())
+                .setMaxConnTotal(feedbackProperties.getPollerThreads())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                                                 .setConnectTimeout(pollTimeoutMillis)
+                                                 .setConnectionRequestTimeout(pollTimeoutMillis)
+                                                 .setSocketTimeout(pollTimeoutMillis)
+                                                 .build());
+        if (feedbackProperties.getJenkinsUsername() != null)
         {
-            jenkins = new JenkinsServer(URI.create(jenkinsUrl), feedbackProperties.getJenkinsUsername(), feedbackProperties.getJenkinsPassword());
+            final String credentials = feedbackProperties.getJenkinsUsername() + ":" + feedbackProperties.getJenkinsPassword();
+            httpClientBuilder.setDefaultHeaders(Collections.singletonList(
+                    new BasicHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))));
         }
         LOGGER.info("Connecting to Jenkins server at {}", jenkinsUrl);
-        return jenkins;
+        return new JenkinsHttpClient(URI.create(jenkinsUrl), httpClientBuilder);
     }
 
 }
@@ -12,6 +12,8 @@
  */
 package com.transficc.tools.feedback;
 
+import java.util.concurrent.Executor;
+
 import com.transficc.tools.feedback.dao.IterationDao;
 import com.transficc.tools.feedback.web.messaging.MessageBus;
 
@@ -19,13 +21,15 @@ public class IterationRepository
 {
     private final MessageBus messageBus;
     private final IterationDao iterationDao;
+    private final Executor persistenceExecutor;
     //TODO: get the iteration value persisted
     private volatile String iteration = "it1";
 
-    public IterationRepository(final MessageBus messageBus, final IterationDao iterationDao)
+    public IterationRepository(final MessageBus messageBus, final IterationDao iterationDao, final Executor persistenceExecutor)
     {
         this.messageBus = messageBus;
         this.iterationDao = iterationDao;
+        this.persistenceExecutor = persistenceExecutor;
         this.iteration = iterationDao.getIteration();
     }
 
@@ -36,7 +40,9 @@ public class IterationRepository
 
     public void iteration(final String iteration)
     {
-        this.iteration = iterationDao.updateIteration(iteration);
+        //Called from the event loop, which must not wait on the database
+        this.iteration = iteration;
         messageBus.iterationUpdate(iteration);
+        persistenceExecutor.execute(() -> iterationDao.updateIteration(iteration));
     }
 }
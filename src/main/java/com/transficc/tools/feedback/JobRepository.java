@@ -52,6 +52,11 @@ public class JobRepository implements JobStatusSnapshot
         return jobNameToJob.containsKey(jobName);
     }
 
+    public FeedbackJob getJob(final String jobName)
+    {
+        return jobNameToJob.get(jobName);
+    }
+
     public void add(final FeedbackJob job)
     {
         jobNameToJob.put(job.getName(), job);
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+
+/**
+ * A {@link ContinuousIntegrationServer} which does not block the calling thread. Each request completes with the same status codes the blocking
+ * variant returns, so callers handle a missing job (404) or a job which has never been built (400) in the same way.
+ */
+public interface AsyncContinuousIntegrationServer
+{
+    CompletableFuture<Result<Integer, Folder>> getFolder(String folderName);
+
+    CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(String jobName, JobStatus previousJobStatus);
+
+    CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(Map<String, JobStatus> previousJobStatuses);
+
+    CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(Collection<String> jobNames);
+
+    CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue();
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class BlockingContinuousIntegrationServerAdapter implements AsyncContinuousIntegrationServer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockingContinuousIntegrationServerAdapter.class);
+    private final ContinuousIntegrationServer continuousIntegrationServer;
+    private final Executor executor;
+
+    public BlockingContinuousIntegrationServerAdapter(final ContinuousIntegrationServer continuousIntegrationServer, final Executor executor)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        return submit(() -> continuousIntegrationServer.getFolder(folderName));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        return submit(() -> continuousIntegrationServer.getLatestBuildInformation(jobName, previousJobStatus));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        return submit(() -> continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        return submit(() -> continuousIntegrationServer.getAllJobMetadata(jobNames));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return submit(continuousIntegrationServer::getQueue);
+    }
+
+    private <T> CompletableFuture<Result<Integer, T>> submit(final Supplier<Result<Integer, T>> request)
+    {
+        final CompletableFuture<Result<Integer, T>> response = new CompletableFuture<>();
+        final FutureTask<Void> task = new FutureTask<>(() ->
+                                                       {
+                                                           try
+                                                           {
+                                                               response.complete(request.get());
+                                                           }
+                                                           catch (final RuntimeException e)
+                                                           {
+                                                               response.completeExceptionally(e);
+                                                           }
+                                                       }, null);
+        //A request given up on whilst still queued never reaches the CI server, and one already running is interrupted
+        response.whenComplete((result, throwable) ->
+                              {
+                                  if (response.isCancelled())
+                                  {
+                                      task.cancel(true);
+                                  }
+                              });
+        try
+        {
+            executor.execute(task);
+            return response;
+        }
+        catch (final RejectedExecutionException e)
+        {
+            LOGGER.error("Unable to schedule a request to the CI server", e);
+            return CompletableFuture.completedFuture(Result.error(500));
+        }
+    }
+}
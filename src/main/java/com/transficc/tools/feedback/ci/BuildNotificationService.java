@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.web.messaging.MessageBus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BuildNotificationService
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BuildNotificationService.class);
+    private final JobRepository jobRepository;
+    private final MessageBus messageBus;
+    private final PollScheduler pollScheduler;
+    private final ClockService clockService;
+    private final JobNamespace namespace;
+    private final JobMetadataCache jobMetadataCache;
+
+    public BuildNotificationService(final JobRepository jobRepository,
+                                    final MessageBus messageBus,
+                                    final PollScheduler pollScheduler,
+                                    final ClockService clockService,
+                                    final JobNamespace namespace,
+                                    final JobMetadataCache jobMetadataCache)
+    {
+        this.jobRepository = jobRepository;
+        this.messageBus = messageBus;
+        this.pollScheduler = pollScheduler;
+        this.clockService = clockService;
+        this.namespace = namespace;
+        this.jobMetadataCache = jobMetadataCache;
+    }
+
+    /**
+     * @param jobName the name of the job on the CI server which sent the notification
+     * @param jobStatus the outcome of the build, or null if it is not known
+     * @return false if the job is not known to feedback
+     */
+    public boolean onBuildNotification(final String jobName, final int buildNumber, final boolean building, final JobStatus jobStatus, final String revision)
+    {
+        final FeedbackJob job = jobRepository.getJob(namespace.qualify(jobName));
+        if (job == null)
+        {
+            LOGGER.debug("Ignoring notification for unknown job: {}", jobName);
+            return false;
+        }
+        final long currentTime = clockService.currentTimeMillis();
+        final JobStatus newJobStatus = building ? JobStatus.BUILDING : jobStatus == null ? job.getJobStatus() : jobStatus;
+        if (job.wasNotified(buildNumber, newJobStatus, building, revision, currentTime))
+        {
+            messageBus.sendUpdate(job);
+            if (job.hasJustCompleted())
+            {
+                DownstreamJobs.pollSoon(jobMetadataCache.get(job.getName()), jobRepository, pollScheduler, currentTime);
+            }
+        }
+        pollScheduler.onNotification(job, currentTime);
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.util.Counters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens after a run of consecutive failures so callers fail fast rather than queue up behind a degraded CI server. Once the open period has
+ * elapsed a single probe is let through: if it succeeds the breaker closes, otherwise it opens again. Each call let through is given a permit for
+ * the state it was let through in, so the outcome of a call made before the breaker last changed state, such as a late response from the run of
+ * failures which opened it, is ignored.
+ */
+final class CircuitBreaker
+{
+    static final long REJECTED = -1;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final ClockService clockService;
+    private final Counters counters;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long generation;
+
+    CircuitBreaker(final String name, final int failureThreshold, final long openMillis, final ClockService clockService, final Counters counters)
+    {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clockService = clockService;
+        this.counters = counters;
+    }
+
+    /**
+     * A permit to pass to {@link #onSuccess} or {@link #onFailure} once the call completes, or {@link #REJECTED} if the call should fail fast.
+     */
+    synchronized long tryAcquire()
+    {
+        switch (state)
+        {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (clockService.currentTimeMillis() - openedAt >= openMillis)
+                {
+                    transitionTo(State.HALF_OPEN);
+                    return generation;
+                }
+                break;
+            case HALF_OPEN:
+            default:
+                //Only the probe is let through whilst half open
+                break;
+        }
+        counters.increment(name + ".breaker.rejected");
+        return REJECTED;
+    }
+
+    synchronized void onSuccess(final long permit)
+    {
+        if (permit != generation)
+        {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN)
+        {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    synchronized void onFailure(final long permit)
+    {
+        if (permit != generation)
+        {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)
+        {
+            openedAt = clockService.currentTimeMillis();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(final State newState)
+    {
+        if (newState == State.CLOSED)
+        {
+            LOGGER.info("Circuit breaker for {} moved from {} to {}", name, state, newState);
+        }
+        else
+        {
+            LOGGER.warn("Circuit breaker for {} moved from {} to {} after {} consecutive failures", name, state, newState, consecutiveFailures);
+        }
+        counters.increment(name + ".breaker." + newState.name().toLowerCase());
+        state = newState;
+        generation++;
+    }
+
+    private enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.util.Counters;
+
+/**
+ * Shares one request to the CI server between every caller asking the same question at the same time, such as discovery and polling both wanting
+ * a job or a folder. Answers are also kept for a short window afterwards, so a burst of identical requests only reaches the CI server
+ * once. The window should be kept shorter than the shortest poll interval, otherwise a poll could be answered with the previous poll's result.
+ */
+public final class CoalescingContinuousIntegrationServer implements AsyncContinuousIntegrationServer
+{
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final String name;
+    private final long cacheMillis;
+    private final ScheduledExecutorService timer;
+    private final ClockService clockService;
+    private final Counters counters;
+    private final Map<Object, CompletableFuture<?>> keyToRequestInFlight = new ConcurrentHashMap<>();
+    private final Map<Object, CachedResult> keyToCachedResult = new ConcurrentHashMap<>();
+
+    public CoalescingContinuousIntegrationServer(final AsyncContinuousIntegrationServer continuousIntegrationServer,
+                                                 final String name,
+                                                 final long cacheMillis,
+                                                 final ScheduledExecutorService timer,
+                                                 final ClockService clockService,
+                                                 final Counters counters)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.name = name;
+        this.cacheMillis = cacheMillis;
+        this.timer = timer;
+        this.clockService = clockService;
+        this.counters = counters;
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        return coalesce(Arrays.asList("folder", folderName), () -> continuousIntegrationServer.getFolder(folderName));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        //The previous status decides the status reported for an unrecognised result, so it is part of the question
+        return coalesce(Arrays.asList("build", jobName, previousJobStatus), () -> continuousIntegrationServer.getLatestBuildInformation(jobName, previousJobStatus));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        return coalesce(Arrays.asList("builds", previousJobStatuses), () -> continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        return coalesce(Arrays.asList("metadata", new HashSet<>(jobNames)), () -> continuousIntegrationServer.getAllJobMetadata(jobNames));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return coalesce("queue", continuousIntegrationServer::getQueue);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<Result<Integer, T>> coalesce(final Object key, final Supplier<CompletableFuture<Result<Integer, T>>> request)
+    {
+        final CachedResult cachedResult = keyToCachedResult.get(key);
+        if (cachedResult != null && clockService.currentTimeMillis() - cachedResult.completedAt < cacheMillis)
+        {
+            counters.increment(name + ".requests.cached");
+            return CompletableFuture.completedFuture((Result<Integer, T>)cachedResult.result);
+        }
+        final CompletableFuture<Result<Integer, T>> response = new CompletableFuture<>();
+        final CompletableFuture<?> requestInFlight = keyToRequestInFlight.putIfAbsent(key, response);
+        if (requestInFlight != null)
+        {
+            counters.increment(name + ".requests.coalesced");
+            //Each caller gets its own future, so none of them can complete it for the others
+            return ((CompletableFuture<Result<Integer, T>>)requestInFlight).thenApply(result -> result);
+        }
+        try
+        {
+            request.get().whenComplete((result, throwable) ->
+                                       {
+                                           keyToRequestInFlight.remove(key, response);
+                                           if (throwable == null)
+                                           {
+                                               cache(key, result);
+                                               response.complete(result);
+                                           }
+                                           else
+                                           {
+                                               response.completeExceptionally(throwable);
+                                           }
+                                       });
+        }
+        catch (final RuntimeException e)
+        {
+            keyToRequestInFlight.remove(key, response);
+            response.completeExceptionally(e);
+        }
+        return response.thenApply(result -> result);
+    }
+
+    private <T> void cache(final Object key, final Result<Integer, T> result)
+    {
+        //Failures, and requests the rate limit turned away, are left for the next request to retry, but a missing or never built job is as much an
+        //answer as a build
+        result.consume(statusCode ->
+                       {
+                           if (statusCode < 500 && statusCode != RateLimitedContinuousIntegrationServer.RATE_LIMITED)
+                           {
+                               cache(key, new CachedResult(result, clockService.currentTimeMillis()));
+                           }
+                       },
+                       value -> cache(key, new CachedResult(result, clockService.currentTimeMillis())));
+    }
+
+    private void cache(final Object key, final CachedResult cachedResult)
+    {
+        if (cacheMillis <= 0)
+        {
+            return;
+        }
+        keyToCachedResult.put(key, cachedResult);
+        //Bulk requests are keyed by everything they asked about, so expired results are removed rather than left to be overwritten
+        timer.schedule(() -> keyToCachedResult.remove(key, cachedResult), cacheMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class CachedResult
+    {
+        private final Result<Integer, ?> result;
+        private final long completedAt;
+
+        private CachedResult(final Result<Integer, ?> result, final long completedAt)
+        {
+            this.result = result;
+            this.completedAt = completedAt;
+        }
+    }
+}
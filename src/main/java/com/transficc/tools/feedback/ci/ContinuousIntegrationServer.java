@@ -1,15 +1,40 @@
 package com.transficc.tools.feedback.ci;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.transficc.functionality.Result;
-import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
 import com.transficc.tools.feedback.domain.JobStatus;
 import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
 
 public interface ContinuousIntegrationServer
 {
-    Result<Integer, List<Job>> getAllJobs();
+    /**
+     * Lists the jobs and folders directly within a folder. The top level is the folder named "", and everything nested is named by its full path,
+     * e.g. team/project/master.
+     */
+    Result<Integer, Folder> getFolder(String folderName);
 
     Result<Integer, LatestBuildInformation> getLatestBuildInformation(String jobName, JobStatus previousJobStatus);
+
+    /**
+     * Fetches the latest build information for every job in a single request. Jobs which exist but have never been built are mapped to an error of 400,
+     * jobs which no longer exist are absent from the result.
+     */
+    Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> getAllLatestBuildInformation(Map<String, JobStatus> previousJobStatuses);
+
+    /**
+     * Fetches the slow changing details of the given jobs in a single request, for polling their latest builds without asking for them every time.
+     * Jobs which no longer exist are absent from the result.
+     */
+    Result<Integer, Map<String, JobMetadata>> getAllJobMetadata(Collection<String> jobNames);
+
+    /**
+     * Lists the builds waiting in the queue, so jobs which are about to start building can be polled before their build shows up.
+     */
+    Result<Integer, List<QueuedBuild>> getQueue();
 }
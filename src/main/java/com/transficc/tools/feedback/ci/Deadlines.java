@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+final class Deadlines
+{
+    private Deadlines()
+    {
+    }
+
+    /**
+     * Completes with the outcome of the given future, or with the fallback if it has not completed within the timeout. The given future is left
+     * to complete in its own time, for when it is shared with other callers who may still want its outcome.
+     */
+    static <T> CompletableFuture<T> within(final CompletableFuture<T> future, final long timeoutMillis, final ScheduledExecutorService timer, final T fallback)
+    {
+        return within(future, timeoutMillis, timer, fallback, false);
+    }
+
+    /**
+     * As {@link #within}, but cancels the given future once the deadline has passed, so whatever was going to complete it can stop. The result
+     * still completes with the fallback if the given future is cancelled by anything else.
+     */
+    static <T> CompletableFuture<T> withinOrCancel(final CompletableFuture<T> future, final long timeoutMillis, final ScheduledExecutorService timer, final T fallback)
+    {
+        return within(future, timeoutMillis, timer, fallback, true);
+    }
+
+    private static <T> CompletableFuture<T> within(final CompletableFuture<T> future,
+                                                   final long timeoutMillis,
+                                                   final ScheduledExecutorService timer,
+                                                   final T fallback,
+                                                   final boolean cancelOnTimeout)
+    {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final ScheduledFuture<?> timeout = timer.schedule(() ->
+                                                          {
+                                                              //Cancelled before the caller hears of it, so nothing it does next can race what was cancelled
+                                                              if (cancelOnTimeout)
+                                                              {
+                                                                  future.cancel(true);
+                                                              }
+                                                              result.complete(fallback);
+                                                          }, timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, throwable) ->
+                            {
+                                if (throwable == null)
+                                {
+                                    timeout.cancel(false);
+                                    result.complete(value);
+                                }
+                                else if (!(cancelOnTimeout && future.isCancelled()))
+                                {
+                                    timeout.cancel(false);
+                                    result.completeExceptionally(throwable);
+                                }
+                            });
+        return result;
+    }
+}
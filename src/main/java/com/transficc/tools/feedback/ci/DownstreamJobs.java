@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.domain.JobMetadata;
+
+final class DownstreamJobs
+{
+    private DownstreamJobs()
+    {
+    }
+
+    /**
+     * Brings forward the next poll of each job downstream of one whose build has just completed, as that build will have triggered them, whether
+     * the completion was polled or pushed by the CI server.
+     */
+    static void pollSoon(final JobMetadata jobMetadata, final JobRepository jobRepository, final PollScheduler pollScheduler, final long currentTime)
+    {
+        for (final String downstreamJobName : jobMetadata.getDownstreamJobNames())
+        {
+            final FeedbackJob downstreamJob = jobRepository.getJob(downstreamJobName);
+            if (downstreamJob != null)
+            {
+                pollScheduler.onUpstreamCompleted(downstreamJob, currentTime);
+            }
+        }
+    }
+}
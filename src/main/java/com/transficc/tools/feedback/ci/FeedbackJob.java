@@ -1,41 +1,177 @@
 package com.transficc.tools.feedback.ci;
 
 import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
 import com.transficc.tools.feedback.domain.JobStatus;
 import com.transficc.tools.feedback.domain.LatestBuildInformation;
 import com.transficc.tools.feedback.web.messaging.PublishableJob;
 
+/**
+ * Build information for a job can arrive concurrently from polls and from notifications pushed by the CI server, so access to the underlying job is
+ * serialised, and anything describing an older build than the one already seen is discarded.
+ */
 public class FeedbackJob
 {
     private final boolean shouldDisplayCommentsForJob;
     private final int priority;
-    private final Job job;
+    private final String name;
+    private Job job;
+    private int lastCompletedBuildNumber = -1;
+    private LatestBuildInformation lastPolledBuildInformation;
+    private boolean stale;
+    private long queuedSince;
+    private long queueWaitMillis;
 
     public FeedbackJob(final boolean shouldDisplayCommentsForJob, final int priority, final Job job)
     {
         this.shouldDisplayCommentsForJob = shouldDisplayCommentsForJob;
         this.priority = priority;
+        this.name = job.getName();
         this.job = job;
     }
 
     public String getName()
     {
-        return job.getName();
+        return name;
     }
 
-    public JobStatus getJobStatus()
+    public synchronized String getUrl()
+    {
+        return job.getUrl();
+    }
+
+    /**
+     * Points the job at a new URL without losing what is known about its builds, so that it carries on being shown as it was until it is next polled.
+     */
+    public synchronized void moveTo(final String url)
+    {
+        job = job.movedTo(url);
+    }
+
+    public synchronized JobStatus getJobStatus()
     {
         return job.getJobStatus();
     }
 
-    public PublishableJob createPublishable()
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    public synchronized boolean isBuilding()
+    {
+        return job.isBuilding();
+    }
+
+    /**
+     * Whether the last update seen was a build completing.
+     */
+    public synchronized boolean hasJustCompleted()
+    {
+        return job.hasJustCompleted();
+    }
+
+    public synchronized long getLastBuildTimestamp()
+    {
+        return job.getTimestamp();
+    }
+
+    public synchronized PublishableJob createPublishable()
+    {
+        return job.createPublishable(priority, shouldDisplayCommentsForJob, stale, queuedSince, queueWaitMillis);
+    }
+
+    public synchronized boolean isQueued()
+    {
+        return queuedSince > 0;
+    }
+
+    /**
+     * Records whether the job has a build waiting in the CI server's queue, and how long the last one waited once it leaves.
+     *
+     * @param inQueueSince when the waiting build joined the queue, or 0 if there is none
+     * @return true if the job's queued state changed
+     */
+    public synchronized boolean wasQueued(final long inQueueSince, final long currentTimeMillis)
+    {
+        if (inQueueSince == queuedSince)
+        {
+            return false;
+        }
+        if (queuedSince > 0 && inQueueSince == 0)
+        {
+            queueWaitMillis = Math.max(0, currentTimeMillis - queuedSince);
+        }
+        queuedSince = inQueueSince;
+        return true;
+    }
+
+    /**
+     * Flags the job's build information as out of date because the CI server could not be reached.
+     *
+     * @return true if the job was not already stale
+     */
+    public synchronized boolean markStale()
+    {
+        final boolean wasStale = stale;
+        stale = true;
+        return !wasStale;
+    }
+
+    public synchronized boolean wasUpdated(final LatestBuildInformation latestBuildInformation)
+    {
+        final boolean wasStale = stale;
+        stale = false;
+        if (isOutOfOrder(latestBuildInformation.getNumber(), latestBuildInformation.isBuilding()))
+        {
+            return wasStale;
+        }
+        onBuildObserved(latestBuildInformation.getNumber(), latestBuildInformation.isBuilding());
+        return job.wasUpdated(latestBuildInformation) || wasStale;
+    }
+
+    /**
+     * Applies a polled build, filling in whatever depends on the job's metadata, which is polled separately and far less often.
+     */
+    public synchronized boolean wasUpdated(final LatestBuildInformation latestBuildInformation, final JobMetadata jobMetadata, final long currentTimeMillis)
+    {
+        lastPolledBuildInformation = latestBuildInformation;
+        return wasUpdated(jobMetadata.complete(latestBuildInformation, currentTimeMillis));
+    }
+
+    /**
+     * Completes the last polled build again with metadata which arrived after it, unless a newer build has been seen since.
+     */
+    public synchronized boolean wasMetadataUpdated(final JobMetadata jobMetadata, final long currentTimeMillis)
+    {
+        if (lastPolledBuildInformation == null || lastPolledBuildInformation.getNumber() != job.getBuildNumber())
+        {
+            return false;
+        }
+        return job.wasUpdated(jobMetadata.complete(lastPolledBuildInformation, currentTimeMillis));
+    }
+
+    public synchronized boolean wasNotified(final int buildNumber, final JobStatus jobStatus, final boolean building, final String revision, final long timestamp)
+    {
+        if (isOutOfOrder(buildNumber, building))
+        {
+            return false;
+        }
+        onBuildObserved(buildNumber, building);
+        return job.wasNotified(buildNumber, jobStatus, building, revision, timestamp);
+    }
+
+    private boolean isOutOfOrder(final int buildNumber, final boolean building)
     {
-        return job.createPublishable(priority, shouldDisplayCommentsForJob);
+        return buildNumber < job.getBuildNumber() || (building && buildNumber == lastCompletedBuildNumber);
     }
 
-    public boolean wasUpdated(final LatestBuildInformation latestBuildInformation)
+    private void onBuildObserved(final int buildNumber, final boolean building)
     {
-        return job.wasUpdated(latestBuildInformation);
+        if (!building)
+        {
+            lastCompletedBuildNumber = Math.max(lastCompletedBuildNumber, buildNumber);
+        }
     }
 
 }
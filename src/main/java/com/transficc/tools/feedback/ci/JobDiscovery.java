@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.Job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds every job on a CI server by walking its folders, listing a bounded number of folders at a time. A folder whose marker has not changed
+ * since the last walk is not listed again, the jobs found in it last time are used instead. A marker is a hash of the names of the folder's
+ * children and grandchildren only, so a job or folder added, removed or renamed three or more levels below a folder, or a change which leaves
+ * every name as it was, such as a job's URL, is not seen until the next full walk. Every {@link #FULL_WALK_INTERVAL} walks each folder is listed
+ * regardless, which with a walk every five minutes means such changes can take up to an hour to show.
+ */
+final class JobDiscovery
+{
+    static final int FULL_WALK_INTERVAL = 12;
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobDiscovery.class);
+    private static final String ROOT_FOLDER = "";
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final int maxConcurrentRequests;
+    private final AtomicInteger walksSinceFullWalk = new AtomicInteger(FULL_WALK_INTERVAL);
+    private volatile Map<String, ListedFolder> folderNameToListedFolder = new HashMap<>();
+
+    JobDiscovery(final AsyncContinuousIntegrationServer continuousIntegrationServer, final int maxConcurrentRequests)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Completes with every job on the CI server, or with the status code received when listing the top level folder failed.
+     */
+    CompletableFuture<Result<Integer, List<Job>>> discover()
+    {
+        final boolean fullWalk = walksSinceFullWalk.incrementAndGet() >= FULL_WALK_INTERVAL;
+        if (fullWalk)
+        {
+            walksSinceFullWalk.set(0);
+        }
+        return new Walk(fullWalk, folderNameToListedFolder).start();
+    }
+
+    private final class Walk
+    {
+        private final boolean fullWalk;
+        private final Map<String, ListedFolder> previouslyListedFolders;
+        private final Map<String, ListedFolder> listedFolders = new HashMap<>();
+        private final Deque<FolderToList> foldersToList = new ArrayDeque<>();
+        private final List<Job> jobs = new ArrayList<>();
+        private final CompletableFuture<Result<Integer, List<Job>>> result = new CompletableFuture<>();
+        private int requestsInFlight;
+        private Integer rootStatusCode;
+        private int foldersListed;
+        private boolean finished;
+
+        private Walk(final boolean fullWalk, final Map<String, ListedFolder> previouslyListedFolders)
+        {
+            this.fullWalk = fullWalk;
+            this.previouslyListedFolders = previouslyListedFolders;
+        }
+
+        private CompletableFuture<Result<Integer, List<Job>>> start()
+        {
+            synchronized (this)
+            {
+                //The top level folder has no marker of its own, so is always listed
+                foldersToList.add(new FolderToList(ROOT_FOLDER, null));
+            }
+            listMoreFolders();
+            return result;
+        }
+
+        private void listMoreFolders()
+        {
+            final List<FolderToList> batch = new ArrayList<>();
+            final boolean finishing;
+            synchronized (this)
+            {
+                while (requestsInFlight < maxConcurrentRequests && !foldersToList.isEmpty())
+                {
+                    batch.add(foldersToList.poll());
+                    requestsInFlight++;
+                }
+                finishing = !finished && requestsInFlight == 0 && foldersToList.isEmpty();
+                finished |= finishing;
+            }
+            if (finishing)
+            {
+                finish();
+            }
+            for (final FolderToList folderToList : batch)
+            {
+                list(folderToList.folderName).whenComplete((folder, throwable) ->
+                                                           {
+                                                               onFolderListed(folderToList, throwable == null ? folder : Result.error(500));
+                                                               listMoreFolders();
+                                                           });
+            }
+        }
+
+        private CompletableFuture<Result<Integer, Folder>> list(final String folderName)
+        {
+            try
+            {
+                return continuousIntegrationServer.getFolder(folderName);
+            }
+            catch (final RuntimeException e)
+            {
+                //Treated like a failed listing, so that the request is still given back and the walk still finishes
+                LOGGER.error("An exception occurred whilst trying to list the jobs in {}", folderName, e);
+                final CompletableFuture<Result<Integer, Folder>> failedListing = new CompletableFuture<>();
+                failedListing.completeExceptionally(e);
+                return failedListing;
+            }
+        }
+
+        private synchronized void onFolderListed(final FolderToList folderToList, final Result<Integer, Folder> folder)
+        {
+            requestsInFlight--;
+            folder.consume(statusCode -> onFolderNotListed(folderToList, statusCode),
+                           listedFolder ->
+                           {
+                               foldersListed++;
+                               add(folderToList.folderName, new ListedFolder(folderToList.marker, listedFolder));
+                           });
+        }
+
+        private void onFolderNotListed(final FolderToList folderToList, final int statusCode)
+        {
+            if (ROOT_FOLDER.equals(folderToList.folderName))
+            {
+                rootStatusCode = statusCode;
+                return;
+            }
+            final ListedFolder previouslyListedFolder = previouslyListedFolders.get(folderToList.folderName);
+            LOGGER.warn("Received status code {} when trying to list the jobs in {}", statusCode, folderToList.folderName);
+            //Rather than lose the jobs in the folder until the next walk, assume nothing in it has changed
+            if (previouslyListedFolder != null)
+            {
+                add(folderToList.folderName, previouslyListedFolder);
+            }
+        }
+
+        private void add(final String folderName, final ListedFolder listedFolder)
+        {
+            listedFolders.put(folderName, listedFolder);
+            jobs.addAll(listedFolder.folder.getJobs());
+            listedFolder.folder.getFolderNameToMarker().forEach((nestedFolderName, marker) ->
+                                                                {
+                                                                    final ListedFolder previouslyListedFolder = previouslyListedFolders.get(nestedFolderName);
+                                                                    //An unchanged marker only vouches for the two levels below the folder, the levels under
+                                                                    //those are reused as they were until the next full walk
+                                                                    if (!fullWalk && previouslyListedFolder != null && marker.equals(previouslyListedFolder.marker))
+                                                                    {
+                                                                        add(nestedFolderName, previouslyListedFolder);
+                                                                    }
+                                                                    else
+                                                                    {
+                                                                        foldersToList.add(new FolderToList(nestedFolderName, marker));
+                                                                    }
+                                                                });
+        }
+
+        private void finish()
+        {
+            final Result<Integer, List<Job>> jobsFound;
+            synchronized (this)
+            {
+                if (rootStatusCode != null)
+                {
+                    jobsFound = Result.error(rootStatusCode);
+                }
+                else
+                {
+                    folderNameToListedFolder = listedFolders;
+                    LOGGER.debug("Found {} jobs in {} folders, {} of which were listed", jobs.size(), listedFolders.size(), foldersListed);
+                    jobsFound = Result.success(jobs);
+                }
+            }
+            result.complete(jobsFound);
+        }
+    }
+
+    private static final class FolderToList
+    {
+        private final String folderName;
+        private final String marker;
+
+        private FolderToList(final String folderName, final String marker)
+        {
+            this.folderName = folderName;
+            this.marker = marker;
+        }
+    }
+
+    private static final class ListedFolder
+    {
+        private final String marker;
+        private final Folder folder;
+
+        private ListedFolder(final String marker, final Folder folder)
+        {
+            this.marker = marker;
+            this.folder = folder;
+        }
+    }
+}
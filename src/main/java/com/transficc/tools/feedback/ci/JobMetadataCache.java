@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.util.ClockService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the slow changing metadata of every job polled from one CI server. Polls never wait for it: a job without metadata is polled straight
+ * away, its metadata alone is fetched alongside, and the poll's build is completed with it once it arrives. Everything is refreshed in the background
+ * in a single request once it is older than the time to live, so the cost of a refresh does not grow with the number of jobs.
+ */
+public final class JobMetadataCache
+{
+    static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobMetadataCache.class);
+    private static final CompletableFuture<Collection<String>> NOTHING_FETCHED = CompletableFuture.completedFuture(Collections.emptyList());
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final long timeToLiveMillis;
+    private final ClockService clockService;
+    private final Map<String, JobMetadata> jobNameToMetadata = new ConcurrentHashMap<>();
+    private final Set<String> jobsBeingFetched = new HashSet<>();
+    private boolean refreshInProgress;
+    private long nextRefreshTime;
+    private long retryTime;
+
+    public JobMetadataCache(final AsyncContinuousIntegrationServer continuousIntegrationServer, final long timeToLiveMillis, final ClockService clockService)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clockService = clockService;
+    }
+
+    /**
+     * Starts fetching whatever metadata is missing or due a refresh, without waiting for it. The given jobs should be every job polled, as metadata
+     * for any other job is dropped when it is next refreshed.
+     *
+     * @return completes with the jobs this call asked about which have metadata once the request has finished, or with none if it made no request
+     */
+    synchronized CompletableFuture<Collection<String>> load(final Collection<String> jobNames)
+    {
+        final long currentTime = clockService.currentTimeMillis();
+        if (currentTime >= nextRefreshTime && !refreshInProgress)
+        {
+            refreshInProgress = true;
+            return fetch(new ArrayList<>(jobNames), true);
+        }
+        //Don't keep asking whilst the CI server is failing to return metadata
+        if (currentTime < retryTime)
+        {
+            return NOTHING_FETCHED;
+        }
+        final List<String> missingJobNames = new ArrayList<>();
+        for (final String jobName : jobNames)
+        {
+            if (!jobNameToMetadata.containsKey(jobName) && !jobsBeingFetched.contains(jobName))
+            {
+                missingJobNames.add(jobName);
+            }
+        }
+        return missingJobNames.isEmpty() ? NOTHING_FETCHED : fetch(missingJobNames, false);
+    }
+
+    JobMetadata get(final String jobName)
+    {
+        return jobNameToMetadata.getOrDefault(jobName, JobMetadata.UNKNOWN);
+    }
+
+    private CompletableFuture<Collection<String>> fetch(final List<String> requestedJobNames, final boolean refresh)
+    {
+        final CompletableFuture<Collection<String>> fetched = new CompletableFuture<>();
+        jobsBeingFetched.addAll(requestedJobNames);
+        try
+        {
+            continuousIntegrationServer.getAllJobMetadata(requestedJobNames)
+                    .whenComplete((result, throwable) ->
+                                  {
+                                      try
+                                      {
+                                          if (throwable == null)
+                                          {
+                                              result.consume(statusCode -> onFetchFailed(statusCode, refresh),
+                                                             jobNameToMetadata -> onFetched(requestedJobNames, jobNameToMetadata, refresh));
+                                          }
+                                          else
+                                          {
+                                              LOGGER.error("An exception occurred whilst trying to get job metadata", throwable);
+                                              onFetchFailed(500, refresh);
+                                          }
+                                      }
+                                      finally
+                                      {
+                                          onFetchComplete(requestedJobNames, refresh, fetched);
+                                      }
+                                  });
+        }
+        catch (final RuntimeException e)
+        {
+            LOGGER.error("An exception occurred whilst trying to get job metadata", e);
+            onFetchFailed(500, refresh);
+            onFetchComplete(requestedJobNames, refresh, fetched);
+        }
+        return fetched;
+    }
+
+    private synchronized void onFetched(final List<String> requestedJobNames, final Map<String, JobMetadata> jobNameToMetadata, final boolean refresh)
+    {
+        if (refresh)
+        {
+            this.jobNameToMetadata.keySet().retainAll(requestedJobNames);
+            nextRefreshTime = clockService.currentTimeMillis() + timeToLiveMillis;
+        }
+        //A job the CI server did not return is about to be found missing by its next poll, so don't keep asking for its metadata until then
+        for (final String jobName : requestedJobNames)
+        {
+            this.jobNameToMetadata.put(jobName, jobNameToMetadata.getOrDefault(jobName, JobMetadata.UNKNOWN));
+        }
+        retryTime = 0;
+    }
+
+    private synchronized void onFetchFailed(final int statusCode, final boolean refresh)
+    {
+        LOGGER.error("Received status code {} whilst trying to get job metadata", statusCode);
+        retryTime = clockService.currentTimeMillis() + Math.min(RETRY_MILLIS, timeToLiveMillis);
+        if (refresh)
+        {
+            nextRefreshTime = retryTime;
+        }
+    }
+
+    private void onFetchComplete(final List<String> requestedJobNames, final boolean refresh, final CompletableFuture<Collection<String>> fetched)
+    {
+        final List<String> fetchedJobNames = new ArrayList<>();
+        synchronized (this)
+        {
+            jobsBeingFetched.removeAll(requestedJobNames);
+            if (refresh)
+            {
+                refreshInProgress = false;
+            }
+            for (final String jobName : requestedJobNames)
+            {
+                if (jobNameToMetadata.containsKey(jobName))
+                {
+                    fetchedJobNames.add(jobName);
+                }
+            }
+        }
+        //Builds are completed with the metadata from here, so don't hold the lock whilst they are
+        fetched.complete(fetchedJobNames);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+/**
+ * Keeps the names of jobs from different CI servers apart by prefixing them with the name of their server, e.g. london:team/master-commit.
+ * Jenkins does not allow a colon in the name of a job or folder, so the server name cannot be confused with a folder. The unnamed namespace
+ * leaves job names as they are.
+ */
+public final class JobNamespace
+{
+    static final String SEPARATOR = ":";
+    private final String prefix;
+
+    public JobNamespace(final String serverName)
+    {
+        if (serverName.contains(SEPARATOR))
+        {
+            throw new IllegalArgumentException("A Jenkins server name cannot contain '" + SEPARATOR + "': " + serverName);
+        }
+        this.prefix = serverName.isEmpty() ? "" : serverName + SEPARATOR;
+    }
+
+    public String qualify(final String jobName)
+    {
+        return prefix + jobName;
+    }
+
+    public String unqualify(final String qualifiedJobName)
+    {
+        return qualifiedJobName.substring(prefix.length());
+    }
+
+    public boolean contains(final String qualifiedJobName)
+    {
+        return qualifiedJobName.startsWith(prefix);
+    }
+}
@@ -12,13 +12,17 @@
  */
 package com.transficc.tools.feedback.ci;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.transficc.functionality.Result;
 import com.transficc.tools.feedback.JobRepository;
 import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.util.ClockService;
 import com.transficc.tools.feedback.web.messaging.MessageBus;
 
 import org.slf4j.Logger;
@@ -27,40 +31,107 @@ import org.slf4j.LoggerFactory;
 public class JobService implements Runnable
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(JobService.class);
+    static final long QUEUE_POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2);
     private final JobRepository jobRepository;
-    private final ContinuousIntegrationServer continuousIntegrationServer;
+    private final MessageBus messageBus;
+    private final JobDiscovery jobDiscovery;
     private final String masterJobName;
+    private final JobNamespace namespace;
+    private final Executor discoveryExecutor;
+    private final AtomicBoolean discoveryInProgress = new AtomicBoolean();
 
     public JobService(final JobRepository jobRepository,
                       final MessageBus messageBus,
-                      final ScheduledExecutorService scheduledExecutorService,
-                      final ContinuousIntegrationServer continuousIntegrationServer,
-                      final String masterJobName)
+                      final ScheduledExecutorService pollingExecutorService,
+                      final Executor discoveryExecutor,
+                      final AsyncContinuousIntegrationServer continuousIntegrationServer,
+                      final String masterJobName,
+                      final boolean bulkPolling,
+                      final long pollBudgetMillis,
+                      final JobMetadataCache jobMetadataCache,
+                      final int maxDiscoveryRequests,
+                      final ClockService clockService,
+                      final PollScheduler pollScheduler,
+                      final JobNamespace namespace)
     {
         this.jobRepository = jobRepository;
-        this.continuousIntegrationServer = continuousIntegrationServer;
-        this.masterJobName = masterJobName;
-        final JobUpdater jobUpdaterRunnable = new JobUpdater(continuousIntegrationServer, messageBus, jobRepository);
-        scheduledExecutorService.scheduleAtFixedRate(jobUpdaterRunnable, 0, 5, TimeUnit.SECONDS);
+        this.messageBus = messageBus;
+        this.jobDiscovery = new JobDiscovery(continuousIntegrationServer, maxDiscoveryRequests);
+        this.masterJobName = namespace.qualify(masterJobName);
+        this.namespace = namespace;
+        this.discoveryExecutor = discoveryExecutor;
+        final JobUpdater jobUpdaterRunnable = new JobUpdater(continuousIntegrationServer, messageBus, jobRepository, bulkPolling, clockService, pollScheduler,
+                                                             pollingExecutorService, pollBudgetMillis, jobMetadataCache, namespace);
+        //Individual polls are scheduled per job, so tick often enough to honour the shortest interval; a bulk poll fetches every job each tick
+        final long tickMillis = bulkPolling ? PollScheduler.BUILDING_INTERVAL_MILLIS : TimeUnit.SECONDS.toMillis(1);
+        pollingExecutorService.scheduleAtFixedRate(jobUpdaterRunnable, 0, tickMillis, TimeUnit.MILLISECONDS);
+        final QueuePoller queuePoller = new QueuePoller(continuousIntegrationServer, jobRepository, messageBus, pollScheduler, clockService, namespace);
+        pollingExecutorService.scheduleAtFixedRate(queuePoller, 0, QUEUE_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void run()
     {
-        final Result<Integer, List<Job>> result = continuousIntegrationServer.getAllJobs();
-        result.consume(statusCode -> LOGGER.error("Received status code {} when trying to obtain jobs", statusCode),
-                       jobs -> jobs.stream()
-                               .filter(job -> !jobExists(job.getName()))
-                               .forEach(job -> add(new FeedbackJob(masterJobName.equals(job.getName()), jobRepository.getPriorityForJob(job.getName()), job))));
+        //Skip this run rather than walk the same folders twice at once
+        if (!discoveryInProgress.compareAndSet(false, true))
+        {
+            return;
+        }
+        //Reconciling thousands of jobs with the repository is left to the discovery threads so that it never delays a status poll
+        jobDiscovery.discover().whenCompleteAsync((result, throwable) ->
+                                                  {
+                                                      discoveryInProgress.set(false);
+                                                      if (throwable == null)
+                                                      {
+                                                          result.consume(statusCode -> LOGGER.error("Received status code {} when trying to obtain jobs", statusCode),
+                                                                         this::onJobsDiscovered);
+                                                      }
+                                                      else
+                                                      {
+                                                          LOGGER.error("An exception occurred whilst trying to obtain jobs", throwable);
+                                                      }
+                                                  }, discoveryExecutor);
     }
 
-    private void add(final FeedbackJob job)
+    private void onJobsDiscovered(final List<Job> jobs)
     {
-        jobRepository.add(job);
+        final Map<String, Job> jobNameToJob = new HashMap<>();
+        jobs.forEach(job -> jobNameToJob.put(job.getName(), job));
+        int removed = 0;
+        for (final FeedbackJob job : jobRepository.getAllJobs())
+        {
+            if (namespace.contains(job.getName()) && !jobNameToJob.containsKey(job.getName()))
+            {
+                jobRepository.remove(job.getName());
+                messageBus.jobRemoved(job.getName());
+                removed++;
+            }
+        }
+        int added = 0;
+        int changed = 0;
+        for (final Job job : jobs)
+        {
+            final FeedbackJob existingJob = jobRepository.getJob(job.getName());
+            if (existingJob == null)
+            {
+                add(job);
+                added++;
+            }
+            else if (!existingJob.getUrl().equals(job.getUrl()))
+            {
+                existingJob.moveTo(job.getUrl());
+                messageBus.sendUpdate(existingJob);
+                changed++;
+            }
+        }
+        if (added + removed + changed > 0)
+        {
+            LOGGER.info("Discovered {} new jobs, {} removed jobs and {} changed jobs", added, removed, changed);
+        }
     }
 
-    private boolean jobExists(final String jobName)
+    private void add(final Job job)
     {
-        return jobRepository.contains(jobName);
+        jobRepository.add(new FeedbackJob(masterJobName.equals(job.getName()), jobRepository.getPriorityForJob(job.getName()), job));
     }
 }
@@ -12,9 +12,22 @@
  */
 package com.transficc.tools.feedback.ci;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
 import com.transficc.functionality.Result;
 import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
 import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.util.ClockService;
 import com.transficc.tools.feedback.web.messaging.MessageBus;
 
 import org.slf4j.Logger;
@@ -23,43 +36,258 @@ import org.slf4j.LoggerFactory;
 final class JobUpdater implements Runnable
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(JobUpdater.class);
-    private final ContinuousIntegrationServer continuousIntegrationServer;
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
     private final MessageBus messageBus;
     private final JobRepository jobRepository;
+    private final boolean bulkPolling;
+    private final ClockService clockService;
+    private final PollScheduler pollScheduler;
+    private final ScheduledExecutorService timer;
+    private final long cycleBudgetMillis;
+    private final JobMetadataCache jobMetadataCache;
+    private final JobNamespace namespace;
+    private final AtomicBoolean bulkPollInProgress = new AtomicBoolean();
 
-    JobUpdater(final ContinuousIntegrationServer continuousIntegrationServer,
+    JobUpdater(final AsyncContinuousIntegrationServer continuousIntegrationServer,
                final MessageBus messageBus,
-               final JobRepository jobRepository)
+               final JobRepository jobRepository,
+               final boolean bulkPolling,
+               final ClockService clockService,
+               final PollScheduler pollScheduler,
+               final ScheduledExecutorService timer,
+               final long cycleBudgetMillis,
+               final JobMetadataCache jobMetadataCache,
+               final JobNamespace namespace)
     {
         this.continuousIntegrationServer = continuousIntegrationServer;
         this.messageBus = messageBus;
         this.jobRepository = jobRepository;
+        this.bulkPolling = bulkPolling;
+        this.clockService = clockService;
+        this.pollScheduler = pollScheduler;
+        this.timer = timer;
+        this.cycleBudgetMillis = cycleBudgetMillis;
+        this.jobMetadataCache = jobMetadataCache;
+        this.namespace = namespace;
     }
 
     @Override
     public void run()
     {
-        for (final FeedbackJob job : jobRepository.getAllJobs())
+        if (bulkPolling)
+        {
+            updateAllJobs();
+        }
+        else
+        {
+            pollEachJob();
+        }
+    }
+
+    private void updateAllJobs()
+    {
+        //Skip this tick rather than stack up requests behind a slow CI server
+        if (!bulkPollInProgress.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            final Collection<FeedbackJob> jobs = getOwnJobs();
+            final Map<String, JobStatus> previousJobStatuses = new HashMap<>();
+            jobs.forEach(job -> previousJobStatuses.put(job.getName(), job.getJobStatus()));
+            loadMetadata(previousJobStatuses.keySet());
+            final CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> response =
+                    continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses);
+            Deadlines.within(response, cycleBudgetMillis, timer, Result.error(504))
+                    .whenComplete((allLatestBuildInformation, throwable) ->
+                                  {
+                                      if (throwable == null)
+                                      {
+                                          onAllLatestBuildInformation(jobs, allLatestBuildInformation);
+                                      }
+                                      else
+                                      {
+                                          LOGGER.error("An exception occurred whilst trying to gather build information", throwable);
+                                      }
+                                  });
+            //Giving up on the request does not stop it, so the next bulk poll waits until it has finished
+            response.whenComplete((allLatestBuildInformation, throwable) -> bulkPollInProgress.set(false));
+        }
+        catch (final RuntimeException e)
+        {
+            bulkPollInProgress.set(false);
+            LOGGER.error("An exception occurred whilst trying to gather build information", e);
+        }
+    }
+
+    private void onAllLatestBuildInformation(final Collection<FeedbackJob> jobs,
+                                             final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> allLatestBuildInformation)
+    {
+        try
+        {
+            allLatestBuildInformation.consume(statusCode ->
+                                              {
+                                                  LOGGER.error("Received status code {} whilst trying to get build information for all jobs", statusCode);
+                                                  //The request failed as a whole, e.g. a wrong base URL or Jenkins restarting, which says nothing about whether
+                                                  //any one job still exists, so jobs are only removed when a successful response leaves them out
+                                                  if (statusCode >= 500)
+                                                  {
+                                                      jobs.forEach(this::markStale);
+                                                  }
+                                              },
+                                              jobNameToBuildInformation ->
+                                              {
+                                                  for (final FeedbackJob job : jobs)
+                                                  {
+                                                      final Result<Integer, LatestBuildInformation> latestBuildInformation = jobNameToBuildInformation.get(job.getName());
+                                                      onLatestBuildInformation(job, latestBuildInformation == null ? Result.error(404) : latestBuildInformation);
+                                                  }
+                                              });
+        }
+        catch (final RuntimeException e)
+        {
+            LOGGER.error("An exception occurred whilst trying to gather build information", e);
+        }
+    }
+
+    private Collection<FeedbackJob> getOwnJobs()
+    {
+        //The repository is shared by every CI server, so only poll the jobs which came from this one
+        return jobRepository.getAllJobs().stream()
+                .filter(job -> namespace.contains(job.getName()))
+                .collect(Collectors.toList());
+    }
+
+    private void pollEachJob()
+    {
+        final long cycleStartTime = clockService.currentTimeMillis();
+        final Collection<FeedbackJob> jobs = getOwnJobs();
+        final List<String> jobNames = jobs.stream().map(FeedbackJob::getName).collect(Collectors.toList());
+        loadMetadata(jobNames);
+        //A job is not due again until its previous poll has completed, so a slow CI server cannot build up a backlog of requests for the same job
+        final List<FeedbackJob> dueJobs = pollScheduler.takeDueJobs(jobs, cycleStartTime);
+        //When the rate limit only leaves room for some of them, the jobs on the big screen and those building ask first
+        dueJobs.sort(Comparator.comparing((FeedbackJob job) -> job.getPriority() <= 0).thenComparing(job -> !job.isBuilding()));
+        for (final FeedbackJob job : dueJobs)
         {
-            try
+            //Every poll in the cycle shares its budget, and anything left over once it is spent waits for the next cycle
+            final long remainingBudgetMillis = cycleBudgetMillis - (clockService.currentTimeMillis() - cycleStartTime);
+            if (remainingBudgetMillis > 0)
             {
-                final Result<Integer, LatestBuildInformation> latestBuildInformation = continuousIntegrationServer.getLatestBuildInformation(job.getName(), job.getJobStatus());
-                latestBuildInformation.consume(statusCode -> handleErrorStatus(job, statusCode),
-                                               buildInformation ->
-                                               {
-                                                   if (job.wasUpdated(buildInformation))
-                                                   {
-                                                       messageBus.sendUpdate(job);
-                                                   }
-                                               });
+                poll(job, remainingBudgetMillis);
             }
-            catch (final RuntimeException e)
+            else
             {
-                LOGGER.error("An exception occurred whilst trying to gather build information", e);
+                pollScheduler.onDeferred(job, clockService.currentTimeMillis());
             }
         }
     }
 
+    private void loadMetadata(final Collection<String> jobNames)
+    {
+        //Jobs are polled without waiting for their metadata, so any which arrives afterwards is applied to the build already shown
+        jobMetadataCache.load(jobNames)
+                .thenAccept(fetchedJobNames -> fetchedJobNames.forEach(this::applyMetadata))
+                .exceptionally(throwable ->
+                               {
+                                   LOGGER.error("An exception occurred whilst trying to apply job metadata", throwable);
+                                   return null;
+                               });
+    }
+
+    private void applyMetadata(final String jobName)
+    {
+        final FeedbackJob job = jobRepository.getJob(jobName);
+        if (job != null && job.wasMetadataUpdated(jobMetadataCache.get(jobName), clockService.currentTimeMillis()))
+        {
+            messageBus.sendUpdate(job);
+        }
+    }
+
+    private void poll(final FeedbackJob job, final long remainingBudgetMillis)
+    {
+        try
+        {
+            final CompletableFuture<Result<Integer, LatestBuildInformation>> response =
+                    continuousIntegrationServer.getLatestBuildInformation(job.getName(), job.getJobStatus());
+            Deadlines.within(response, remainingBudgetMillis, timer, Result.error(504))
+                    .whenComplete((latestBuildInformation, throwable) ->
+                                  {
+                                      final Result<Integer, LatestBuildInformation> outcome = updateJob(job, latestBuildInformation, throwable);
+                                      //Giving up on a request does not stop it, so the job stays in flight until it has finished, otherwise the next poll of
+                                      //the job could overlap it
+                                      response.whenComplete((ignored, ignoredThrowable) -> outcome.consume(
+                                              statusCode -> onPollError(job, statusCode),
+                                              buildInformation -> pollScheduler.onSuccess(job, clockService.currentTimeMillis())));
+                                  });
+        }
+        catch (final RuntimeException e)
+        {
+            LOGGER.error("Unable to poll job: {}", job.getName(), e);
+            pollScheduler.onError(job, 500, clockService.currentTimeMillis());
+        }
+    }
+
+    private void onPollError(final FeedbackJob job, final int statusCode)
+    {
+        if (statusCode == RateLimitedContinuousIntegrationServer.RATE_LIMITED)
+        {
+            pollScheduler.onDeferred(job, clockService.currentTimeMillis());
+        }
+        else
+        {
+            pollScheduler.onError(job, statusCode, clockService.currentTimeMillis());
+        }
+    }
+
+    private Result<Integer, LatestBuildInformation> updateJob(final FeedbackJob job,
+                                                              final Result<Integer, LatestBuildInformation> latestBuildInformation,
+                                                              final Throwable throwable)
+    {
+        if (throwable != null)
+        {
+            LOGGER.error("An exception occurred whilst trying to gather build information", throwable);
+            return Result.error(500);
+        }
+        try
+        {
+            onLatestBuildInformation(job, latestBuildInformation);
+            return latestBuildInformation;
+        }
+        catch (final RuntimeException e)
+        {
+            LOGGER.error("An exception occurred whilst trying to gather build information", e);
+            return Result.error(500);
+        }
+    }
+
+    private void onLatestBuildInformation(final FeedbackJob job, final Result<Integer, LatestBuildInformation> latestBuildInformation)
+    {
+        latestBuildInformation.consume(statusCode -> handleErrorStatus(job, statusCode),
+                                       buildInformation ->
+                                       {
+                                           final JobMetadata jobMetadata = jobMetadataCache.get(job.getName());
+                                           if (job.wasUpdated(buildInformation, jobMetadata, clockService.currentTimeMillis()))
+                                           {
+                                               messageBus.sendUpdate(job);
+                                               if (job.hasJustCompleted())
+                                               {
+                                                   pollDownstreamJobs(jobMetadata);
+                                               }
+                                           }
+                                       });
+    }
+
+    private void pollDownstreamJobs(final JobMetadata jobMetadata)
+    {
+        //A bulk poll already fetches every job on the next tick
+        if (!bulkPolling)
+        {
+            DownstreamJobs.pollSoon(jobMetadata, jobRepository, pollScheduler, clockService.currentTimeMillis());
+        }
+    }
+
     private void handleErrorStatus(final FeedbackJob job, final Integer statusCode)
     {
         if (statusCode == 404)
@@ -67,9 +295,27 @@ final class JobUpdater implements Runnable
             jobRepository.remove(job.getName());
             messageBus.jobRemoved(job.getName());
         }
+        else if (statusCode >= 500)
+        {
+            LOGGER.error("Received status code {} whilst trying to get build information for job: {}", statusCode, job.getName());
+            markStale(job);
+        }
+        else if (statusCode == RateLimitedContinuousIntegrationServer.RATE_LIMITED)
+        {
+            LOGGER.debug("Put off polling job {} until the rate limit allows", job.getName());
+        }
         else
         {
             LOGGER.error("Received status code {} whilst trying to get build information for job: {}", statusCode, job.getName());
         }
     }
+
+    private void markStale(final FeedbackJob job)
+    {
+        //Keep showing the last known state, but make it clear it may be out of date
+        if (job.markStale())
+        {
+            messageBus.sendUpdate(job);
+        }
+    }
 }
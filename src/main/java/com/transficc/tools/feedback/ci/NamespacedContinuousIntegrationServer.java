@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+
+public final class NamespacedContinuousIntegrationServer implements AsyncContinuousIntegrationServer
+{
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final JobNamespace namespace;
+
+    public NamespacedContinuousIntegrationServer(final AsyncContinuousIntegrationServer continuousIntegrationServer, final JobNamespace namespace)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.namespace = namespace;
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        //The top level folder is the same for every server
+        return continuousIntegrationServer.getFolder(folderName.isEmpty() ? folderName : namespace.unqualify(folderName))
+                .thenApply(result -> mapSuccess(result, this::qualify));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        return continuousIntegrationServer.getLatestBuildInformation(namespace.unqualify(jobName), previousJobStatus);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        final Map<String, JobStatus> unqualifiedJobStatuses = new HashMap<>();
+        previousJobStatuses.forEach((jobName, jobStatus) -> unqualifiedJobStatuses.put(namespace.unqualify(jobName), jobStatus));
+        return continuousIntegrationServer.getAllLatestBuildInformation(unqualifiedJobStatuses)
+                .thenApply(result -> mapSuccess(result, jobNameToBuildInformation ->
+                                                        {
+                                                            final Map<String, Result<Integer, LatestBuildInformation>> qualified = new HashMap<>();
+                                                            jobNameToBuildInformation.forEach((jobName, buildInformation) -> qualified.put(namespace.qualify(jobName), buildInformation));
+                                                            return qualified;
+                                                        }));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        final List<String> unqualifiedJobNames = jobNames.stream().map(namespace::unqualify).collect(Collectors.toList());
+        return continuousIntegrationServer.getAllJobMetadata(unqualifiedJobNames)
+                .thenApply(result -> mapSuccess(result, jobNameToMetadata ->
+                                                        {
+                                                            final Map<String, JobMetadata> qualified = new HashMap<>();
+                                                            jobNameToMetadata.forEach((jobName, metadata) -> qualified.put(namespace.qualify(jobName), qualify(metadata)));
+                                                            return qualified;
+                                                        }));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return continuousIntegrationServer.getQueue()
+                .thenApply(result -> mapSuccess(result, queuedBuilds -> queuedBuilds.stream()
+                        .map(queuedBuild -> queuedBuild.renamed(namespace.qualify(queuedBuild.getJobName())))
+                        .collect(Collectors.toList())));
+    }
+
+    private JobMetadata qualify(final JobMetadata metadata)
+    {
+        final List<String> downstreamJobNames = metadata.getDownstreamJobNames().stream().map(namespace::qualify).collect(Collectors.toList());
+        return new JobMetadata(metadata.isBuildable(), metadata.getEstimatedDuration(), downstreamJobNames);
+    }
+
+    private Folder qualify(final Folder folder)
+    {
+        final List<Job> jobs = folder.getJobs().stream()
+                .map(job -> job.renamed(namespace.qualify(job.getName())))
+                .collect(Collectors.toList());
+        final Map<String, String> folderNameToMarker = new HashMap<>();
+        folder.getFolderNameToMarker().forEach((folderName, marker) -> folderNameToMarker.put(namespace.qualify(folderName), marker));
+        return new Folder(jobs, folderNameToMarker);
+    }
+
+    private static <T, R> Result<Integer, R> mapSuccess(final Result<Integer, T> result, final Function<T, R> mapper)
+    {
+        final AtomicReference<Result<Integer, R>> mapped = new AtomicReference<>();
+        result.consume(statusCode -> mapped.set(Result.error(statusCode)),
+                       value -> mapped.set(Result.success(mapper.apply(value))));
+        return mapped.get();
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.transficc.tools.feedback.domain.JobStatus;
+
+/**
+ * Decides when each job is next due to be polled. Jobs which are building are polled frequently, jobs which completed recently less so, and idle or disabled
+ * jobs rarely. Jobs which the CI server fails to report on back off exponentially. A job which has been handed out for polling is not handed out again
+ * until the outcome of that poll has been reported. Jobs which the CI server pushes notifications for only need an occasional reconciliation poll once
+ * their build has completed. Jobs whose next build is about to leave the CI server's queue are polled every second until it shows up, so the start of
+ * the build is seen as soon as it happens. Jobs downstream of a build which has just completed are polled straight away, as that build will have
+ * triggered them.
+ */
+public final class PollScheduler
+{
+    static final long BUILDING_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    static final long RECENTLY_COMPLETED_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    static final long IDLE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    static final long RECONCILIATION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long ABOUT_TO_START_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    //Long enough to cover a build which is handed an executor just after the queue was last polled, short enough not to poll forever if it never starts
+    static final long ABOUT_TO_START_WINDOW_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long RECENTLY_COMPLETED_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private final PriorityQueue<ScheduledPoll> pollsByDeadline = new PriorityQueue<>();
+    private final Map<String, ScheduledPoll> jobNameToPoll = new HashMap<>();
+    private final Set<String> jobsBeingPolled = new HashSet<>();
+    private final Map<String, Integer> jobNameToConsecutiveFailures = new HashMap<>();
+    private final Set<String> jobsWithNotifications = new HashSet<>();
+    private final Map<String, Long> jobNameToAboutToStartSeen = new HashMap<>();
+    private final Set<String> jobsToPollAgain = new HashSet<>();
+    private int cancelledPolls;
+
+    synchronized List<FeedbackJob> takeDueJobs(final Collection<FeedbackJob> jobs, final long currentTime)
+    {
+        final Map<String, FeedbackJob> jobNameToJob = new HashMap<>();
+        for (final FeedbackJob job : jobs)
+        {
+            jobNameToJob.put(job.getName(), job);
+            if (!jobNameToPoll.containsKey(job.getName()) && !jobsBeingPolled.contains(job.getName()))
+            {
+                schedule(job.getName(), currentTime);
+            }
+        }
+
+        final List<FeedbackJob> dueJobs = new ArrayList<>();
+        while (!pollsByDeadline.isEmpty() && pollsByDeadline.peek().deadline <= currentTime)
+        {
+            final ScheduledPoll scheduledPoll = pollsByDeadline.poll();
+            if (scheduledPoll.cancelled)
+            {
+                cancelledPolls--;
+                continue;
+            }
+            final String jobName = scheduledPoll.jobName;
+            jobNameToPoll.remove(jobName);
+            final FeedbackJob job = jobNameToJob.get(jobName);
+            if (job == null)
+            {
+                jobNameToConsecutiveFailures.remove(jobName);
+                jobsWithNotifications.remove(jobName);
+                jobNameToAboutToStartSeen.remove(jobName);
+                jobsToPollAgain.remove(jobName);
+            }
+            else
+            {
+                jobsBeingPolled.add(jobName);
+                dueJobs.add(job);
+            }
+        }
+        return dueJobs;
+    }
+
+    synchronized void onSuccess(final FeedbackJob job, final long currentTime)
+    {
+        jobsBeingPolled.remove(job.getName());
+        jobNameToConsecutiveFailures.remove(job.getName());
+        final Long aboutToStartSeen = jobNameToAboutToStartSeen.get(job.getName());
+        if (aboutToStartSeen != null && (job.isBuilding() || currentTime - aboutToStartSeen >= ABOUT_TO_START_WINDOW_MILLIS))
+        {
+            jobNameToAboutToStartSeen.remove(job.getName());
+        }
+        schedule(job.getName(), jobsToPollAgain.remove(job.getName()) ? currentTime : currentTime + interval(job, currentTime));
+    }
+
+    synchronized void onError(final FeedbackJob job, final int statusCode, final long currentTime)
+    {
+        jobsBeingPolled.remove(job.getName());
+        //Any poll from now on sees the triggered build, a failed one must not make the next success skip its interval
+        jobsToPollAgain.remove(job.getName());
+        if (statusCode >= 500)
+        {
+            final int failures = jobNameToConsecutiveFailures.merge(job.getName(), 1, Integer::sum);
+            long backOff = interval(job, currentTime);
+            for (int i = 0; i < failures && backOff < MAX_BACKOFF_MILLIS; i++)
+            {
+                backOff *= 2;
+            }
+            schedule(job.getName(), currentTime + Math.min(backOff, MAX_BACKOFF_MILLIS));
+        }
+        else
+        {
+            jobNameToConsecutiveFailures.remove(job.getName());
+            schedule(job.getName(), currentTime + interval(job, currentTime));
+        }
+    }
+
+    synchronized void onDeferred(final FeedbackJob job, final long currentTime)
+    {
+        jobsBeingPolled.remove(job.getName());
+        jobsToPollAgain.remove(job.getName());
+        schedule(job.getName(), currentTime);
+    }
+
+    synchronized void onNotification(final FeedbackJob job, final long currentTime)
+    {
+        jobsWithNotifications.add(job.getName());
+        if (!jobsBeingPolled.contains(job.getName()))
+        {
+            //A started build still needs polling for its changes and progress
+            schedule(job.getName(), job.isBuilding() ? currentTime : currentTime + interval(job, currentTime));
+        }
+    }
+
+    /**
+     * Called each time the queue shows the job's next build about to start, bringing its next poll forward if it was not already expected.
+     */
+    synchronized void onAboutToStart(final FeedbackJob job, final long currentTime)
+    {
+        final Long previouslySeen = jobNameToAboutToStartSeen.put(job.getName(), currentTime);
+        if (previouslySeen == null && !jobsBeingPolled.contains(job.getName()))
+        {
+            schedule(job.getName(), currentTime);
+        }
+    }
+
+    synchronized void onUpstreamCompleted(final FeedbackJob job, final long currentTime)
+    {
+        if (jobsBeingPolled.contains(job.getName()))
+        {
+            //The poll in flight may have been answered before the upstream build triggered this one
+            jobsToPollAgain.add(job.getName());
+        }
+        else
+        {
+            schedule(job.getName(), currentTime);
+        }
+    }
+
+    synchronized long nextDeadline(final String jobName)
+    {
+        final ScheduledPoll scheduledPoll = jobNameToPoll.get(jobName);
+        return scheduledPoll == null ? Long.MAX_VALUE : scheduledPoll.deadline;
+    }
+
+    long interval(final FeedbackJob job, final long currentTime)
+    {
+        final Long aboutToStartSeen = jobNameToAboutToStartSeen.get(job.getName());
+        if (!job.isBuilding() && aboutToStartSeen != null && currentTime - aboutToStartSeen < ABOUT_TO_START_WINDOW_MILLIS)
+        {
+            return ABOUT_TO_START_INTERVAL_MILLIS;
+        }
+        final long interval;
+        if (job.isBuilding())
+        {
+            interval = BUILDING_INTERVAL_MILLIS;
+        }
+        else if (jobsWithNotifications.contains(job.getName()))
+        {
+            interval = RECONCILIATION_INTERVAL_MILLIS;
+        }
+        else if (job.getJobStatus() != JobStatus.DISABLED && currentTime - job.getLastBuildTimestamp() < RECENTLY_COMPLETED_WINDOW_MILLIS)
+        {
+            interval = RECENTLY_COMPLETED_INTERVAL_MILLIS;
+        }
+        else
+        {
+            interval = IDLE_INTERVAL_MILLIS;
+        }
+        //Prioritised jobs are on the big screen, so keep them fresher
+        return Math.max(BUILDING_INTERVAL_MILLIS, interval / (1 + Math.max(0, job.getPriority())));
+    }
+
+    private void schedule(final String jobName, final long deadline)
+    {
+        final ScheduledPoll scheduledPoll = new ScheduledPoll(jobName, deadline);
+        final ScheduledPoll previous = jobNameToPoll.put(jobName, scheduledPoll);
+        if (previous != null)
+        {
+            //Removing it from the middle of the queue would mean searching for it, so it is left to be skipped when it reaches the head
+            previous.cancelled = true;
+            cancelledPolls++;
+        }
+        pollsByDeadline.add(scheduledPoll);
+        if (cancelledPolls > jobNameToPoll.size())
+        {
+            purgeCancelledPolls();
+        }
+    }
+
+    /**
+     * Cancelled polls with far off deadlines would otherwise pile up behind the head of the queue. Purging them once they outnumber the polls still
+     * scheduled keeps the queue no more than twice the number of jobs, at a cost spread over the reschedules which cancelled them.
+     */
+    private void purgeCancelledPolls()
+    {
+        pollsByDeadline.removeIf(scheduledPoll -> scheduledPoll.cancelled);
+        cancelledPolls = 0;
+    }
+
+    private static final class ScheduledPoll implements Comparable<ScheduledPoll>
+    {
+        private final String jobName;
+        private final long deadline;
+        private boolean cancelled;
+
+        private ScheduledPoll(final String jobName, final long deadline)
+        {
+            this.jobName = jobName;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(final ScheduledPoll other)
+        {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.web.messaging.MessageBus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls the CI server's queue alongside the jobs themselves. A job with a build about to leave the queue is handed to the {@link PollScheduler} to be
+ * polled every second, so the start of its build is seen without every idle job being polled that often.
+ */
+final class QueuePoller implements Runnable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueuePoller.class);
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final JobRepository jobRepository;
+    private final MessageBus messageBus;
+    private final PollScheduler pollScheduler;
+    private final ClockService clockService;
+    private final JobNamespace namespace;
+    private final AtomicBoolean pollInProgress = new AtomicBoolean();
+
+    QueuePoller(final AsyncContinuousIntegrationServer continuousIntegrationServer,
+                final JobRepository jobRepository,
+                final MessageBus messageBus,
+                final PollScheduler pollScheduler,
+                final ClockService clockService,
+                final JobNamespace namespace)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.jobRepository = jobRepository;
+        this.messageBus = messageBus;
+        this.pollScheduler = pollScheduler;
+        this.clockService = clockService;
+        this.namespace = namespace;
+    }
+
+    @Override
+    public void run()
+    {
+        if (!pollInProgress.compareAndSet(false, true))
+        {
+            return;
+        }
+        continuousIntegrationServer.getQueue().whenComplete((result, throwable) ->
+                                                            {
+                                                                pollInProgress.set(false);
+                                                                if (throwable == null)
+                                                                {
+                                                                    //Leave jobs as they were until the queue can be seen again
+                                                                    result.consume(statusCode -> LOGGER.warn("Received status code {} when polling the build queue", statusCode),
+                                                                                   this::onQueue);
+                                                                }
+                                                                else
+                                                                {
+                                                                    LOGGER.error("An exception occurred whilst polling the build queue", throwable);
+                                                                }
+                                                            });
+    }
+
+    private void onQueue(final List<QueuedBuild> queuedBuilds)
+    {
+        //A job can be queued more than once, e.g. with different parameters, so it has waited since its oldest build was queued
+        final Map<String, QueuedBuild> jobNameToQueuedBuild = new HashMap<>();
+        for (final QueuedBuild queuedBuild : queuedBuilds)
+        {
+            jobNameToQueuedBuild.merge(queuedBuild.getJobName(), queuedBuild, (first, second) ->
+                    new QueuedBuild(first.getJobName(),
+                                    Math.min(first.getInQueueSince(), second.getInQueueSince()),
+                                    first.isAboutToStart() || second.isAboutToStart()));
+        }
+        final long currentTime = clockService.currentTimeMillis();
+        for (final FeedbackJob job : jobRepository.getAllJobs())
+        {
+            if (!namespace.contains(job.getName()))
+            {
+                continue;
+            }
+            final QueuedBuild queuedBuild = jobNameToQueuedBuild.get(job.getName());
+            if (job.wasQueued(queuedBuild == null ? 0 : Math.max(1, queuedBuild.getInQueueSince()), currentTime))
+            {
+                messageBus.sendUpdate(job);
+            }
+            if (queuedBuild != null && queuedBuild.isAboutToStart())
+            {
+                pollScheduler.onAboutToStart(job, currentTime);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+
+/**
+ * Holds requests to the CI server back until the {@link RateLimiter} admits them. Polls of a single job go ahead of everything else, but never wait
+ * for a token: when none is free they are answered with {@link #RATE_LIMITED} straight away, so that the {@link JobUpdater} can put the job off until
+ * its next cycle rather than have it miss the cycle's budget.
+ */
+public final class RateLimitedContinuousIntegrationServer implements AsyncContinuousIntegrationServer
+{
+    static final int RATE_LIMITED = 429;
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final RateLimiter rateLimiter;
+
+    public RateLimitedContinuousIntegrationServer(final AsyncContinuousIntegrationServer continuousIntegrationServer, final RateLimiter rateLimiter)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        return whenAdmitted(() -> continuousIntegrationServer.getFolder(folderName));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        if (rateLimiter.tryAcquire(RateLimiter.Priority.JOB_POLL))
+        {
+            return continuousIntegrationServer.getLatestBuildInformation(jobName, previousJobStatus);
+        }
+        return CompletableFuture.completedFuture(Result.error(RATE_LIMITED));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        return whenAdmitted(() -> continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        return whenAdmitted(() -> continuousIntegrationServer.getAllJobMetadata(jobNames));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return whenAdmitted(continuousIntegrationServer::getQueue);
+    }
+
+    private <T> CompletableFuture<Result<Integer, T>> whenAdmitted(final Supplier<CompletableFuture<Result<Integer, T>>> request)
+    {
+        return rateLimiter.acquire(RateLimiter.Priority.BACKGROUND).thenCompose(admitted -> request.get());
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.transficc.tools.feedback.util.ClockService;
+
+/**
+ * A token bucket shared by every request to one CI server. Tokens are added at a steady rate up to a burst capacity, and each request spends one.
+ * Requests wait for a token in the order they asked, those of a higher {@link Priority} first, and {@link #tryAcquire(Priority)} only takes a token
+ * when no one at the same or a higher priority is waiting for it. So that a steady stream of higher priority requests cannot hold the rest back for
+ * ever, a request which has waited {@link #MAX_WAIT_MILLIS} goes ahead of everyone. A rate of zero or less admits everything.
+ */
+public final class RateLimiter
+{
+    static final long MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final Priority[] PRIORITIES = Priority.values();
+    private final double permitsPerMilli;
+    private final double burst;
+    private final ScheduledExecutorService timer;
+    private final ClockService clockService;
+    private final Map<Priority, Queue<Waiter>> priorityToWaiting = new EnumMap<>(Priority.class);
+    private double tokens;
+    private long lastRefillTime;
+    private int waiting;
+    private boolean drainScheduled;
+
+    public RateLimiter(final double permitsPerSecond, final int burst, final ScheduledExecutorService timer, final ClockService clockService)
+    {
+        this.permitsPerMilli = permitsPerSecond / 1000;
+        this.burst = Math.max(1, burst);
+        this.timer = timer;
+        this.clockService = clockService;
+        this.tokens = this.burst;
+        this.lastRefillTime = clockService.currentTimeMillis();
+        for (final Priority priority : PRIORITIES)
+        {
+            priorityToWaiting.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    public static RateLimiter unlimited()
+    {
+        return new RateLimiter(0, 1, null, () -> 0);
+    }
+
+    /**
+     * Takes a token if one is free and no one at the same or a higher priority, or who has waited too long, is waiting for it.
+     */
+    public synchronized boolean tryAcquire(final Priority priority)
+    {
+        if (permitsPerMilli <= 0)
+        {
+            return true;
+        }
+        refill();
+        final Queue<Waiter> next = nextWaiting();
+        if ((next == null || (next.peek().priority.compareTo(priority) > 0 && !hasWaitedTooLong(next.peek()))) && tokens >= 1)
+        {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Completes once a token has been taken for the caller.
+     */
+    public CompletableFuture<Void> acquire(final Priority priority)
+    {
+        if (tryAcquire(priority))
+        {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> admitted = new CompletableFuture<>();
+        synchronized (this)
+        {
+            priorityToWaiting.get(priority).add(new Waiter(priority, clockService.currentTimeMillis(), admitted));
+            waiting++;
+            scheduleDrain();
+        }
+        return admitted;
+    }
+
+    private void drain()
+    {
+        final List<CompletableFuture<Void>> admitted = new ArrayList<>();
+        synchronized (this)
+        {
+            drainScheduled = false;
+            refill();
+            while (waiting > 0 && tokens >= 1)
+            {
+                tokens--;
+                waiting--;
+                admitted.add(nextWaiting().poll().admitted);
+            }
+            scheduleDrain();
+        }
+        //Complete outside the lock, as each request goes straight on to call the CI server
+        admitted.forEach(request -> request.complete(null));
+    }
+
+    private void scheduleDrain()
+    {
+        if (drainScheduled || waiting == 0)
+        {
+            return;
+        }
+        drainScheduled = true;
+        final long delayMillis = (long)Math.ceil(Math.max(0, 1 - tokens) / permitsPerMilli);
+        timer.schedule(this::drain, Math.max(1, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The queue of whoever is next in line for a token, which is the first to have waited too long or else the first of the highest priority.
+     */
+    private Queue<Waiter> nextWaiting()
+    {
+        Queue<Waiter> next = null;
+        for (final Priority priority : PRIORITIES)
+        {
+            final Queue<Waiter> waiters = priorityToWaiting.get(priority);
+            if (waiters.isEmpty())
+            {
+                continue;
+            }
+            if (hasWaitedTooLong(waiters.peek()))
+            {
+                return waiters;
+            }
+            if (next == null)
+            {
+                next = waiters;
+            }
+        }
+        return next;
+    }
+
+    private boolean hasWaitedTooLong(final Waiter waiter)
+    {
+        //Only asked straight after a refill, so the time of the refill is the current time
+        return lastRefillTime - waiter.queuedAt >= MAX_WAIT_MILLIS;
+    }
+
+    private void refill()
+    {
+        final long currentTime = clockService.currentTimeMillis();
+        tokens = Math.min(burst, tokens + (currentTime - lastRefillTime) * permitsPerMilli);
+        lastRefillTime = currentTime;
+    }
+
+    /**
+     * Highest first. Job polls decide what the screen shows, so they go ahead of the discovery, metadata, queue and bulk requests working in the background.
+     */
+    public enum Priority
+    {
+        JOB_POLL,
+        BACKGROUND
+    }
+
+    private static final class Waiter
+    {
+        private final Priority priority;
+        private final long queuedAt;
+        private final CompletableFuture<Void> admitted;
+
+        private Waiter(final Priority priority, final long queuedAt, final CompletableFuture<Void> admitted)
+        {
+            this.priority = priority;
+            this.queuedAt = queuedAt;
+            this.admitted = admitted;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.util.Counters;
+
+/**
+ * Guards calls to a CI server with a deadline and a circuit breaker. A call which misses its deadline completes with 504 and the request is
+ * cancelled, and whilst the breaker is open calls fail fast with 503 without reaching the CI server.
+ */
+public final class ResilientContinuousIntegrationServer implements AsyncContinuousIntegrationServer
+{
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final String name;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService timer;
+    private final long callTimeoutMillis;
+    private final Counters counters;
+
+    public ResilientContinuousIntegrationServer(final AsyncContinuousIntegrationServer continuousIntegrationServer,
+                                                final String name,
+                                                final int breakerFailureThreshold,
+                                                final long breakerOpenMillis,
+                                                final long callTimeoutMillis,
+                                                final ScheduledExecutorService timer,
+                                                final ClockService clockService,
+                                                final Counters counters)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.name = name;
+        this.circuitBreaker = new CircuitBreaker(name, breakerFailureThreshold, breakerOpenMillis, clockService, counters);
+        this.timer = timer;
+        this.callTimeoutMillis = callTimeoutMillis;
+        this.counters = counters;
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        return call(() -> continuousIntegrationServer.getFolder(folderName));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        return call(() -> continuousIntegrationServer.getLatestBuildInformation(jobName, previousJobStatus));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        return call(() -> continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        return call(() -> continuousIntegrationServer.getAllJobMetadata(jobNames));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return call(continuousIntegrationServer::getQueue);
+    }
+
+    private <T> CompletableFuture<Result<Integer, T>> call(final Supplier<CompletableFuture<Result<Integer, T>>> request)
+    {
+        final long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED)
+        {
+            return CompletableFuture.completedFuture(Result.error(503));
+        }
+        counters.increment(name + ".requests");
+        final CompletableFuture<Result<Integer, T>> response;
+        try
+        {
+            response = Deadlines.withinOrCancel(request.get(), callTimeoutMillis, timer, Result.error(504));
+        }
+        catch (final RuntimeException e)
+        {
+            circuitBreaker.onFailure(permit);
+            throw e;
+        }
+        //Callers only see the outcome once the breaker has recorded it
+        return response.whenComplete((result, throwable) ->
+                                     {
+                                         if (throwable != null)
+                                         {
+                                             onErrorStatus(permit, 500);
+                                         }
+                                         else
+                                         {
+                                             result.consume(statusCode -> onErrorStatus(permit, statusCode), value -> circuitBreaker.onSuccess(permit));
+                                         }
+                                     });
+    }
+
+    private void onErrorStatus(final long permit, final int statusCode)
+    {
+        if (statusCode == 504)
+        {
+            counters.increment(name + ".requests.timeout");
+        }
+        //The CI server answered, it just did not have what was asked for
+        if (statusCode < 500)
+        {
+            circuitBreaker.onSuccess(permit);
+        }
+        else
+        {
+            counters.increment(name + ".requests.failed");
+            circuitBreaker.onFailure(permit);
+        }
+    }
+}
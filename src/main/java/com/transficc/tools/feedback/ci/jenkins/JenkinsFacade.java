@@ -13,59 +13,53 @@
 package com.transficc.tools.feedback.ci.jenkins;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
-import com.offbytwo.jenkins.JenkinsServer;
-import com.offbytwo.jenkins.model.Build;
-import com.offbytwo.jenkins.model.BuildChangeSet;
-import com.offbytwo.jenkins.model.BuildChangeSetItem;
+import com.fasterxml.jackson.core.JsonParser;
+import com.offbytwo.jenkins.client.JenkinsHttpClient;
 import com.offbytwo.jenkins.model.BuildResult;
-import com.offbytwo.jenkins.model.BuildWithDetails;
-import com.offbytwo.jenkins.model.JobWithDetails;
 import com.transficc.functionality.Result;
 import com.transficc.tools.feedback.ci.ContinuousIntegrationServer;
-import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
 import com.transficc.tools.feedback.domain.JobStatus;
 import com.transficc.tools.feedback.domain.LatestBuildInformation;
-import com.transficc.tools.feedback.domain.TestResults;
+import com.transficc.tools.feedback.domain.QueuedBuild;
 import com.transficc.tools.feedback.domain.VersionControl;
 import com.transficc.tools.feedback.util.ClockService;
 
+import org.apache.http.client.HttpResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JenkinsFacade implements ContinuousIntegrationServer
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(JenkinsFacade.class);
-    private final JenkinsServer jenkins;
-    private final ClockService clockService;
-    private final VersionControl versionControl;
+    private final JenkinsHttpClient jenkinsHttpClient;
+    private final JenkinsJsonParser parser;
 
-    public JenkinsFacade(final JenkinsServer jenkins,
-                         final ClockService clockService,
-                         final VersionControl versionControl)
+    public JenkinsFacade(final JenkinsHttpClient jenkinsHttpClient, final ClockService clockService, final VersionControl versionControl)
     {
-        this.jenkins = jenkins;
-        this.clockService = clockService;
-        this.versionControl = versionControl;
+        this.jenkinsHttpClient = jenkinsHttpClient;
+        this.parser = new JenkinsJsonParser(clockService, versionControl);
     }
 
     @Override
-    public Result<Integer, List<Job>> getAllJobs()
+    public Result<Integer, Folder> getFolder(final String folderName)
     {
-        try
+        try (JsonParser json = parser.createParser(jenkinsHttpClient.get(JenkinsJsonParser.jobPath(folderName) + "/" + JenkinsJsonParser.FOLDER_QUERY)))
         {
-            final Map<String, com.offbytwo.jenkins.model.Job> jobs = jenkins.getJobs();
-            return Result.success(jobs.values()
-                                          .stream()
-                                          .map(job -> new Job(job.getName(), job.getUrl(), JobStatus.DISABLED, versionControl))
-                                          .collect(Collectors.toList()));
+            return Result.success(parser.parseFolder(json, folderName));
+        }
+        catch (final HttpResponseException e)
+        {
+            return Result.error(e.getStatusCode());
         }
         catch (final IOException e)
         {
-            LOGGER.warn("Received an error trying to get jobs", e);
+            LOGGER.warn("Received an error trying to get jobs in folder {}", folderName, e);
             return Result.error(500);
         }
     }
@@ -73,90 +67,68 @@ public class JenkinsFacade implements ContinuousIntegrationServer
     @Override
     public Result<Integer, LatestBuildInformation> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
     {
-        try
+        //One request for just the fields we show, rather than binding the whole job and then fetching and binding the whole build
+        try (JsonParser json = parser.createParser(jenkinsHttpClient.get(JenkinsJsonParser.jobPath(jobName) + "/" + JenkinsJsonParser.LATEST_BUILD_QUERY)))
+        {
+            return parser.parseLatestBuildInformation(json, previousJobStatus);
+        }
+        catch (final HttpResponseException e)
+        {
+            return Result.error(e.getStatusCode());
+        }
+        catch (final IOException e)
+        {
+            return Result.error(500);
+        }
+    }
+
+    @Override
+    public Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        try (JsonParser json = parser.createParser(jenkinsHttpClient.get("/" + JenkinsJsonParser.allLatestBuildsQuery(previousJobStatuses.keySet()))))
         {
-            final JobWithDetails job = jenkins.getJob(jobName);
-            if (job == null)
-            {
-                return Result.error(404);
-            }
-            else if (job.getLastBuild().equals(Build.BUILD_HAS_NEVER_RUN))
-            {
-                return Result.error(400);
-            }
-            else
-            {
-                final BuildWithDetails buildDetails = job.getLastBuild().details();
-                final String revision = getRevision(buildDetails);
-                final JobStatus jobStatus = !job.isBuildable() ? JobStatus.DISABLED : parse(buildDetails.getResult(), previousJobStatus);
-                final double jobCompletionPercentage = (double)(clockService.currentTimeMillis() - buildDetails.getTimestamp()) / buildDetails.getEstimatedDuration() * 100;
-                final BuildChangeSet changeSet = buildDetails.getChangeSet();
-                final String[] comments;
-                if (changeSet == null)
-                {
-                    comments = new String[0];
-                }
-                else
-                {
-                    final List<String> commentList = changeSet
-                            .getItems()
-                            .stream()
-                            .map(BuildChangeSetItem::getComment)
-                            .collect(Collectors.toList());
-                    comments = new String[commentList.size()];
-                    commentList.toArray(comments);
-                }
-                final TestResults testResults = getTestResults(buildDetails);
-                return Result.success(new LatestBuildInformation(revision,
-                                                                 jobStatus,
-                                                                 buildDetails.getNumber(),
-                                                                 buildDetails.getTimestamp(),
-                                                                 jobCompletionPercentage,
-                                                                 comments,
-                                                                 buildDetails.isBuilding(),
-                                                                 testResults,
-                                                                 buildDetails.getDuration()));
-            }
+            return Result.success(parser.parseAllLatestBuildInformation(json, previousJobStatuses));
         }
         catch (final IOException e)
         {
+            LOGGER.warn("Received an error trying to get build information for all jobs", e);
             return Result.error(500);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private static String getRevision(final BuildWithDetails buildDetails)
+    @Override
+    public Result<Integer, Map<String, JobMetadata>> getAllJobMetadata(final Collection<String> jobNames)
     {
-        for (final Object entries : buildDetails.getActions())
+        try (JsonParser json = parser.createParser(jenkinsHttpClient.get("/" + JenkinsJsonParser.allJobMetadataQuery(jobNames))))
         {
-            final Map<String, String> lastBuildRevision = ((Map<String, Map<String, String>>)entries).get("lastBuiltRevision");
-            if (lastBuildRevision != null)
-            {
-                return lastBuildRevision.get("SHA1");
-            }
+            return Result.success(parser.parseAllJobMetadata(json));
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("Received an error trying to get metadata for all jobs", e);
+            return Result.error(500);
         }
-        return "";
     }
 
-    @SuppressWarnings("unchecked")
-    private static TestResults getTestResults(final BuildWithDetails buildDetails)
+    @Override
+    public Result<Integer, List<QueuedBuild>> getQueue()
     {
-        for (final Object entries : buildDetails.getActions())
+        try (JsonParser json = parser.createParser(jenkinsHttpClient.get("/queue/" + JenkinsJsonParser.QUEUE_QUERY)))
         {
-            final Map<String, Object> maps = (Map<String, Object>)entries;
-            if ("testReport".equals(maps.get("urlName")))
-            {
-                final int failCount = (int)maps.get("failCount");
-                final int skipCount = (int)maps.get("skipCount");
-                final int totalCount = (int)maps.get("totalCount");
-                final int passCount = totalCount - failCount - skipCount;
-                return new TestResults(passCount, failCount, skipCount);
-            }
+            return Result.success(parser.parseQueue(json));
+        }
+        catch (final HttpResponseException e)
+        {
+            return Result.error(e.getStatusCode());
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("Received an error trying to get the build queue", e);
+            return Result.error(500);
         }
-        return null;
     }
 
-    static JobStatus parse(final BuildResult result, final JobStatus previousStatus)
+    public static JobStatus parse(final BuildResult result, final JobStatus previousStatus)
     {
         if (result == null)
         {
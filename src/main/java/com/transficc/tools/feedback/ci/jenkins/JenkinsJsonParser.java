@@ -0,0 +1,688 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offbytwo.jenkins.model.BuildResult;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.domain.TestResults;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.ClockService;
+
+public final class JenkinsJsonParser
+{
+    //Whether a job is buildable and how long its builds take rarely change, and estimating a duration means Jenkins loading earlier builds,
+    //so these are left to the far less frequent metadata query
+    static final String LAST_BUILD_TREE = "lastBuild[number,result,timestamp,duration,building," +
+                                          "actions[lastBuiltRevision[SHA1],urlName,failCount,skipCount,totalCount],changeSet[items[comment]]]";
+    //A job's downstream projects are only named by their url when they are in folders, and change as rarely as anything else in its configuration
+    static final String METADATA_TREE = "buildable,lastBuild[estimatedDuration],downstreamProjects[name,url]";
+    //The names of the children and grandchildren of each nested folder make up its marker, so a folder only needs listing again when they change
+    static final String FOLDER_QUERY = "?tree=" + encode("jobs[name,url,jobs[name,jobs[name]]]");
+    static final String LATEST_BUILD_QUERY = "?tree=" + encode("name," + LAST_BUILD_TREE);
+    //timestamp is when a waiting item's quiet period ends, and the task's url is the only place the full name of a job in a folder appears
+    static final String QUEUE_QUERY = "?tree=" + encode("items[inQueueSince,buildable,blocked,timestamp,task[name,url]]");
+    //A build this close to the end of its quiet period will be handed to an executor before the next poll of the queue
+    static final long ABOUT_TO_START_MILLIS = 5_000;
+    private static final String FOLDER_SEPARATOR = "/";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private final ClockService clockService;
+    private final VersionControl versionControl;
+
+    JenkinsJsonParser(final ClockService clockService, final VersionControl versionControl)
+    {
+        this.clockService = clockService;
+        this.versionControl = versionControl;
+    }
+
+    JsonParser createParser(final InputStream json) throws IOException
+    {
+        return OBJECT_MAPPER.getFactory().createParser(json);
+    }
+
+    JsonParser createParser(final String json) throws IOException
+    {
+        return OBJECT_MAPPER.getFactory().createParser(json);
+    }
+
+    Folder parseFolder(final JsonParser json, final String folderName) throws IOException
+    {
+        //Folders are listed rarely and their markers need the names of grandchildren, so the tree model is good enough here
+        final JsonNode root = OBJECT_MAPPER.readTree(json);
+        final List<Job> jobs = new ArrayList<>();
+        final Map<String, String> folderNameToMarker = new HashMap<>();
+        for (final JsonNode item : root.path("jobs"))
+        {
+            final String itemName = fullName(folderName, item.path("name").asText());
+            //Only folders have jobs of their own
+            if (item.has("jobs"))
+            {
+                folderNameToMarker.put(itemName, marker(item));
+            }
+            else
+            {
+                jobs.add(new Job(itemName, item.path("url").asText(), JobStatus.DISABLED, versionControl));
+            }
+        }
+        return new Folder(jobs, folderNameToMarker);
+    }
+
+    Map<String, Result<Integer, LatestBuildInformation>> parseAllLatestBuildInformation(final JsonParser json, final Map<String, JobStatus> previousJobStatuses) throws IOException
+    {
+        final Map<String, Result<Integer, LatestBuildInformation>> jobNameToBuildInformation = new HashMap<>();
+        parseAllJobs(json, (jobName, job) -> jobNameToBuildInformation.put(jobName, job.toLatestBuildInformation(previousJobStatuses.get(jobName))));
+        return jobNameToBuildInformation;
+    }
+
+    Map<String, JobMetadata> parseAllJobMetadata(final JsonParser json) throws IOException
+    {
+        final Map<String, JobMetadata> jobNameToMetadata = new HashMap<>();
+        parseAllJobs(json, (jobName, job) -> jobNameToMetadata.put(jobName, job.toJobMetadata()));
+        return jobNameToMetadata;
+    }
+
+    List<QueuedBuild> parseQueue(final JsonParser json) throws IOException
+    {
+        final List<QueuedBuild> queuedBuilds = new ArrayList<>();
+        expect(json, json.nextToken(), JsonToken.START_OBJECT);
+        while (json.nextToken() == JsonToken.FIELD_NAME)
+        {
+            final JsonToken value = json.nextToken();
+            if ("items".equals(json.getCurrentName()) && value == JsonToken.START_ARRAY)
+            {
+                JsonToken item;
+                while ((item = json.nextToken()) != JsonToken.END_ARRAY)
+                {
+                    if (item == JsonToken.START_OBJECT)
+                    {
+                        parseQueuedBuild(json, queuedBuilds);
+                    }
+                    else
+                    {
+                        json.skipChildren();
+                    }
+                }
+            }
+            else
+            {
+                json.skipChildren();
+            }
+        }
+        return queuedBuilds;
+    }
+
+    Result<Integer, LatestBuildInformation> parseLatestBuildInformation(final JsonParser json, final JobStatus previousJobStatus) throws IOException
+    {
+        expect(json, json.nextToken(), JsonToken.START_OBJECT);
+        final JobFields job = new JobFields();
+        while (json.nextToken() == JsonToken.FIELD_NAME)
+        {
+            job.parseField(json, json.getCurrentName(), json.nextToken());
+        }
+        return job.toLatestBuildInformation(previousJobStatus);
+    }
+
+    LatestBuildInformation createLatestBuildInformation(final String revision,
+                                                        final JobStatus jobStatus,
+                                                        final int number,
+                                                        final long timestamp,
+                                                        final long estimatedDuration,
+                                                        final String[] comments,
+                                                        final boolean building,
+                                                        final TestResults testResults,
+                                                        final long duration)
+    {
+        //Without an estimate, progress is left for the job's metadata to fill in
+        final double jobCompletionPercentage = estimatedDuration > 0 ? (double)(clockService.currentTimeMillis() - timestamp) / estimatedDuration * 100 : 0;
+        return new LatestBuildInformation(revision, jobStatus, number, timestamp, jobCompletionPercentage, comments, building, testResults, duration);
+    }
+
+    /**
+     * A query for the latest build of every job, descending into folders far enough to reach the most deeply nested of the given jobs.
+     */
+    static String allLatestBuildsQuery(final Collection<String> jobNames)
+    {
+        return allJobsQuery(jobNames, LAST_BUILD_TREE);
+    }
+
+    static String allJobMetadataQuery(final Collection<String> jobNames)
+    {
+        return allJobsQuery(jobNames, METADATA_TREE);
+    }
+
+    /**
+     * The path of a job or folder relative to the root of Jenkins, e.g. team/project/master is at /job/team/job/project/job/master.
+     */
+    static String jobPath(final String fullName)
+    {
+        final StringBuilder path = new StringBuilder();
+        if (!fullName.isEmpty())
+        {
+            for (final String name : fullName.split(FOLDER_SEPARATOR))
+            {
+                //Jenkins expects spaces in job names to be encoded as %20 rather than +
+                path.append("/job/").append(encode(name).replace("+", "%20"));
+            }
+        }
+        return path.toString();
+    }
+
+    static String encode(final String value)
+    {
+        try
+        {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        }
+        catch (final UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String allJobsQuery(final Collection<String> jobNames, final String jobTree)
+    {
+        int depth = 1;
+        for (final String jobName : jobNames)
+        {
+            depth = Math.max(depth, jobName.split(FOLDER_SEPARATOR).length);
+        }
+        String tree = "jobs[name," + jobTree + "]";
+        for (int i = 1; i < depth; i++)
+        {
+            tree = "jobs[name," + jobTree + "," + tree + "]";
+        }
+        return "?tree=" + encode(tree);
+    }
+
+    private void parseAllJobs(final JsonParser json, final BiConsumer<String, JobFields> onJob) throws IOException
+    {
+        expect(json, json.nextToken(), JsonToken.START_OBJECT);
+        while (json.nextToken() == JsonToken.FIELD_NAME)
+        {
+            final JsonToken value = json.nextToken();
+            if ("jobs".equals(json.getCurrentName()) && value == JsonToken.START_ARRAY)
+            {
+                parseJobs(json, "", onJob);
+            }
+            else
+            {
+                json.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads the jobs array at the parser's position, descending into folders, which Jenkins always names before listing their jobs.
+     */
+    private void parseJobs(final JsonParser json, final String folderName, final BiConsumer<String, JobFields> onJob) throws IOException
+    {
+        JsonToken item;
+        while ((item = json.nextToken()) != JsonToken.END_ARRAY)
+        {
+            if (item != JsonToken.START_OBJECT)
+            {
+                json.skipChildren();
+                continue;
+            }
+            final JobFields job = new JobFields();
+            boolean folder = false;
+            while (json.nextToken() == JsonToken.FIELD_NAME)
+            {
+                final String field = json.getCurrentName();
+                final JsonToken value = json.nextToken();
+                if ("jobs".equals(field) && value == JsonToken.START_ARRAY)
+                {
+                    if (job.name == null)
+                    {
+                        throw new JsonParseException(json, "Found the jobs of a folder before its name");
+                    }
+                    folder = true;
+                    parseJobs(json, fullName(folderName, job.name), onJob);
+                }
+                else
+                {
+                    job.parseField(json, field, value);
+                }
+            }
+            if (!folder)
+            {
+                onJob.accept(fullName(folderName, job.name == null ? "" : job.name), job);
+            }
+        }
+    }
+
+    private void parseQueuedBuild(final JsonParser json, final List<QueuedBuild> queuedBuilds) throws IOException
+    {
+        long inQueueSince = 0;
+        boolean buildable = false;
+        boolean blocked = false;
+        long timestamp = Long.MAX_VALUE;
+        String jobName = null;
+        while (json.nextToken() == JsonToken.FIELD_NAME)
+        {
+            final String field = json.getCurrentName();
+            final JsonToken value = json.nextToken();
+            switch (field)
+            {
+                case "inQueueSince":
+                    inQueueSince = longValue(json, value);
+                    break;
+                case "buildable":
+                    buildable = value == JsonToken.VALUE_TRUE;
+                    break;
+                case "blocked":
+                    blocked = value == JsonToken.VALUE_TRUE;
+                    break;
+                case "timestamp":
+                    timestamp = value == JsonToken.VALUE_NUMBER_INT ? json.getLongValue() : Long.MAX_VALUE;
+                    break;
+                case "task":
+                    jobName = parseJobReference(json, value);
+                    break;
+                default:
+                    json.skipChildren();
+                    break;
+            }
+        }
+        //Tasks which are not jobs, such as folder scans, have no name to show a build against
+        if (jobName != null && !jobName.isEmpty())
+        {
+            //A buildable item is only waiting for an executor, a blocked one could be waiting on another build for any length of time
+            final boolean aboutToStart = buildable || (!blocked && timestamp <= clockService.currentTimeMillis() + ABOUT_TO_START_MILLIS);
+            queuedBuilds.add(new QueuedBuild(jobName, inQueueSince, aboutToStart));
+        }
+    }
+
+    /**
+     * Reads the full name of a job referred to by another part of the API, such as a queued task or a downstream project.
+     */
+    private static String parseJobReference(final JsonParser json, final JsonToken reference) throws IOException
+    {
+        if (reference != JsonToken.START_OBJECT)
+        {
+            json.skipChildren();
+            return null;
+        }
+        String name = null;
+        String url = null;
+        while (json.nextToken() == JsonToken.FIELD_NAME)
+        {
+            final String field = json.getCurrentName();
+            final JsonToken value = json.nextToken();
+            if ("name".equals(field) && value == JsonToken.VALUE_STRING)
+            {
+                name = json.getText();
+            }
+            else if ("url".equals(field) && value == JsonToken.VALUE_STRING)
+            {
+                url = json.getText();
+            }
+            else
+            {
+                json.skipChildren();
+            }
+        }
+        return url == null ? name : fullNameFromUrl(url);
+    }
+
+    /**
+     * The full name of the job at a url, e.g. http://jenkins/job/team/job/project/job/master/ is team/project/master.
+     */
+    public static String fullNameFromUrl(final String url)
+    {
+        final String[] segments = url.split("/");
+        String fullName = "";
+        for (int i = 0; i < segments.length - 1; i++)
+        {
+            if ("job".equals(segments[i]))
+            {
+                fullName = fullName(fullName, decode(segments[++i]));
+            }
+        }
+        return fullName;
+    }
+
+    private static String decode(final String value)
+    {
+        try
+        {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        }
+        catch (final UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String fullName(final String folderName, final String name)
+    {
+        return folderName.isEmpty() ? name : folderName + FOLDER_SEPARATOR + name;
+    }
+
+    private static String marker(final JsonNode folder)
+    {
+        final List<String> names = new ArrayList<>();
+        for (final JsonNode child : folder.path("jobs"))
+        {
+            names.add(child.path("name").asText());
+            for (final JsonNode grandchild : child.path("jobs"))
+            {
+                names.add(child.path("name").asText() + FOLDER_SEPARATOR + grandchild.path("name").asText());
+            }
+        }
+        return names.size() + "-" + Integer.toHexString(names.hashCode());
+    }
+
+    private static void expect(final JsonParser json, final JsonToken actual, final JsonToken expected) throws JsonParseException
+    {
+        if (actual != expected)
+        {
+            throw new JsonParseException(json, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+    private static int intValue(final JsonParser json, final JsonToken value) throws IOException
+    {
+        return value == JsonToken.VALUE_NUMBER_INT ? json.getIntValue() : 0;
+    }
+
+    private static long longValue(final JsonParser json, final JsonToken value) throws IOException
+    {
+        return value == JsonToken.VALUE_NUMBER_INT ? json.getLongValue() : 0;
+    }
+
+    private static BuildResult parseBuildResult(final JsonParser json, final JsonToken value) throws IOException
+    {
+        if (value != JsonToken.VALUE_STRING)
+        {
+            return null;
+        }
+        try
+        {
+            return BuildResult.valueOf(json.getText());
+        }
+        catch (final IllegalArgumentException e)
+        {
+            return BuildResult.UNKNOWN;
+        }
+    }
+
+    /**
+     * The handful of fields a LatestBuildInformation is made from, filled in as their tokens stream past so nothing else in the response is kept.
+     */
+    private final class JobFields
+    {
+        private String name;
+        private boolean buildable = true;
+        private boolean hasLastBuild;
+        private int number;
+        private BuildResult result;
+        private long timestamp;
+        private long duration;
+        private long estimatedDuration = -1;
+        private boolean building;
+        private String revision = "";
+        private TestResults testResults;
+        private final List<String> comments = new ArrayList<>();
+        private final List<String> downstreamJobNames = new ArrayList<>();
+
+        private void parseField(final JsonParser json, final String field, final JsonToken value) throws IOException
+        {
+            if ("name".equals(field))
+            {
+                name = value == JsonToken.VALUE_STRING ? json.getText() : null;
+            }
+            else if ("buildable".equals(field))
+            {
+                buildable = value != JsonToken.VALUE_FALSE;
+            }
+            else if ("lastBuild".equals(field) && value == JsonToken.START_OBJECT)
+            {
+                hasLastBuild = true;
+                parseLastBuild(json);
+            }
+            else if ("downstreamProjects".equals(field) && value == JsonToken.START_ARRAY)
+            {
+                parseDownstreamProjects(json);
+            }
+            else
+            {
+                json.skipChildren();
+            }
+        }
+
+        private void parseLastBuild(final JsonParser json) throws IOException
+        {
+            while (json.nextToken() == JsonToken.FIELD_NAME)
+            {
+                final String field = json.getCurrentName();
+                final JsonToken value = json.nextToken();
+                switch (field)
+                {
+                    case "number":
+                        number = intValue(json, value);
+                        break;
+                    case "result":
+                        result = parseBuildResult(json, value);
+                        break;
+                    case "timestamp":
+                        timestamp = longValue(json, value);
+                        break;
+                    case "duration":
+                        duration = longValue(json, value);
+                        break;
+                    case "estimatedDuration":
+                        estimatedDuration = longValue(json, value);
+                        break;
+                    case "building":
+                        building = value == JsonToken.VALUE_TRUE;
+                        break;
+                    case "actions":
+                        parseActions(json, value);
+                        break;
+                    case "changeSet":
+                        parseChangeSet(json, value);
+                        break;
+                    default:
+                        json.skipChildren();
+                        break;
+                }
+            }
+        }
+
+        private void parseDownstreamProjects(final JsonParser json) throws IOException
+        {
+            JsonToken project;
+            while ((project = json.nextToken()) != JsonToken.END_ARRAY)
+            {
+                final String downstreamJobName = parseJobReference(json, project);
+                if (downstreamJobName != null && !downstreamJobName.isEmpty())
+                {
+                    downstreamJobNames.add(downstreamJobName);
+                }
+            }
+        }
+
+        private void parseActions(final JsonParser json, final JsonToken actions) throws IOException
+        {
+            if (actions != JsonToken.START_ARRAY)
+            {
+                json.skipChildren();
+                return;
+            }
+            JsonToken action;
+            while ((action = json.nextToken()) != JsonToken.END_ARRAY)
+            {
+                if (action != JsonToken.START_OBJECT)
+                {
+                    json.skipChildren();
+                    continue;
+                }
+                boolean testReport = false;
+                int failCount = 0;
+                int skipCount = 0;
+                int totalCount = 0;
+                while (json.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    final String field = json.getCurrentName();
+                    final JsonToken value = json.nextToken();
+                    switch (field)
+                    {
+                        case "lastBuiltRevision":
+                            parseRevision(json, value);
+                            break;
+                        case "urlName":
+                            testReport = value == JsonToken.VALUE_STRING && "testReport".equals(json.getText());
+                            break;
+                        case "failCount":
+                            failCount = intValue(json, value);
+                            break;
+                        case "skipCount":
+                            skipCount = intValue(json, value);
+                            break;
+                        case "totalCount":
+                            totalCount = intValue(json, value);
+                            break;
+                        default:
+                            json.skipChildren();
+                            break;
+                    }
+                }
+                if (testReport && testResults == null)
+                {
+                    testResults = new TestResults(totalCount - failCount - skipCount, failCount, skipCount);
+                }
+            }
+        }
+
+        private void parseRevision(final JsonParser json, final JsonToken lastBuiltRevision) throws IOException
+        {
+            if (lastBuiltRevision != JsonToken.START_OBJECT)
+            {
+                json.skipChildren();
+                return;
+            }
+            final boolean first = "".equals(revision);
+            while (json.nextToken() == JsonToken.FIELD_NAME)
+            {
+                final String field = json.getCurrentName();
+                final JsonToken value = json.nextToken();
+                if (first && "SHA1".equals(field) && value == JsonToken.VALUE_STRING)
+                {
+                    revision = json.getText();
+                }
+                else
+                {
+                    json.skipChildren();
+                }
+            }
+        }
+
+        private void parseChangeSet(final JsonParser json, final JsonToken changeSet) throws IOException
+        {
+            if (changeSet != JsonToken.START_OBJECT)
+            {
+                json.skipChildren();
+                return;
+            }
+            while (json.nextToken() == JsonToken.FIELD_NAME)
+            {
+                final JsonToken value = json.nextToken();
+                if ("items".equals(json.getCurrentName()) && value == JsonToken.START_ARRAY)
+                {
+                    JsonToken item;
+                    while ((item = json.nextToken()) != JsonToken.END_ARRAY)
+                    {
+                        if (item == JsonToken.START_OBJECT)
+                        {
+                            parseComment(json);
+                        }
+                        else
+                        {
+                            json.skipChildren();
+                        }
+                    }
+                }
+                else
+                {
+                    json.skipChildren();
+                }
+            }
+        }
+
+        private void parseComment(final JsonParser json) throws IOException
+        {
+            String comment = "";
+            while (json.nextToken() == JsonToken.FIELD_NAME)
+            {
+                final String field = json.getCurrentName();
+                final JsonToken value = json.nextToken();
+                if ("comment".equals(field) && value == JsonToken.VALUE_STRING)
+                {
+                    comment = json.getText();
+                }
+                else
+                {
+                    json.skipChildren();
+                }
+            }
+            comments.add(comment);
+        }
+
+        private JobMetadata toJobMetadata()
+        {
+            return new JobMetadata(buildable, estimatedDuration, downstreamJobNames);
+        }
+
+        private Result<Integer, LatestBuildInformation> toLatestBuildInformation(final JobStatus previousJobStatus)
+        {
+            if (!hasLastBuild)
+            {
+                return Result.error(400);
+            }
+            final JobStatus jobStatus = !buildable ? JobStatus.DISABLED : JenkinsFacade.parse(result, previousJobStatus);
+            return Result.success(createLatestBuildInformation(revision,
+                                                               jobStatus,
+                                                               number,
+                                                               timestamp,
+                                                               estimatedDuration,
+                                                               comments.toArray(new String[comments.size()]),
+                                                               building,
+                                                               testResults,
+                                                               duration));
+        }
+    }
+}
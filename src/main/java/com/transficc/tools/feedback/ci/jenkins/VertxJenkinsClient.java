@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.ci.AsyncContinuousIntegrationServer;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.ClockService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+
+/**
+ * Talks to the Jenkins JSON API using the Vert.x web client, so requests are multiplexed over a pool of keep-alive connections by the event loop
+ * rather than each parking a thread until Jenkins responds.
+ */
+public final class VertxJenkinsClient implements AsyncContinuousIntegrationServer
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(VertxJenkinsClient.class);
+    private final WebClient webClient;
+    private final String basePath;
+    private final String authorization;
+    private final long requestTimeoutMillis;
+    private final JenkinsJsonParser parser;
+
+    public VertxJenkinsClient(final Vertx vertx,
+                              final URI jenkinsUrl,
+                              final String username,
+                              final String password,
+                              final int maxConnections,
+                              final long requestTimeoutMillis,
+                              final ClockService clockService,
+                              final VersionControl versionControl)
+    {
+        final boolean ssl = "https".equalsIgnoreCase(jenkinsUrl.getScheme());
+        final int defaultPort = ssl ? 443 : 80;
+        this.webClient = WebClient.create(vertx, new WebClientOptions()
+                .setDefaultHost(jenkinsUrl.getHost())
+                .setDefaultPort(jenkinsUrl.getPort() == -1 ? defaultPort : jenkinsUrl.getPort())
+                .setSsl(ssl)
+                .setKeepAlive(true)
+                .setMaxPoolSize(maxConnections)
+                .setConnectTimeout((int)requestTimeoutMillis)
+                .setTryUseCompression(true));
+        this.basePath = jenkinsUrl.getPath() == null ? "" : jenkinsUrl.getPath().replaceAll("/+$", "");
+        this.authorization = username == null ? null : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.parser = new JenkinsJsonParser(clockService, versionControl);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        return get(JenkinsJsonParser.jobPath(folderName) + "/api/json" + JenkinsJsonParser.FOLDER_QUERY, folder -> Result.success(parser.parseFolder(folder, folderName)));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        return get(JenkinsJsonParser.jobPath(jobName) + "/api/json" + JenkinsJsonParser.LATEST_BUILD_QUERY, job -> parser.parseLatestBuildInformation(job, previousJobStatus));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        return get("/api/json" + JenkinsJsonParser.allLatestBuildsQuery(previousJobStatuses.keySet()), root -> Result.success(parser.parseAllLatestBuildInformation(root, previousJobStatuses)));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        return get("/api/json" + JenkinsJsonParser.allJobMetadataQuery(jobNames), root -> Result.success(parser.parseAllJobMetadata(root)));
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return get("/queue/api/json" + JenkinsJsonParser.QUEUE_QUERY, root -> Result.success(parser.parseQueue(root)));
+    }
+
+    private <T> CompletableFuture<Result<Integer, T>> get(final String path, final ResponseParser<T> responseParser)
+    {
+        final CompletableFuture<Result<Integer, T>> result = new CompletableFuture<>();
+        final HttpRequest<Buffer> request = webClient.get(basePath + path).timeout(requestTimeoutMillis);
+        if (authorization != null)
+        {
+            request.putHeader(HttpHeaders.AUTHORIZATION.toString(), authorization);
+        }
+        request.send(response ->
+                     {
+                         if (response.succeeded())
+                         {
+                             result.complete(parse(path, response.result(), responseParser));
+                         }
+                         else if (response.cause() instanceof TimeoutException)
+                         {
+                             LOGGER.warn("Timed out after {}ms waiting for a response to {}", requestTimeoutMillis, path);
+                             result.complete(Result.error(504));
+                         }
+                         else
+                         {
+                             LOGGER.warn("Received an error trying to get {}", path, response.cause());
+                             result.complete(Result.error(500));
+                         }
+                     });
+        return result;
+    }
+
+    private <T> Result<Integer, T> parse(final String path, final HttpResponse<Buffer> response, final ResponseParser<T> responseParser)
+    {
+        if (response.statusCode() != 200)
+        {
+            return Result.error(response.statusCode());
+        }
+        final Buffer body = response.body();
+        if (body == null)
+        {
+            LOGGER.warn("Received an empty response to {}", path);
+            return Result.error(500);
+        }
+        //Stream straight out of the response buffer rather than copying it into an array first
+        try (InputStream json = new ByteBufInputStream(body.getByteBuf());
+             JsonParser jsonParser = parser.createParser(json))
+        {
+            return responseParser.parse(jsonParser);
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            LOGGER.warn("Unable to parse the response to {}", path, e);
+            return Result.error(500);
+        }
+    }
+
+    private interface ResponseParser<T>
+    {
+        Result<Integer, T> parse(JsonParser json) throws IOException;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.ci.AsyncContinuousIntegrationServer;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.util.LoggingThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends the result of every call to a CI server to a file as it completes, so the same traffic can be fed through Feedback again later by a
+ * {@link ReplayingContinuousIntegrationServer}. Results complete on the Vert.x event loop, so they are handed to a thread of the recording's own
+ * which encodes and writes them, flushing every {@link #FLUSH_INTERVAL_MILLIS} and on close.
+ */
+public final class RecordingContinuousIntegrationServer implements AsyncContinuousIntegrationServer, Closeable
+{
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordingContinuousIntegrationServer.class);
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer;
+    private final ClockService clockService;
+    private final Writer writer;
+    private final ScheduledExecutorService writerExecutor = Executors.newSingleThreadScheduledExecutor(new LoggingThreadFactory("recording"));
+    //Only touched by the writer thread
+    private boolean failedToRecord;
+
+    public RecordingContinuousIntegrationServer(final AsyncContinuousIntegrationServer continuousIntegrationServer, final Path recording, final ClockService clockService)
+    {
+        this.continuousIntegrationServer = continuousIntegrationServer;
+        this.clockService = clockService;
+        try
+        {
+            this.writer = Files.newBufferedWriter(recording, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        catch (final IOException e)
+        {
+            writerExecutor.shutdown();
+            throw new UncheckedIOException(e);
+        }
+        writerExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        return record(continuousIntegrationServer.getFolder(folderName), TrafficFormat.FOLDER, folderName, TrafficFormat::encodeFolder);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        return record(continuousIntegrationServer.getLatestBuildInformation(jobName, previousJobStatus), TrafficFormat.BUILD, jobName, TrafficFormat::encodeBuildInformation);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        return record(continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses), TrafficFormat.ALL_BUILDS, null, TrafficFormat::encodeAllBuildInformation);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        return record(continuousIntegrationServer.getAllJobMetadata(jobNames), TrafficFormat.ALL_METADATA, null, TrafficFormat::encodeAllJobMetadata);
+    }
+
+    @Override
+    public CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        return record(continuousIntegrationServer.getQueue(), TrafficFormat.QUEUE, null, TrafficFormat::encodeQueue);
+    }
+
+    /**
+     * Writes out everything recorded so far before closing the file.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        final Future<Void> closed = writerExecutor.submit(() ->
+                                                          {
+                                                              writer.close();
+                                                              return null;
+                                                          });
+        writerExecutor.shutdown();
+        try
+        {
+            closed.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted whilst closing the recording");
+        }
+        catch (final ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private <T> CompletableFuture<Result<Integer, T>> record(final CompletableFuture<Result<Integer, T>> response,
+                                                             final String call,
+                                                             final String name,
+                                                             final Function<T, JsonNode> encoder)
+    {
+        //Record before the caller sees the result, so the order in the recording matches the order results were acted on
+        final CompletableFuture<Result<Integer, T>> recorded = response.whenComplete((result, throwable) ->
+                                                                                    {
+                                                                                        if (throwable == null)
+                                                                                        {
+                                                                                            write(clockService.currentTimeMillis(), call, name, result, encoder);
+                                                                                        }
+                                                                                    });
+        //A caller which gives up on the call cancels the request itself
+        recorded.whenComplete((result, throwable) ->
+                              {
+                                  if (recorded.isCancelled())
+                                  {
+                                      response.cancel(true);
+                                  }
+                              });
+        return recorded;
+    }
+
+    private <T> void write(final long time, final String call, final String name, final Result<Integer, T> result, final Function<T, JsonNode> encoder)
+    {
+        try
+        {
+            //The writer thread is the only one to touch the file, so records are written in the order they are handed over
+            writerExecutor.execute(() -> write(TrafficFormat.record(time, call, name, result, encoder).toString()));
+        }
+        catch (final RejectedExecutionException e)
+        {
+            LOGGER.debug("Not recording a {} call which completed after the recording was closed", call);
+        }
+    }
+
+    private void write(final String record)
+    {
+        try
+        {
+            writer.write(record);
+            writer.write('\n');
+            failedToRecord = false;
+        }
+        catch (final IOException e)
+        {
+            onFailedToRecord(e);
+        }
+    }
+
+    private void flush()
+    {
+        try
+        {
+            writer.flush();
+        }
+        catch (final IOException e)
+        {
+            onFailedToRecord(e);
+        }
+    }
+
+    private void onFailedToRecord(final IOException e)
+    {
+        //Recording is only for diagnostics, so carry on polling without it
+        if (!failedToRecord)
+        {
+            LOGGER.warn("Unable to record CI server traffic", e);
+            failedToRecord = true;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.replay;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.ci.AsyncContinuousIntegrationServer;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.ClockService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plays back traffic captured by a {@link RecordingContinuousIntegrationServer}. The recording is read as replay time passes, which runs from the
+ * first recorded call at the given speed, and each call completes with the most recent result recorded for it. A job or folder with no result
+ * recorded yet is reported with 400, as though it had never been built.
+ */
+public final class ReplayingContinuousIntegrationServer implements AsyncContinuousIntegrationServer, Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayingContinuousIntegrationServer.class);
+    private static final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> NOTHING_RECORDED = Result.error(400);
+    private final BufferedReader reader;
+    private final double speed;
+    private final ClockService clockService;
+    private final VersionControl versionControl;
+    private final Map<String, Result<Integer, Folder>> folderNameToFolder = new HashMap<>();
+    private final Map<String, Result<Integer, LatestBuildInformation>> jobNameToBuildInformation = new HashMap<>();
+    private final long recordingStartTime;
+    private final long replayStartTime;
+    private Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> allBuildInformation = NOTHING_RECORDED;
+    private Result<Integer, Map<String, JobMetadata>> allJobMetadata = Result.error(400);
+    private Result<Integer, List<QueuedBuild>> queue = Result.error(400);
+    private JsonNode nextRecord;
+
+    public ReplayingContinuousIntegrationServer(final Path recording, final double speed, final ClockService clockService, final VersionControl versionControl)
+    {
+        this.speed = speed;
+        this.clockService = clockService;
+        this.versionControl = versionControl;
+        try
+        {
+            this.reader = Files.newBufferedReader(recording, StandardCharsets.UTF_8);
+            this.nextRecord = readRecord();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        this.recordingStartTime = nextRecord == null ? 0 : nextRecord.path("at").asLong();
+        this.replayStartTime = clockService.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized CompletableFuture<Result<Integer, Folder>> getFolder(final String folderName)
+    {
+        catchUp();
+        return CompletableFuture.completedFuture(folderNameToFolder.getOrDefault(folderName, Result.error(400)));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Result<Integer, LatestBuildInformation>> getLatestBuildInformation(final String jobName, final JobStatus previousJobStatus)
+    {
+        catchUp();
+        return CompletableFuture.completedFuture(jobNameToBuildInformation.getOrDefault(jobName, Result.error(400)));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>>> getAllLatestBuildInformation(final Map<String, JobStatus> previousJobStatuses)
+    {
+        catchUp();
+        return CompletableFuture.completedFuture(allBuildInformation);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Result<Integer, Map<String, JobMetadata>>> getAllJobMetadata(final Collection<String> jobNames)
+    {
+        catchUp();
+        return CompletableFuture.completedFuture(allJobMetadata);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Result<Integer, List<QueuedBuild>>> getQueue()
+    {
+        catchUp();
+        return CompletableFuture.completedFuture(queue);
+    }
+
+    /**
+     * Whether every recorded call has been played back.
+     */
+    public synchronized boolean isFinished()
+    {
+        catchUp();
+        return nextRecord == null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        reader.close();
+    }
+
+    private void catchUp()
+    {
+        final long replayTime = recordingStartTime + (long)((clockService.currentTimeMillis() - replayStartTime) * speed);
+        try
+        {
+            while (nextRecord != null && nextRecord.path("at").asLong() <= replayTime)
+            {
+                play(nextRecord);
+                nextRecord = readRecord();
+            }
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn("Unable to read any more of the recording", e);
+            nextRecord = null;
+        }
+    }
+
+    private void play(final JsonNode record)
+    {
+        final String name = record.path("name").asText();
+        switch (record.path("call").asText())
+        {
+            case TrafficFormat.FOLDER:
+                folderNameToFolder.put(name, TrafficFormat.result(record, json -> TrafficFormat.decodeFolder(json, versionControl)));
+                break;
+            case TrafficFormat.BUILD:
+                jobNameToBuildInformation.put(name, TrafficFormat.result(record, TrafficFormat::decodeBuildInformation));
+                break;
+            case TrafficFormat.ALL_BUILDS:
+                allBuildInformation = TrafficFormat.result(record, TrafficFormat::decodeAllBuildInformation);
+                break;
+            case TrafficFormat.ALL_METADATA:
+                allJobMetadata = TrafficFormat.result(record, TrafficFormat::decodeAllJobMetadata);
+                break;
+            case TrafficFormat.QUEUE:
+                queue = TrafficFormat.result(record, TrafficFormat::decodeQueue);
+                break;
+            default:
+                LOGGER.warn("Skipping unknown recorded call {}", record.path("call").asText());
+                break;
+        }
+    }
+
+    private JsonNode readRecord() throws IOException
+    {
+        String line = reader.readLine();
+        while (line != null && line.isEmpty())
+        {
+            line = reader.readLine();
+        }
+        return line == null ? null : TrafficFormat.OBJECT_MAPPER.readTree(line);
+    }
+}
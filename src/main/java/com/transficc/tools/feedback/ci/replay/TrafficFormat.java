@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.replay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.domain.TestResults;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+/**
+ * Recorded traffic is written one JSON object per line, each holding when the call completed, which call it was, the folder or job it was for and
+ * either the status code or the result it completed with, e.g.
+ * <pre>{"at":1502365612000,"call":"build","name":"master-commit","result":{"revision":"34534509abfd","status":"SUCCESS",...}}</pre>
+ */
+final class TrafficFormat
+{
+    static final String FOLDER = "folder";
+    static final String BUILD = "build";
+    static final String ALL_BUILDS = "builds";
+    static final String ALL_METADATA = "metadata";
+    static final String QUEUE = "queue";
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private TrafficFormat()
+    {
+    }
+
+    static <T> ObjectNode record(final long at, final String call, final String name, final Result<Integer, T> result, final Function<T, JsonNode> encoder)
+    {
+        final ObjectNode record = OBJECT_MAPPER.createObjectNode();
+        record.put("at", at);
+        record.put("call", call);
+        if (name != null)
+        {
+            record.put("name", name);
+        }
+        result.consume(statusCode -> record.put("status", statusCode),
+                       value -> record.set("result", encoder.apply(value)));
+        return record;
+    }
+
+    static <T> Result<Integer, T> result(final JsonNode record, final Function<JsonNode, T> decoder)
+    {
+        return record.has("status") ? Result.error(record.path("status").asInt()) : Result.success(decoder.apply(record.path("result")));
+    }
+
+    static JsonNode encodeFolder(final Folder folder)
+    {
+        final ObjectNode json = OBJECT_MAPPER.createObjectNode();
+        final ArrayNode jobs = json.putArray("jobs");
+        for (final Job job : folder.getJobs())
+        {
+            jobs.addObject()
+                    .put("name", job.getName())
+                    .put("url", job.getUrl())
+                    .put("status", job.getJobStatus().name());
+        }
+        final ObjectNode folders = json.putObject("folders");
+        folder.getFolderNameToMarker().forEach(folders::put);
+        return json;
+    }
+
+    static Folder decodeFolder(final JsonNode json, final VersionControl versionControl)
+    {
+        final List<Job> jobs = new ArrayList<>();
+        for (final JsonNode job : json.path("jobs"))
+        {
+            jobs.add(new Job(job.path("name").asText(), job.path("url").asText(), JobStatus.valueOf(job.path("status").asText()), versionControl));
+        }
+        final Map<String, String> folderNameToMarker = new HashMap<>();
+        final Iterator<Map.Entry<String, JsonNode>> folders = json.path("folders").fields();
+        while (folders.hasNext())
+        {
+            final Map.Entry<String, JsonNode> folder = folders.next();
+            folderNameToMarker.put(folder.getKey(), folder.getValue().asText());
+        }
+        return new Folder(jobs, folderNameToMarker);
+    }
+
+    static JsonNode encodeBuildInformation(final LatestBuildInformation buildInformation)
+    {
+        final ObjectNode json = OBJECT_MAPPER.createObjectNode()
+                .put("revision", buildInformation.getRevision())
+                .put("status", buildInformation.getJobStatus() == null ? null : buildInformation.getJobStatus().name())
+                .put("number", buildInformation.getNumber())
+                .put("timestamp", buildInformation.getTimestamp())
+                .put("completion", buildInformation.getJobCompletionPercentage())
+                .put("building", buildInformation.isBuilding())
+                .put("duration", buildInformation.getDuration());
+        final ArrayNode comments = json.putArray("comments");
+        for (final String comment : buildInformation.getComments())
+        {
+            comments.add(comment);
+        }
+        final TestResults testResults = buildInformation.getTestResults();
+        if (testResults != null)
+        {
+            json.putArray("tests").add(testResults.getPassCount()).add(testResults.getFailCount()).add(testResults.getSkipCount());
+        }
+        return json;
+    }
+
+    static LatestBuildInformation decodeBuildInformation(final JsonNode json)
+    {
+        final JsonNode commentsJson = json.path("comments");
+        final String[] comments = new String[commentsJson.size()];
+        for (int i = 0; i < comments.length; i++)
+        {
+            comments[i] = commentsJson.get(i).asText();
+        }
+        final JsonNode tests = json.path("tests");
+        return new LatestBuildInformation(json.path("revision").asText(),
+                                          json.path("status").isTextual() ? JobStatus.valueOf(json.path("status").asText()) : null,
+                                          json.path("number").asInt(),
+                                          json.path("timestamp").asLong(),
+                                          json.path("completion").asDouble(),
+                                          comments,
+                                          json.path("building").asBoolean(),
+                                          tests.isArray() ? new TestResults(tests.get(0).asInt(), tests.get(1).asInt(), tests.get(2).asInt()) : null,
+                                          json.path("duration").asLong());
+    }
+
+    static JsonNode encodeAllBuildInformation(final Map<String, Result<Integer, LatestBuildInformation>> jobNameToBuildInformation)
+    {
+        final ObjectNode json = OBJECT_MAPPER.createObjectNode();
+        jobNameToBuildInformation.forEach((jobName, buildInformation) ->
+                                          {
+                                              final ObjectNode job = json.putObject(jobName);
+                                              buildInformation.consume(statusCode -> job.put("status", statusCode),
+                                                                       value -> job.set("result", encodeBuildInformation(value)));
+                                          });
+        return json;
+    }
+
+    static Map<String, Result<Integer, LatestBuildInformation>> decodeAllBuildInformation(final JsonNode json)
+    {
+        final Map<String, Result<Integer, LatestBuildInformation>> jobNameToBuildInformation = new HashMap<>();
+        final Iterator<Map.Entry<String, JsonNode>> jobs = json.fields();
+        while (jobs.hasNext())
+        {
+            final Map.Entry<String, JsonNode> job = jobs.next();
+            jobNameToBuildInformation.put(job.getKey(), result(job.getValue(), TrafficFormat::decodeBuildInformation));
+        }
+        return jobNameToBuildInformation;
+    }
+
+    static JsonNode encodeAllJobMetadata(final Map<String, JobMetadata> jobNameToMetadata)
+    {
+        final ObjectNode json = OBJECT_MAPPER.createObjectNode();
+        jobNameToMetadata.forEach((jobName, metadata) ->
+                                  {
+                                      final ObjectNode job = json.putObject(jobName)
+                                              .put("buildable", metadata.isBuildable())
+                                              .put("estimatedDuration", metadata.getEstimatedDuration());
+                                      metadata.getDownstreamJobNames().forEach(job.putArray("downstream")::add);
+                                  });
+        return json;
+    }
+
+    static Map<String, JobMetadata> decodeAllJobMetadata(final JsonNode json)
+    {
+        final Map<String, JobMetadata> jobNameToMetadata = new HashMap<>();
+        final Iterator<Map.Entry<String, JsonNode>> jobs = json.fields();
+        while (jobs.hasNext())
+        {
+            final Map.Entry<String, JsonNode> job = jobs.next();
+            final List<String> downstreamJobNames = new ArrayList<>();
+            job.getValue().path("downstream").forEach(downstreamJobName -> downstreamJobNames.add(downstreamJobName.asText()));
+            jobNameToMetadata.put(job.getKey(), new JobMetadata(job.getValue().path("buildable").asBoolean(), job.getValue().path("estimatedDuration").asLong(), downstreamJobNames));
+        }
+        return jobNameToMetadata;
+    }
+
+    static JsonNode encodeQueue(final List<QueuedBuild> queuedBuilds)
+    {
+        final ArrayNode json = OBJECT_MAPPER.createArrayNode();
+        queuedBuilds.forEach(queuedBuild -> json.addObject()
+                .put("name", queuedBuild.getJobName())
+                .put("inQueueSince", queuedBuild.getInQueueSince())
+                .put("aboutToStart", queuedBuild.isAboutToStart()));
+        return json;
+    }
+
+    static List<QueuedBuild> decodeQueue(final JsonNode json)
+    {
+        final List<QueuedBuild> queuedBuilds = new ArrayList<>();
+        json.forEach(queuedBuild -> queuedBuilds.add(new QueuedBuild(queuedBuild.path("name").asText(),
+                                                                     queuedBuild.path("inQueueSince").asLong(),
+                                                                     queuedBuild.path("aboutToStart").asBoolean())));
+        return queuedBuilds;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.domain;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The direct contents of a folder (or multibranch project) on the CI server: the jobs it contains and the folders nested within it.
+ * Each nested folder has a marker which only changes when something has been added to or removed from it.
+ */
+public class Folder
+{
+    private final List<Job> jobs;
+    private final Map<String, String> folderNameToMarker;
+
+    public Folder(final List<Job> jobs, final Map<String, String> folderNameToMarker)
+    {
+        this.jobs = jobs;
+        this.folderNameToMarker = folderNameToMarker;
+    }
+
+    public List<Job> getJobs()
+    {
+        return jobs;
+    }
+
+    public Map<String, String> getFolderNameToMarker()
+    {
+        return folderNameToMarker;
+    }
+}
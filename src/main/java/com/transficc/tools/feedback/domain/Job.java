@@ -70,21 +70,93 @@ public class Job
         return needsToBeUpdated;
     }
 
+    /**
+     * Applies a build event pushed by the CI server. Notifications only describe the phase and outcome of a build, so anything else already known about the
+     * same build is carried over until the next poll fills in the rest.
+     */
+    public boolean wasNotified(final int buildNumber, final JobStatus jobStatus, final boolean building, final String revision, final long timestamp)
+    {
+        final boolean sameBuild = buildNumber == this.buildNumber;
+        final double jobCompletionPercentage;
+        if (building)
+        {
+            jobCompletionPercentage = sameBuild ? this.jobCompletionPercentage : 0;
+        }
+        else
+        {
+            jobCompletionPercentage = 100;
+        }
+        //Not every job is built from a commit, and a notification without one says nothing about the revision already known
+        return wasUpdated(new LatestBuildInformation(revision == null || revision.isEmpty() ? this.revision : revision,
+                                                     jobStatus,
+                                                     buildNumber,
+                                                     sameBuild ? this.timestamp : timestamp,
+                                                     jobCompletionPercentage,
+                                                     sameBuild ? this.comments : NO_COMMENTS,
+                                                     building,
+                                                     sameBuild ? this.jobsTestResults : null,
+                                                     0));
+    }
+
+    public Job renamed(final String newName)
+    {
+        return new Job(newName, url, jobStatus, versionControl);
+    }
+
+    /**
+     * The same job at a new URL, e.g. once Jenkins has been moved to a different address, keeping everything already known about its builds.
+     */
+    public Job movedTo(final String newUrl)
+    {
+        final Job job = new Job(name, newUrl, jobStatus, versionControl);
+        job.revision = revision;
+        job.jobStatusToDisplay = jobStatusToDisplay;
+        job.buildNumber = buildNumber;
+        job.jobCompletionPercentage = jobCompletionPercentage;
+        job.comments = comments;
+        job.building = building;
+        job.jobsTestResults = jobsTestResults;
+        job.timestamp = timestamp;
+        job.hasJustCompleted = hasJustCompleted;
+        return job;
+    }
+
     public String getName()
     {
         return name;
     }
 
+    public String getUrl()
+    {
+        return url;
+    }
+
     public JobStatus getJobStatus()
     {
         return jobStatus;
     }
 
-    public PublishableJob createPublishable(final int priority, final boolean shouldDisplayCommentsForJob)
+    public int getBuildNumber()
+    {
+        return buildNumber;
+    }
+
+    public boolean isBuilding()
+    {
+        return building;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    public PublishableJob createPublishable(final int priority, final boolean shouldDisplayCommentsForJob, final boolean stale, final long queuedSince, final long queueWaitMillis)
     {
         final String revision = calculateRevision();
         final String[] comments = shouldDisplayCommentsForJob ? this.comments : NO_COMMENTS;
-        return new PublishableJob(name, url, priority, revision, jobStatus, jobStatusToDisplay, buildNumber, timestamp, jobCompletionPercentage, comments, building, jobsTestResults);
+        return new PublishableJob(name, url, priority, revision, jobStatus, jobStatusToDisplay, buildNumber, timestamp, jobCompletionPercentage, comments, building, jobsTestResults,
+                                  stale, queuedSince, queueWaitMillis);
     }
 
     private String calculateRevision()
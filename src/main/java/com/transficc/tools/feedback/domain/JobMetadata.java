@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.domain;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The details of a job which rarely change, so are fetched far less often than its latest build. They are combined with each polled build to
+ * give the status and progress shown for the job, and name the jobs a completed build triggers.
+ */
+public final class JobMetadata
+{
+    /**
+     * Used until a job's metadata has been fetched, leaving its build information as the CI server reported it.
+     */
+    public static final JobMetadata UNKNOWN = new JobMetadata(true, -1);
+    private final boolean buildable;
+    private final long estimatedDuration;
+    private final List<String> downstreamJobNames;
+
+    public JobMetadata(final boolean buildable, final long estimatedDuration)
+    {
+        this(buildable, estimatedDuration, Collections.emptyList());
+    }
+
+    public JobMetadata(final boolean buildable, final long estimatedDuration, final List<String> downstreamJobNames)
+    {
+        this.buildable = buildable;
+        this.estimatedDuration = estimatedDuration;
+        this.downstreamJobNames = Collections.unmodifiableList(downstreamJobNames);
+    }
+
+    public boolean isBuildable()
+    {
+        return buildable;
+    }
+
+    public long getEstimatedDuration()
+    {
+        return estimatedDuration;
+    }
+
+    /**
+     * The full names of the jobs the CI server starts once a build of this job completes.
+     */
+    public List<String> getDownstreamJobNames()
+    {
+        return downstreamJobNames;
+    }
+
+    /**
+     * Fills in the parts of a build's information which depend on this metadata: a job which cannot be built is disabled whatever its last build
+     * did, and progress is measured against the estimated duration when Jenkins has one.
+     */
+    public LatestBuildInformation complete(final LatestBuildInformation buildInformation, final long currentTimeMillis)
+    {
+        if (buildable && estimatedDuration <= 0)
+        {
+            return buildInformation;
+        }
+        final JobStatus jobStatus = buildable ? buildInformation.getJobStatus() : JobStatus.DISABLED;
+        final double jobCompletionPercentage = estimatedDuration > 0 ?
+                                               (double)(currentTimeMillis - buildInformation.getTimestamp()) / estimatedDuration * 100 :
+                                               buildInformation.getJobCompletionPercentage();
+        return new LatestBuildInformation(buildInformation.getRevision(),
+                                          jobStatus,
+                                          buildInformation.getNumber(),
+                                          buildInformation.getTimestamp(),
+                                          jobCompletionPercentage,
+                                          buildInformation.getComments(),
+                                          buildInformation.isBuilding(),
+                                          buildInformation.getTestResults(),
+                                          buildInformation.getDuration());
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final JobMetadata that = (JobMetadata)o;
+        return buildable == that.buildable && estimatedDuration == that.estimatedDuration && downstreamJobNames.equals(that.downstreamJobNames);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = buildable ? 1 : 0;
+        result = 31 * result + (int)(estimatedDuration ^ (estimatedDuration >>> 32));
+        result = 31 * result + downstreamJobNames.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "JobMetadata{" +
+               "buildable=" + buildable +
+               ", estimatedDuration=" + estimatedDuration +
+               ", downstreamJobNames=" + downstreamJobNames +
+               '}';
+    }
+}
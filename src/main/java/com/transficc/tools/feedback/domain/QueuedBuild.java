@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.domain;
+
+/**
+ * A build waiting in the CI server's queue. A build which is about to start is only waiting for an executor, or for a quiet period which is
+ * nearly over, rather than being blocked behind another build.
+ */
+public final class QueuedBuild
+{
+    private final String jobName;
+    private final long inQueueSince;
+    private final boolean aboutToStart;
+
+    public QueuedBuild(final String jobName, final long inQueueSince, final boolean aboutToStart)
+    {
+        this.jobName = jobName;
+        this.inQueueSince = inQueueSince;
+        this.aboutToStart = aboutToStart;
+    }
+
+    public String getJobName()
+    {
+        return jobName;
+    }
+
+    public long getInQueueSince()
+    {
+        return inQueueSince;
+    }
+
+    public boolean isAboutToStart()
+    {
+        return aboutToStart;
+    }
+
+    public QueuedBuild renamed(final String newJobName)
+    {
+        return new QueuedBuild(newJobName, inQueueSince, aboutToStart);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "QueuedBuild{" +
+               "jobName='" + jobName + '\'' +
+               ", inQueueSince=" + inQueueSince +
+               ", aboutToStart=" + aboutToStart +
+               '}';
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public final class Counters
+{
+    private final Map<String, LongAdder> nameToCounter = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> nameToGauge = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> nameToHistogram = new ConcurrentHashMap<>();
+
+    public void increment(final String name)
+    {
+        nameToCounter.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Reports a value read at the time of each snapshot, such as the length of a queue, alongside the counters.
+     */
+    public void gauge(final String name, final LongSupplier value)
+    {
+        nameToGauge.put(name, value);
+    }
+
+    /**
+     * A histogram reported as its count, median, 99th percentile and maximum.
+     */
+    public Histogram histogram(final String name)
+    {
+        return nameToHistogram.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public long get(final String name)
+    {
+        final LongAdder counter = nameToCounter.get(name);
+        if (counter != null)
+        {
+            return counter.sum();
+        }
+        final LongSupplier gauge = nameToGauge.get(name);
+        return gauge == null ? 0 : gauge.getAsLong();
+    }
+
+    public Map<String, Long> snapshot()
+    {
+        final Map<String, Long> snapshot = new TreeMap<>();
+        nameToCounter.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        nameToGauge.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        nameToHistogram.forEach((name, histogram) -> histogram.snapshot(name, snapshot));
+        return snapshot;
+    }
+}
@@ -16,7 +16,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
@@ -24,6 +29,7 @@ import java.util.Properties;
 import com.transficc.functionality.Optionality;
 import com.transficc.tools.feedback.FeedbackMain;
 import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.web.messaging.ConflatingMessageQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,11 +37,45 @@ import org.slf4j.LoggerFactory;
 public class FeedbackProperties
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(FeedbackProperties.class);
+    private static final String SERVER_PREFIX = "feedback.jenkins.";
+    private static final String SHARED_PREFIX = "^feedback\\.(jenkins\\.)?";
     private final Properties properties;
+    private final String jenkinsServerName;
 
     public FeedbackProperties(final Optional<File> propertiesFile)
     {
-        this.properties = createProperties(propertiesFile);
+        this(createProperties(propertiesFile), "");
+    }
+
+    FeedbackProperties(final Properties properties, final String jenkinsServerName)
+    {
+        this.properties = properties;
+        this.jenkinsServerName = jenkinsServerName;
+    }
+
+    /**
+     * One view of these properties per Jenkins server listed in feedback.jenkins.servers, in which feedback.jenkins.[server].url overrides
+     * feedback.jenkins.url, feedback.jenkins.[server].poll.timeout overrides feedback.poll.timeout, and so on. Without a list of servers
+     * these properties describe the only Jenkins server.
+     */
+    public List<FeedbackProperties> getJenkinsServers()
+    {
+        final String[] serverNames = getArrayProperty("feedback.jenkins.servers");
+        if (serverNames.length == 0)
+        {
+            return Collections.singletonList(this);
+        }
+        final List<FeedbackProperties> servers = new ArrayList<>();
+        for (final String serverName : serverNames)
+        {
+            servers.add(new FeedbackProperties(properties, serverName.trim()));
+        }
+        return servers;
+    }
+
+    public String getJenkinsServerName()
+    {
+        return jenkinsServerName;
     }
 
     public String getVertxCacheDir()
@@ -62,17 +102,17 @@ public class FeedbackProperties
 
     public String getJenkinsUrl()
     {
-        return properties.getProperty("feedback.jenkins.url");
+        return getProperty("feedback.jenkins.url");
     }
 
     public String getJenkinsUsername()
     {
-        return properties.getProperty("feedback.jenkins.username");
+        return getProperty("feedback.jenkins.username");
     }
 
     public String getJenkinsPassword()
     {
-        return properties.getProperty("feedback.jenkins.password");
+        return getProperty("feedback.jenkins.password");
     }
 
     public int getFeedbackPort()
@@ -80,24 +120,177 @@ public class FeedbackProperties
         return getInteger("feedback.port");
     }
 
+    public int getPublishBufferSize()
+    {
+        return getInteger("feedback.publish.buffer", 4096);
+    }
+
+    public int getPublishBatchSize()
+    {
+        return getInteger("feedback.publish.batch.size", 256);
+    }
+
+    public int getPublishBatchMillis()
+    {
+        return getInteger("feedback.publish.batch.millis", 50);
+    }
+
+    public int getSessionMaxPendingFrames()
+    {
+        return getInteger("feedback.publish.session.pending", 5000);
+    }
+
+    public int getSlowConsumerTimeoutMillis()
+    {
+        return getInteger("feedback.publish.session.timeout", 30_000);
+    }
+
+    public int getReplayWindowSize()
+    {
+        return getInteger("feedback.publish.replay", 1024);
+    }
+
+    public ConflatingMessageQueue.WaitStrategy getPublishWaitStrategy()
+    {
+        final String property = getProperty("feedback.publish.wait");
+        return property == null ? ConflatingMessageQueue.WaitStrategy.BLOCKING : ConflatingMessageQueue.WaitStrategy.valueOf(property.toUpperCase());
+    }
+
+    public ConflatingMessageQueue.OverflowPolicy getPublishOverflowPolicy()
+    {
+        final String property = getProperty("feedback.publish.overflow");
+        return property == null ? ConflatingMessageQueue.OverflowPolicy.CONFLATE : ConflatingMessageQueue.OverflowPolicy.valueOf(property.toUpperCase());
+    }
+
     public String getMasterJobName()
     {
-        return properties.getProperty("feedback.job.master");
+        return getProperty("feedback.job.master");
     }
 
     public VersionControl getVersionControl()
     {
-        return VersionControl.valueOf(properties.getProperty("feedback.versioncontrol").toUpperCase());
+        return VersionControl.valueOf(getProperty("feedback.versioncontrol").toUpperCase());
+    }
+
+    public int getPollerThreads()
+    {
+        return getInteger("feedback.poll.threads", 8);
+    }
+
+    public int getPollingThreads()
+    {
+        return getInteger("feedback.poll.scheduler.threads", 2);
+    }
+
+    public int getDiscoveryThreads()
+    {
+        return getInteger("feedback.discovery.threads", 1);
+    }
+
+    public int getDiscoveryRequests()
+    {
+        return getInteger("feedback.discovery.requests", 8);
+    }
+
+    public int getPollTimeoutMillis()
+    {
+        return getInteger("feedback.poll.timeout", 10_000);
+    }
+
+    public int getPollBudgetMillis()
+    {
+        return getInteger("feedback.poll.budget", 15_000);
+    }
+
+    public int getJobMetadataTimeToLiveMillis()
+    {
+        return getInteger("feedback.poll.metadata.ttl", 600_000);
+    }
+
+    public int getCoalescingWindowMillis()
+    {
+        return getInteger("feedback.poll.coalesce.window", 500);
+    }
+
+    public double getRequestsPerSecond()
+    {
+        final String property = getProperty("feedback.jenkins.rate");
+        return property == null ? 0 : Double.parseDouble(property);
+    }
+
+    public int getRequestBurst()
+    {
+        return getInteger("feedback.jenkins.burst", 20);
+    }
+
+    public int getBreakerFailureThreshold()
+    {
+        return getInteger("feedback.breaker.failures", 5);
+    }
+
+    public int getBreakerOpenMillis()
+    {
+        return getInteger("feedback.breaker.open", 30_000);
+    }
+
+    public boolean isBulkPolling()
+    {
+        return Boolean.parseBoolean(getProperty("feedback.poll.bulk"));
+    }
+
+    public boolean isBlockingJenkinsClient()
+    {
+        return Boolean.parseBoolean(getProperty("feedback.jenkins.blocking"));
+    }
+
+    public boolean isVirtualThreads()
+    {
+        return Boolean.parseBoolean(getProperty("feedback.jenkins.virtualThreads"));
+    }
+
+    public Optional<Path> getRecordingFile()
+    {
+        return Optional.ofNullable(getProperty("feedback.jenkins.record")).map(Paths::get);
+    }
+
+    public Optional<Path> getReplayFile()
+    {
+        return Optional.ofNullable(getProperty("feedback.jenkins.replay")).map(Paths::get);
+    }
+
+    public double getReplaySpeed()
+    {
+        final String property = getProperty("feedback.jenkins.replay.speed");
+        return property == null ? 1 : Double.parseDouble(property);
+    }
+
+    private String getProperty(final String key)
+    {
+        if (!jenkinsServerName.isEmpty())
+        {
+            final String serverProperty = properties.getProperty(SERVER_PREFIX + jenkinsServerName + "." + key.replaceFirst(SHARED_PREFIX, ""));
+            if (serverProperty != null)
+            {
+                return serverProperty;
+            }
+        }
+        return properties.getProperty(key);
     }
 
     private int getInteger(final String key)
     {
-        return Integer.parseInt(properties.getProperty(key));
+        return Integer.parseInt(getProperty(key));
+    }
+
+    private int getInteger(final String key, final int defaultValue)
+    {
+        final String property = getProperty(key);
+        return property == null ? defaultValue : Integer.parseInt(property);
     }
 
     private String[] getArrayProperty(final String key)
     {
-        final String property = properties.getProperty(key);
+        final String property = getProperty(key);
         if (property == null)
         {
             return new String[0];
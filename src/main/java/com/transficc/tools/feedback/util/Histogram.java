@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.util;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Counts values into buckets by their power of two, so recording never allocates and percentiles are accurate to within a factor of two.
+ */
+public final class Histogram
+{
+    private static final int BUCKETS = 65;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(final long value)
+    {
+        final long positiveValue = Math.max(0, value);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(positiveValue));
+        max.accumulate(positiveValue);
+    }
+
+    public long count()
+    {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * The largest value which could be in the bucket holding the given fraction of values, or the largest value recorded if that is smaller.
+     */
+    public long percentile(final double fraction)
+    {
+        final long target = (long)Math.ceil(count() * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= target && seen > 0)
+            {
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    void snapshot(final String name, final Map<String, Long> snapshot)
+    {
+        snapshot.put(name + ".count", count());
+        snapshot.put(name + ".p50", percentile(0.5));
+        snapshot.put(name + ".p99", percentile(0.99));
+        snapshot.put(name + ".max", max.get());
+    }
+}
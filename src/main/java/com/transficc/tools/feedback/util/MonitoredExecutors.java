@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.util;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates executors which report how busy they are as gauges named after them: {@code .queued} is the number of tasks waiting, which for a
+ * scheduled executor includes those not yet due, {@code .active} the number of threads running a task and {@code .saturation} the percentage of
+ * threads doing so.
+ */
+public final class MonitoredExecutors
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitoredExecutors.class);
+
+    private MonitoredExecutors()
+    {
+    }
+
+    public static ScheduledExecutorService newScheduledThreadPool(final String name, final int threads, final Counters counters)
+    {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, new LoggingThreadFactory(name));
+        //Timeouts are cancelled far more often than they fire, so do not leave them queued until they would have
+        executor.setRemoveOnCancelPolicy(true);
+        monitor(name, executor, counters);
+        return executor;
+    }
+
+    public static ExecutorService newFixedThreadPool(final String name, final int threads, final Counters counters)
+    {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new LoggingThreadFactory(name));
+        monitor(name, executor, counters);
+        return executor;
+    }
+
+    /**
+     * An executor which starts a virtual thread for each task, if the runtime has them. Virtual threads are not pooled, so there is nothing to
+     * report on beyond the tasks run.
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            final Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService)factory.invoke(null));
+        }
+        catch (final NoSuchMethodException e)
+        {
+            return Optional.empty();
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            LOGGER.warn("Unable to create virtual threads", e);
+            return Optional.empty();
+        }
+    }
+
+    private static void monitor(final String name, final ThreadPoolExecutor executor, final Counters counters)
+    {
+        counters.gauge(name + ".queued", () -> executor.getQueue().size());
+        counters.gauge(name + ".active", executor::getActiveCount);
+        counters.gauge(name + ".saturation", () -> executor.getActiveCount() * 100L / Math.max(1, executor.getCorePoolSize()));
+    }
+}
@@ -15,6 +15,7 @@ package com.transficc.tools.feedback.util;
 import java.io.UncheckedIOException;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class SafeSerialisation
@@ -37,4 +38,24 @@ public class SafeSerialisation
             throw new UncheckedIOException(e);
         }
     }
+
+    public <T> byte[] serialiseToBytes(final T value)
+    {
+        try
+        {
+            return objectMapper.writeValueAsBytes(value);
+        }
+        catch (final JsonProcessingException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The value as it would be serialised, field by field.
+     */
+    public JsonNode toTree(final Object value)
+    {
+        return objectMapper.valueToTree(value);
+    }
 }
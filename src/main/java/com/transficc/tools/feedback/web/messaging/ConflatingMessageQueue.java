@@ -0,0 +1,513 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.messaging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.util.Histogram;
+import com.transficc.tools.feedback.web.routes.websocket.FrameType;
+import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
+
+import io.vertx.core.Context;
+
+/**
+ * Frames waiting to be published, in the order they were offered, except that a newer frame for a key replaces one for the same key which is
+ * still waiting rather than queueing behind it. Frames are held in a ring allocated up front, what happens when it is full is decided by the
+ * {@link OverflowPolicy}, and how the publisher waits for frames by the {@link WaitStrategy}.
+ */
+public final class ConflatingMessageQueue
+{
+    public enum WaitStrategy
+    {
+        BLOCKING,
+        YIELDING,
+        BUSY_SPIN
+    }
+
+    public enum OverflowPolicy
+    {
+        /**
+         * Make room by dropping the oldest iteration or status frame which a later one of the same kind waiting behind it supersedes. When there is
+         * none the ring grows instead, as every other frame is the only word browsers will get of that change. A job only ever has one update
+         * waiting, so the ring grows no larger than what the jobs and a few events need.
+         */
+        CONFLATE,
+        DROP_OLDEST,
+        /**
+         * Make the producer wait for room. Producers on the Vert.x event loop, such as the notification route, must never wait, so they
+         * {@link #CONFLATE} instead.
+         */
+        BLOCK
+    }
+
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final BooleanSupplier mayBlock;
+    private final Counters counters;
+    private final Histogram occupancy;
+    private final Histogram latencyMicros;
+    //Replaced when the ring grows, so only ever touched under the lock
+    private OutboundWebSocketFrame[] frames;
+    private String[] keys;
+    private long[] offeredAtNanos;
+    private int mask;
+    private SequenceIndex keyToSequence;
+    //Written under the lock, but read without it whilst the publisher spins, checks for frames or reports the size
+    private volatile long head;
+    private volatile long tail;
+    private volatile int discarded;
+    //Threads waiting on the lock for frames or for room, so that nothing is notified when no one is waiting
+    private int waiters;
+
+    public ConflatingMessageQueue(final int capacity, final WaitStrategy waitStrategy, final OverflowPolicy overflowPolicy, final Counters counters)
+    {
+        this(capacity, waitStrategy, overflowPolicy, () -> !Context.isOnEventLoopThread(), counters);
+    }
+
+    ConflatingMessageQueue(final int capacity, final WaitStrategy waitStrategy, final OverflowPolicy overflowPolicy, final BooleanSupplier mayBlock, final Counters counters)
+    {
+        final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.frames = new OutboundWebSocketFrame[size];
+        this.keys = new String[size];
+        this.offeredAtNanos = new long[size];
+        this.mask = size - 1;
+        this.keyToSequence = new SequenceIndex(size);
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.mayBlock = mayBlock;
+        this.counters = counters;
+        this.occupancy = counters.histogram("feedback.publishing.occupancy");
+        this.latencyMicros = counters.histogram("feedback.publishing.latency.micros");
+    }
+
+    public synchronized void offer(final OutboundWebSocketFrame frame)
+    {
+        if (reserve())
+        {
+            append(null, frame);
+        }
+    }
+
+    public synchronized void offerLatest(final String key, final OutboundWebSocketFrame frame)
+    {
+        if (replaceWaiting(key, frame))
+        {
+            return;
+        }
+        //Waiting for room gives up the lock, so another frame for the key may have been queued in the meantime
+        if (reserve() && !replaceWaiting(key, frame))
+        {
+            append(key, frame);
+        }
+    }
+
+    /**
+     * Drops the frame waiting for the key, if there is one, so that nothing about it is published after whatever is offered next.
+     */
+    public synchronized void discard(final String key)
+    {
+        final long sequence = keyToSequence.remove(key);
+        if (sequence != SequenceIndex.ABSENT)
+        {
+            clear(sequence);
+            discarded++;
+        }
+    }
+
+    public OutboundWebSocketFrame take() throws InterruptedException
+    {
+        while (true)
+        {
+            if (head == tail)
+            {
+                awaitFrames();
+            }
+            else
+            {
+                final OutboundWebSocketFrame frame = poll();
+                if (frame != null)
+                {
+                    return frame;
+                }
+            }
+        }
+    }
+
+    public OutboundWebSocketFrame poll()
+    {
+        //Only the publisher takes frames, so there is no need for the lock to find there are none
+        if (head == tail)
+        {
+            return null;
+        }
+        return removeNext();
+    }
+
+    /**
+     * May be momentarily out whilst a frame is being offered or taken.
+     */
+    public int size()
+    {
+        return (int)(tail - head) - discarded;
+    }
+
+    public synchronized int capacity()
+    {
+        return frames.length;
+    }
+
+    private synchronized OutboundWebSocketFrame removeNext()
+    {
+        while (head < tail)
+        {
+            final int waiting = size();
+            final OutboundWebSocketFrame frame = removeFirst();
+            if (frame != null)
+            {
+                occupancy.record(waiting);
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private void awaitFrames() throws InterruptedException
+    {
+        switch (waitStrategy)
+        {
+            case BLOCKING:
+                synchronized (this)
+                {
+                    waiters++;
+                    try
+                    {
+                        while (head == tail)
+                        {
+                            wait();
+                        }
+                    }
+                    finally
+                    {
+                        waiters--;
+                    }
+                }
+                break;
+            case YIELDING:
+                Thread.yield();
+                break;
+            case BUSY_SPIN:
+            default:
+                break;
+        }
+        if (Thread.interrupted())
+        {
+            throw new InterruptedException();
+        }
+    }
+
+    private boolean replaceWaiting(final String key, final OutboundWebSocketFrame frame)
+    {
+        final long sequence = keyToSequence.get(key);
+        if (sequence == SequenceIndex.ABSENT)
+        {
+            return false;
+        }
+        //Keep the time the first of the frames was offered, as that is how long the browsers have been waiting for this key
+        frames[index(sequence)] = frame;
+        return true;
+    }
+
+    private boolean reserve()
+    {
+        if (tail - head == frames.length && discarded > 0)
+        {
+            compact();
+        }
+        if (tail - head < frames.length)
+        {
+            return true;
+        }
+        switch (overflowPolicy == OverflowPolicy.BLOCK && !mayBlock.getAsBoolean() ? OverflowPolicy.CONFLATE : overflowPolicy)
+        {
+            case BLOCK:
+                return awaitRoom();
+            case CONFLATE:
+                if (!dropSuperseded())
+                {
+                    grow();
+                }
+                return true;
+            case DROP_OLDEST:
+            default:
+                return dropOldest();
+        }
+    }
+
+    private boolean awaitRoom()
+    {
+        waiters++;
+        try
+        {
+            while (tail - head == frames.length)
+            {
+                wait();
+                if (discarded > 0)
+                {
+                    compact();
+                }
+            }
+            return true;
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            counters.increment("feedback.publishing.dropped");
+            return false;
+        }
+        finally
+        {
+            waiters--;
+        }
+    }
+
+    private boolean dropOldest()
+    {
+        removeFirst();
+        counters.increment("feedback.publishing.dropped");
+        return true;
+    }
+
+    private boolean dropSuperseded()
+    {
+        final boolean[] typeWaitingLater = new boolean[FrameType.values().length];
+        long superseded = SequenceIndex.ABSENT;
+        for (long sequence = tail - 1; sequence >= head; sequence--)
+        {
+            final int index = index(sequence);
+            if (keys[index] == null && frames[index] != null)
+            {
+                final FrameType type = frames[index].getType();
+                if (typeWaitingLater[type.ordinal()] && (type == FrameType.STATUS_UPDATE || type == FrameType.ITERATION_UPDATE))
+                {
+                    superseded = sequence;
+                }
+                typeWaitingLater[type.ordinal()] = true;
+            }
+        }
+        if (superseded == SequenceIndex.ABSENT)
+        {
+            return false;
+        }
+        clear(superseded);
+        discarded++;
+        compact();
+        counters.increment("feedback.publishing.dropped");
+        return true;
+    }
+
+    private void grow()
+    {
+        final int size = frames.length << 1;
+        final OutboundWebSocketFrame[] grownFrames = new OutboundWebSocketFrame[size];
+        final String[] grownKeys = new String[size];
+        final long[] grownOfferedAtNanos = new long[size];
+        final SequenceIndex grownKeyToSequence = new SequenceIndex(size);
+        for (long sequence = head; sequence < tail; sequence++)
+        {
+            final int index = index(sequence);
+            final int grownIndex = (int)sequence & (size - 1);
+            grownFrames[grownIndex] = frames[index];
+            grownKeys[grownIndex] = keys[index];
+            grownOfferedAtNanos[grownIndex] = offeredAtNanos[index];
+            if (keys[index] != null)
+            {
+                grownKeyToSequence.put(keys[index], sequence);
+            }
+        }
+        frames = grownFrames;
+        keys = grownKeys;
+        offeredAtNanos = grownOfferedAtNanos;
+        keyToSequence = grownKeyToSequence;
+        mask = size - 1;
+        counters.increment("feedback.publishing.grown");
+    }
+
+    private void append(final String key, final OutboundWebSocketFrame frame)
+    {
+        final int index = index(tail);
+        frames[index] = frame;
+        keys[index] = key;
+        offeredAtNanos[index] = System.nanoTime();
+        if (key != null)
+        {
+            keyToSequence.put(key, tail);
+        }
+        tail = tail + 1;
+        notifyWaiters();
+    }
+
+    private OutboundWebSocketFrame removeFirst()
+    {
+        final int index = index(head);
+        final OutboundWebSocketFrame frame = frames[index];
+        if (frame == null)
+        {
+            discarded--;
+        }
+        else
+        {
+            if (keys[index] != null)
+            {
+                keyToSequence.remove(keys[index]);
+            }
+            latencyMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - offeredAtNanos[index]));
+        }
+        clear(head);
+        head = head + 1;
+        notifyWaiters();
+        return frame;
+    }
+
+    private void notifyWaiters()
+    {
+        if (waiters > 0)
+        {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Closes up the gaps left by discarded frames, which would otherwise take up room until the publisher reached them.
+     */
+    private void compact()
+    {
+        long write = head;
+        for (long read = head; read < tail; read++)
+        {
+            final int readIndex = index(read);
+            if (frames[readIndex] != null)
+            {
+                if (read != write)
+                {
+                    final int writeIndex = index(write);
+                    frames[writeIndex] = frames[readIndex];
+                    keys[writeIndex] = keys[readIndex];
+                    offeredAtNanos[writeIndex] = offeredAtNanos[readIndex];
+                    if (keys[writeIndex] != null)
+                    {
+                        keyToSequence.put(keys[writeIndex], write);
+                    }
+                    clear(read);
+                }
+                write++;
+            }
+        }
+        tail = write;
+        discarded = 0;
+    }
+
+    private void clear(final long sequence)
+    {
+        final int index = index(sequence);
+        frames[index] = null;
+        keys[index] = null;
+    }
+
+    private int index(final long sequence)
+    {
+        return (int)sequence & mask;
+    }
+
+    /**
+     * Maps the key of each waiting frame to its sequence without boxing it. There is never more than one key for each frame in the ring, so the table
+     * is allocated at twice that up front, never grows, and always has an empty slot to end a probe.
+     */
+    private static final class SequenceIndex
+    {
+        private static final long ABSENT = -1;
+        private final String[] keys;
+        private final long[] sequences;
+        private final int mask;
+
+        private SequenceIndex(final int ringSize)
+        {
+            this.keys = new String[ringSize * 2];
+            this.sequences = new long[ringSize * 2];
+            this.mask = ringSize * 2 - 1;
+        }
+
+        private long get(final String key)
+        {
+            for (int slot = home(key); keys[slot] != null; slot = (slot + 1) & mask)
+            {
+                if (keys[slot].equals(key))
+                {
+                    return sequences[slot];
+                }
+            }
+            return ABSENT;
+        }
+
+        private void put(final String key, final long sequence)
+        {
+            int slot = home(key);
+            while (keys[slot] != null && !keys[slot].equals(key))
+            {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            sequences[slot] = sequence;
+        }
+
+        private long remove(final String key)
+        {
+            for (int slot = home(key); keys[slot] != null; slot = (slot + 1) & mask)
+            {
+                if (keys[slot].equals(key))
+                {
+                    final long sequence = sequences[slot];
+                    keys[slot] = null;
+                    closeGap(slot);
+                    return sequence;
+                }
+            }
+            return ABSENT;
+        }
+
+        /**
+         * Moves back any key further along the probe which would no longer be found past the emptied slot, rather than leave a tombstone.
+         */
+        private void closeGap(final int emptiedSlot)
+        {
+            int gap = emptiedSlot;
+            for (int slot = (gap + 1) & mask; keys[slot] != null; slot = (slot + 1) & mask)
+            {
+                if (((slot - home(keys[slot])) & mask) >= ((slot - gap) & mask))
+                {
+                    keys[gap] = keys[slot];
+                    sequences[gap] = sequences[slot];
+                    keys[slot] = null;
+                    gap = slot;
+                }
+            }
+        }
+
+        private int home(final String key)
+        {
+            final int hash = key.hashCode();
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
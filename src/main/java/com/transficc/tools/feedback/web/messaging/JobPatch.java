@@ -0,0 +1,50 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.messaging;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The fields of a job which changed since it was last published, which browsers apply to their copy of the job. The whole job is kept alongside,
+ * but not serialised, for when a browser has to be sent all of it instead.
+ */
+public final class JobPatch
+{
+    private final String name;
+    private final JsonNode changes;
+    @JsonIgnore
+    private final PublishableJob job;
+
+    public JobPatch(final String name, final JsonNode changes, final PublishableJob job)
+    {
+        this.name = name;
+        this.changes = changes;
+        this.job = job;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public JsonNode getChanges()
+    {
+        return changes;
+    }
+
+    public PublishableJob getJob()
+    {
+        return job;
+    }
+}
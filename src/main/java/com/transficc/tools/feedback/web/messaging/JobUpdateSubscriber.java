@@ -12,8 +12,10 @@
  */
 package com.transficc.tools.feedback.web.messaging;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 
+import com.transficc.tools.feedback.util.ClockService;
 import com.transficc.tools.feedback.web.routes.WebSocketPublisher;
 import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
 
@@ -23,14 +25,24 @@ import org.slf4j.LoggerFactory;
 public class JobUpdateSubscriber implements Runnable
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(JobUpdateSubscriber.class);
-    private final BlockingQueue<OutboundWebSocketFrame> messageQueue;
+    private final ConflatingMessageQueue messageQueue;
     private final WebSocketPublisher webSocketPublisher;
+    private final int maxBatchSize;
+    private final long maxBatchMillis;
+    private final ClockService clockService;
     private volatile boolean isRunning;
 
-    public JobUpdateSubscriber(final BlockingQueue<OutboundWebSocketFrame> messageQueue, final WebSocketPublisher webSocketPublisher)
+    public JobUpdateSubscriber(final ConflatingMessageQueue messageQueue,
+                               final WebSocketPublisher webSocketPublisher,
+                               final int maxBatchSize,
+                               final long maxBatchMillis,
+                               final ClockService clockService)
     {
         this.messageQueue = messageQueue;
         this.webSocketPublisher = webSocketPublisher;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchMillis = maxBatchMillis;
+        this.clockService = clockService;
         this.isRunning = false;
     }
 
@@ -44,7 +56,7 @@ public class JobUpdateSubscriber implements Runnable
             try
             {
                 final OutboundWebSocketFrame message = messageQueue.take();
-                webSocketPublisher.onMessage(message);
+                webSocketPublisher.onMessage(batchWithWaitingMessages(message));
             }
             catch (final InterruptedException e)
             {
@@ -53,4 +65,31 @@ public class JobUpdateSubscriber implements Runnable
             }
         }
     }
+
+    /**
+     * Sends whatever else is already waiting along with the message as a single frame, e.g. when a build completing changes the jobs it triggers in
+     * the same poll. Nothing is waited for, so a lone message is sent as it is.
+     */
+    OutboundWebSocketFrame batchWithWaitingMessages(final OutboundWebSocketFrame message)
+    {
+        final long deadline = clockService.currentTimeMillis() + maxBatchMillis;
+        List<OutboundWebSocketFrame> batch = null;
+        int size = 1;
+        while (size < maxBatchSize && clockService.currentTimeMillis() < deadline)
+        {
+            final OutboundWebSocketFrame waiting = messageQueue.poll();
+            if (waiting == null)
+            {
+                break;
+            }
+            if (batch == null)
+            {
+                batch = new ArrayList<>();
+                batch.add(message);
+            }
+            batch.add(waiting);
+            size++;
+        }
+        return batch == null ? message : OutboundWebSocketFrame.batch(batch);
+    }
 }
@@ -12,45 +12,37 @@
  */
 package com.transficc.tools.feedback.web.messaging;
 
-import java.util.concurrent.BlockingQueue;
-
 import com.transficc.tools.feedback.ci.FeedbackJob;
 import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
 
 public class MessageBus
 {
-    private final BlockingQueue<OutboundWebSocketFrame> messages;
+    private final ConflatingMessageQueue messages;
 
-    public MessageBus(final BlockingQueue<OutboundWebSocketFrame> messages)
+    public MessageBus(final ConflatingMessageQueue messages)
     {
         this.messages = messages;
     }
 
     public void sendUpdate(final FeedbackJob job)
     {
-        offer(OutboundWebSocketFrame.jobUpdate(job.createPublishable()));
+        //Only the latest state of a job matters, so an update still waiting to be published is replaced rather than queued behind
+        messages.offerLatest(job.getName(), OutboundWebSocketFrame.jobUpdate(job.createPublishable()));
     }
 
     public void iterationUpdate(final String iteration)
     {
-        offer(OutboundWebSocketFrame.iterationUpdate(new PublishableIteration(iteration)));
+        messages.offer(OutboundWebSocketFrame.iterationUpdate(new PublishableIteration(iteration)));
     }
 
     public void statusUpdate(final String status)
     {
-        offer(OutboundWebSocketFrame.statusUpdate(new PublishableStatus(status)));
+        messages.offer(OutboundWebSocketFrame.statusUpdate(new PublishableStatus(status)));
     }
 
     public void jobRemoved(final String jobName)
     {
-        offer(OutboundWebSocketFrame.jobDeleted(jobName));
-    }
-
-    private void offer(final OutboundWebSocketFrame message)
-    {
-        if (!messages.offer(message))
-        {
-            throw new IllegalStateException("Failed to add job to the queue");
-        }
+        messages.discard(jobName);
+        messages.offer(OutboundWebSocketFrame.jobDeleted(jobName));
     }
 }
@@ -33,6 +33,9 @@ public class PublishableJob
     private final TestResults jobsTestResults;
     private final boolean shouldHideTestResults;
     private final JobStatus jobStatusColor;
+    private final boolean stale;
+    private final long queuedSince;
+    private final long queueWaitMillis;
 
     public PublishableJob(final String name,
                           final String url,
@@ -44,7 +47,10 @@ public class PublishableJob
                           final double jobCompletionPercentage,
                           final String[] comments,
                           final boolean building,
-                          final TestResults jobsTestResults)
+                          final TestResults jobsTestResults,
+                          final boolean stale,
+                          final long queuedSince,
+                          final long queueWaitMillis)
     {
         this.name = name;
         this.url = url;
@@ -60,6 +66,9 @@ public class PublishableJob
         this.shouldBeFullScreen = priority > 0;
         this.shouldHideTestResults = jobsTestResults == null;
         this.jobsTestResults = jobsTestResults;
+        this.stale = stale;
+        this.queuedSince = queuedSince;
+        this.queueWaitMillis = queueWaitMillis;
     }
 
     public TestResults getJobsTestResults()
@@ -132,6 +141,32 @@ public class PublishableJob
         return comments;
     }
 
+    public boolean isStale()
+    {
+        return stale;
+    }
+
+    public boolean isQueued()
+    {
+        return queuedSince > 0;
+    }
+
+    /**
+     * When the job's next build joined the queue, or 0 if it has no build waiting.
+     */
+    public long getQueuedSince()
+    {
+        return queuedSince;
+    }
+
+    /**
+     * How long the job's most recent build waited in the queue before it started.
+     */
+    public long getQueueWaitMillis()
+    {
+        return queueWaitMillis;
+    }
+
     @Override
     public String toString()
     {
@@ -148,6 +183,9 @@ public class PublishableJob
                ", shouldHideProgressBar=" + shouldHideProgressBar +
                ", shouldBeFullScreen=" + shouldBeFullScreen +
                ", testResults=" + jobsTestResults +
+               ", stale=" + stale +
+               ", queuedSince=" + queuedSince +
+               ", queueWaitMillis=" + queueWaitMillis +
                '}';
     }
 
@@ -189,6 +227,18 @@ public class PublishableJob
         {
             return false;
         }
+        if (stale != that.stale)
+        {
+            return false;
+        }
+        if (queuedSince != that.queuedSince)
+        {
+            return false;
+        }
+        if (queueWaitMillis != that.queueWaitMillis)
+        {
+            return false;
+        }
         if (name != null ? !name.equals(that.name) : that.name != null)
         {
             return false;
@@ -232,6 +282,9 @@ public class PublishableJob
         result = 31 * result + (shouldHideProgressBar ? 1 : 0);
         result = 31 * result + (shouldBeFullScreen ? 1 : 0);
         result = 31 * result + (jobsTestResults != null ? jobsTestResults.hashCode() : 0);
+        result = 31 * result + (stale ? 1 : 0);
+        result = 31 * result + (int)(queuedSince ^ (queuedSince >>> 32));
+        result = 31 * result + (int)(queueWaitMillis ^ (queueWaitMillis >>> 32));
         return result;
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.offbytwo.jenkins.model.BuildResult;
+import com.transficc.portals.DecodingHandler;
+import com.transficc.portals.PortalRequest;
+import com.transficc.portals.ResponseHelper;
+import com.transficc.tools.feedback.ci.BuildNotificationService;
+import com.transficc.tools.feedback.ci.jenkins.JenkinsFacade;
+import com.transficc.tools.feedback.ci.jenkins.JenkinsJsonParser;
+
+
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Accepts the build events sent by the Jenkins Notification plugin. Only the STARTED, COMPLETED and FINALIZED phases affect a job. When more than
+ * one Jenkins server is configured, each server identifies itself with a server query parameter.
+ */
+public class BuildNotificationRoute implements DecodingHandler<BuildNotificationRoute.BuildNotification>
+{
+    private final Map<String, BuildNotificationService> serverNameToNotificationService;
+
+    public BuildNotificationRoute(final Map<String, BuildNotificationService> serverNameToNotificationService)
+    {
+        this.serverNameToNotificationService = serverNameToNotificationService;
+    }
+
+    @Override
+    public void handle(final RoutingContext event, final BuildNotification value)
+    {
+        final Build build = value.build;
+        if (build == null || build.phase == null)
+        {
+            event.response().setStatusCode(400).end();
+            return;
+        }
+        final String serverName = event.request().getParam("server");
+        final BuildNotificationService buildNotificationService = serverNameToNotificationService.get(serverName == null ? "" : serverName);
+        if (buildNotificationService == null)
+        {
+            event.response().setStatusCode(404).end();
+            return;
+        }
+
+        final String jobName = value.getJobName();
+        final boolean accepted;
+        switch (build.phase)
+        {
+            case "STARTED":
+                accepted = buildNotificationService.onBuildNotification(jobName, build.number, true, null, build.getCommit());
+                break;
+            case "COMPLETED":
+            case "FINALIZED":
+                final BuildResult result = build.getResult();
+                accepted = buildNotificationService.onBuildNotification(jobName, build.number, false, result == null ? null : JenkinsFacade.parse(result, null), build.getCommit());
+                break;
+            default:
+                accepted = true;
+        }
+
+        if (accepted)
+        {
+            ResponseHelper.ok(event.response());
+        }
+        else
+        {
+            event.response().setStatusCode(404).end();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static final class BuildNotification implements PortalRequest
+    {
+        private String name;
+        private String url;
+        private Build build;
+
+        //Jobs in folders are known by their full name, which only the url carries
+        private String getJobName()
+        {
+            final String fullName = url == null ? "" : JenkinsJsonParser.fullNameFromUrl(url);
+            return fullName.isEmpty() ? name : fullName;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class Build
+    {
+        private int number;
+        private String phase;
+        private String status;
+        private Scm scm;
+
+        private BuildResult getResult()
+        {
+            if (status == null)
+            {
+                return null;
+            }
+            try
+            {
+                return BuildResult.valueOf(status);
+            }
+            catch (final IllegalArgumentException e)
+            {
+                return BuildResult.UNKNOWN;
+            }
+        }
+
+        private String getCommit()
+        {
+            return scm == null ? null : scm.commit;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static final class Scm
+    {
+        private String commit;
+    }
+}
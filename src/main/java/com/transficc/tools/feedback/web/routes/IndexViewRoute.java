@@ -12,11 +12,10 @@
  */
 package com.transficc.tools.feedback.web.routes;
 
-import java.util.List;
+import java.util.function.Supplier;
 
 import com.transficc.tools.feedback.BreakingNewsService;
 import com.transficc.tools.feedback.IterationRepository;
-import com.transficc.tools.feedback.web.messaging.PublishableJob;
 
 
 import io.vertx.core.Handler;
@@ -27,16 +26,16 @@ public class IndexViewRoute implements Handler<RoutingContext>
 {
     private static final String TEMPLATE = "templates/index.hbs";
     private final TemplateEngine engine;
-    private final JobStatusSnapshot jobStatusSnapshot;
+    private final Supplier<PublishedJobs> publishedJobs;
     private final IterationRepository iterationRepository;
     private final BreakingNewsService breakingNewsService;
     private final long startUpTime;
 
-    public IndexViewRoute(final TemplateEngine engine, final JobStatusSnapshot jobStatusSnapshot,
+    public IndexViewRoute(final TemplateEngine engine, final Supplier<PublishedJobs> publishedJobs,
                           final IterationRepository iterationRepository, final BreakingNewsService breakingNewsService, final long startUpTime)
     {
         this.engine = engine;
-        this.jobStatusSnapshot = jobStatusSnapshot;
+        this.publishedJobs = publishedJobs;
         this.iterationRepository = iterationRepository;
         this.breakingNewsService = breakingNewsService;
         this.startUpTime = startUpTime;
@@ -45,11 +44,13 @@ public class IndexViewRoute implements Handler<RoutingContext>
     @Override
     public void handle(final RoutingContext routingContext)
     {
-        final List<PublishableJob> jobs = jobStatusSnapshot.getPublishableJobs();
-        routingContext.put("jobs", jobs);
+        //The jobs are rendered as they were last published, with their versions, so the patches replayed after the sequence apply to them
+        final PublishedJobs jobs = publishedJobs.get();
+        routingContext.put("jobs", jobs.getJobs());
         routingContext.put("iteration", iterationRepository.iteration());
         routingContext.put("status", breakingNewsService.status());
         routingContext.put("startUpTime", startUpTime);
+        routingContext.put("sequence", jobs.getSequence());
         engine.render(routingContext, TEMPLATE,
                       res ->
                       {
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes;
+
+import java.util.List;
+
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+
+/**
+ * Every job as browsers were last sent it, and the number of the last frame broadcast, taken together so that a page rendered from them can apply
+ * the patches which follow and resume from the right frame.
+ */
+public final class PublishedJobs
+{
+    private final long sequence;
+    private final List<PublishedJob> jobs;
+
+    PublishedJobs(final long sequence, final List<PublishedJob> jobs)
+    {
+        this.sequence = sequence;
+        this.jobs = jobs;
+    }
+
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public List<PublishedJob> getJobs()
+    {
+        return jobs;
+    }
+
+    public static final class PublishedJob
+    {
+        private final PublishableJob job;
+        private final long version;
+        private final String json;
+
+        PublishedJob(final PublishableJob job, final long version, final String json)
+        {
+            this.job = job;
+            this.version = version;
+            this.json = json;
+        }
+
+        public PublishableJob getJob()
+        {
+            return job;
+        }
+
+        /**
+         * 0 if the job has not been published yet, in which case its first update is sent whole.
+         */
+        public long getVersion()
+        {
+            return version;
+        }
+
+        /**
+         * The job as it is serialised in a job update, for patches to be applied to.
+         */
+        public String getJson()
+        {
+            return json;
+        }
+    }
+}
@@ -12,10 +12,13 @@
  */
 package com.transficc.tools.feedback.web.routes;
 
+import java.util.Map;
+
 import com.transficc.portals.RouteHandlerFactory;
 import com.transficc.tools.feedback.BreakingNewsService;
 import com.transficc.tools.feedback.IterationRepository;
-import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.ci.BuildNotificationService;
+import com.transficc.tools.feedback.util.Counters;
 
 
 import io.vertx.core.http.HttpServer;
@@ -32,19 +35,22 @@ public final class Routes
     }
 
     public static void setup(final HttpServer server,
-                             final JobRepository jobRepository,
                              final IterationRepository iterationRepository,
                              final BreakingNewsService breakingNewsService,
+                             final Map<String, BuildNotificationService> serverNameToNotificationService,
+                             final Counters counters,
                              final WebSocketPublisher webSocketPublisher,
                              final Router router, final long startUpTime)
     {
         final TemplateEngine engine = HandlebarsTemplateEngine.create();
         router.route().handler(BodyHandler.create());
         router.route("/static/*").handler(StaticHandler.create().setWebRoot("static").setCachingEnabled(true));
-        router.get("/").handler(new IndexViewRoute(engine, jobRepository, iterationRepository, breakingNewsService, startUpTime));
+        router.get("/").handler(new IndexViewRoute(engine, webSocketPublisher::publishedJobs, iterationRepository, breakingNewsService, startUpTime));
+        router.get("/metrics").handler(new MetricsRoute(counters));
 
         router.put("/iteration").handler(RouteHandlerFactory.requestWithPayload(UpdateIterationRoute.IterationUpdate.class, new UpdateIterationRoute(iterationRepository)));
         router.put("/status").handler(RouteHandlerFactory.requestWithPayload(UpdateStatusRoute.StatusUpdate.class, new UpdateStatusRoute(breakingNewsService)));
+        router.post("/notification").handler(RouteHandlerFactory.requestWithPayload(BuildNotificationRoute.BuildNotification.class, new BuildNotificationRoute(serverNameToNotificationService)));
         server.websocketHandler(webSocketPublisher);
         server.requestHandler(router::accept);
     }
@@ -12,13 +12,20 @@
  */
 package com.transficc.tools.feedback.web.routes;
 
-import java.util.Deque;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import com.transficc.tools.feedback.util.ClockService;
+import com.transficc.tools.feedback.util.Counters;
 import com.transficc.tools.feedback.util.SafeSerialisation;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+import com.transficc.tools.feedback.web.routes.websocket.JobPatcher;
 import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
+import com.transficc.tools.feedback.web.routes.websocket.ReplayWindow;
+import com.transficc.tools.feedback.web.routes.websocket.Session;
+import com.transficc.tools.feedback.web.routes.websocket.SessionRegistry;
+import com.transficc.tools.feedback.web.routes.websocket.UpdateSubscriptions;
 import com.transficc.tools.feedback.web.routes.websocket.WebSocketFrameHandler;
 
 
@@ -26,23 +33,44 @@ import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.http.ServerWebSocket;
 
-
-public final class WebSocketPublisher implements Handler<ServerWebSocket>
+/**
+ * Broadcasts frames to every subscribed session, numbering each one. Broadcasting and subscribing hold the same lock, so a session gets every frame
+ * after the one it resumes from or the snapshot it is sent, exactly once and in order.
+ */
+public final class WebSocketPublisher implements Handler<ServerWebSocket>, UpdateSubscriptions
 {
-    private final Deque<String> sessions = new ConcurrentLinkedDeque<>();
+    private final SessionRegistry sessionRegistry;
     private final EventBus eventBus;
     private final SafeSerialisation safeSerialisation;
     private final ClockService clockService;
     private final JobStatusSnapshot jobStatusSnapshot;
     private final long startUpTime;
+    private final long slowConsumerTimeoutMillis;
+    private final ReplayWindow replayWindow;
+    private final JobPatcher jobPatcher;
+    private final Counters counters;
+    private long sequence;
 
-    public WebSocketPublisher(final EventBus eventBus, final SafeSerialisation safeSerialisation, final ClockService clockService, final JobStatusSnapshot jobStatusSnapshot, final long startUpTime)
+    public WebSocketPublisher(final SessionRegistry sessionRegistry,
+                              final EventBus eventBus,
+                              final SafeSerialisation safeSerialisation,
+                              final ClockService clockService,
+                              final JobStatusSnapshot jobStatusSnapshot,
+                              final long startUpTime,
+                              final long slowConsumerTimeoutMillis,
+                              final int replayWindowSize,
+                              final Counters counters)
     {
+        this.sessionRegistry = sessionRegistry;
         this.eventBus = eventBus;
         this.safeSerialisation = safeSerialisation;
         this.clockService = clockService;
         this.jobStatusSnapshot = jobStatusSnapshot;
         this.startUpTime = startUpTime;
+        this.slowConsumerTimeoutMillis = slowConsumerTimeoutMillis;
+        this.replayWindow = new ReplayWindow(replayWindowSize);
+        this.jobPatcher = new JobPatcher(safeSerialisation, counters);
+        this.counters = counters;
     }
 
     public void onMessage(final OutboundWebSocketFrame message)
@@ -50,22 +78,119 @@ public final class WebSocketPublisher implements Handler<ServerWebSocket>
         broadcastMessage(message);
     }
 
+    /**
+     * Each job as it was last published, with its version, and the number of the last frame broadcast, for a page to render and then resume from.
+     * A job which has not been published yet is given as it is now.
+     */
+    public synchronized PublishedJobs publishedJobs()
+    {
+        final List<PublishedJobs.PublishedJob> publishedJobs = new ArrayList<>();
+        for (final PublishableJob job : jobStatusSnapshot.getPublishableJobs())
+        {
+            final Optional<OutboundWebSocketFrame> latest = jobPatcher.latest(job.getName());
+            final PublishableJob publishedJob = latest.map(jobUpdate -> (PublishableJob)jobUpdate.getValue()).orElse(job);
+            publishedJobs.add(new PublishedJobs.PublishedJob(publishedJob, latest.map(OutboundWebSocketFrame::getVersion).orElse(0L),
+                                                             safeSerialisation.serisalise(publishedJob)));
+        }
+        return new PublishedJobs(sequence, publishedJobs);
+    }
+
     @Override
     public void handle(final ServerWebSocket socket)
     {
-        final String id = socket.textHandlerID();
-        sessions.addLast(id);
-        socket.closeHandler(event -> sessions.remove(id));
-        socket.frameHandler(new WebSocketFrameHandler(id, eventBus, safeSerialisation, clockService, jobStatusSnapshot, startUpTime));
+        final Session session = sessionRegistry.register(socket, clockService.currentTimeMillis());
+        socket.closeHandler(event -> sessionRegistry.remove(session.getId()));
+        socket.frameHandler(new WebSocketFrameHandler(session, eventBus, safeSerialisation, clockService, this, startUpTime));
+    }
+
+    @Override
+    public synchronized void resume(final Session session, final long startUpTime, final long lastSequence)
+    {
+        if (startUpTime != this.startUpTime || !replayWindow.canReplayAfter(lastSequence))
+        {
+            snapshot(session);
+            return;
+        }
+        final long currentTime = clockService.currentTimeMillis();
+        try
+        {
+            replayWindow.replayAfter(lastSequence, (frame, encodedFrame) -> session.send(encodedFrame, frame, currentTime));
+            session.subscribe();
+            counters.increment("feedback.sessions.resumed");
+        }
+        catch (final IllegalStateException e)
+        {
+            //Closed whilst resuming
+        }
+    }
+
+    @Override
+    public synchronized void snapshot(final Session session)
+    {
+        final List<OutboundWebSocketFrame> jobUpdates = new ArrayList<>();
+        for (final PublishableJob job : jobStatusSnapshot.getPublishableJobs())
+        {
+            //Each job as it was last published, with its version, so the browser can apply the patches which follow
+            jobUpdates.add(jobPatcher.latest(job.getName()).orElseGet(() -> OutboundWebSocketFrame.jobUpdate(job)));
+        }
+        //Every job is at least as up to date as the last frame broadcast, so the browser carries on from there
+        if (send(session, OutboundWebSocketFrame.batch(jobUpdates).sequenced(sequence)))
+        {
+            session.subscribe();
+            counters.increment("feedback.sessions.snapshots");
+        }
+    }
+
+    @Override
+    public synchronized void resend(final Session session, final String jobName)
+    {
+        jobPatcher.latest(jobName).ifPresent(jobUpdate -> send(session, jobUpdate));
     }
 
-    private void broadcastMessage(final OutboundWebSocketFrame outboundWebSocketFrame)
+    /**
+     * Serialises the frame once and writes the same text to every session. Sessions which have stopped keeping up are disconnected rather than left
+     * to hold frames back for ever.
+     */
+    private synchronized void broadcastMessage(final OutboundWebSocketFrame outboundWebSocketFrame)
     {
-        final Iterator<String> iterator = sessions.iterator();
-        final String outbound = safeSerialisation.serisalise(outboundWebSocketFrame);
-        while (iterator.hasNext())
+        sequence++;
+        final OutboundWebSocketFrame sequencedFrame = jobPatcher.patch(outboundWebSocketFrame).sequenced(sequence);
+        final String outbound = safeSerialisation.serisalise(sequencedFrame);
+        replayWindow.add(sequencedFrame, outbound);
+        final long currentTime = clockService.currentTimeMillis();
+        for (final Session session : sessionRegistry.sessions())
+        {
+            if (!session.isSubscribed())
+            {
+                continue;
+            }
+            try
+            {
+                session.send(outbound, sequencedFrame, currentTime);
+            }
+            catch (final IllegalStateException e)
+            {
+                //Closed since it was listed, and its close handler removes it
+                continue;
+            }
+            if (session.isStuck(currentTime, slowConsumerTimeoutMillis))
+            {
+                sessionRegistry.disconnectSlowConsumer(session);
+            }
+        }
+    }
+
+    private boolean send(final Session session, final OutboundWebSocketFrame frame)
+    {
+        try
+        {
+            session.send(safeSerialisation.serisalise(frame), frame, clockService.currentTimeMillis());
+            return true;
+        }
+        catch (final IllegalStateException e)
         {
-            eventBus.send(iterator.next(), outbound);
+            //Closed since it asked
+            return false;
         }
     }
 }
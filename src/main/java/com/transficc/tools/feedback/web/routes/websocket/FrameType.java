@@ -15,8 +15,11 @@ package com.transficc.tools.feedback.web.routes.websocket;
 public enum FrameType
 {
     JOB_UPDATE,
+    JOB_PATCH,
     JOB_DELETED,
     STATUS_UPDATE,
     ITERATION_UPDATE,
-    HEARTBEAT;
+    HEARTBEAT,
+    BATCH,
+    SLOW_CONSUMER;
 }
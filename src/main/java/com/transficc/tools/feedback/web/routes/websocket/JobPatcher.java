@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes.websocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.util.SafeSerialisation;
+import com.transficc.tools.feedback.web.messaging.JobPatch;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+
+/**
+ * Replaces each update to a job which has been published before with a patch of the fields which changed, numbering every version of a job so
+ * that a browser can tell whether a patch follows on from its copy. Frames must be passed through in the order they are broadcast, as a patch is
+ * made against the version before it. Not thread safe.
+ */
+public final class JobPatcher
+{
+    private final Map<String, PublishedJob> nameToPublishedJob = new HashMap<>();
+    private final SafeSerialisation safeSerialisation;
+    private final Counters counters;
+
+    public JobPatcher(final SafeSerialisation safeSerialisation, final Counters counters)
+    {
+        this.safeSerialisation = safeSerialisation;
+        this.counters = counters;
+    }
+
+    public OutboundWebSocketFrame patch(final OutboundWebSocketFrame frame)
+    {
+        switch (frame.getType())
+        {
+            case JOB_UPDATE:
+                return patch((PublishableJob)frame.getValue());
+            case JOB_DELETED:
+                nameToPublishedJob.remove((String)frame.getValue());
+                return frame;
+            case BATCH:
+                @SuppressWarnings("unchecked")
+                final List<OutboundWebSocketFrame> frames = (List<OutboundWebSocketFrame>)frame.getValue();
+                final List<OutboundWebSocketFrame> patchedFrames = new ArrayList<>(frames.size());
+                for (final OutboundWebSocketFrame batchedFrame : frames)
+                {
+                    patchedFrames.add(patch(batchedFrame));
+                }
+                return OutboundWebSocketFrame.batch(patchedFrames);
+            default:
+                return frame;
+        }
+    }
+
+    /**
+     * The whole of the job as it was last published, along with its version.
+     */
+    public Optional<OutboundWebSocketFrame> latest(final String jobName)
+    {
+        final PublishedJob publishedJob = nameToPublishedJob.get(jobName);
+        return publishedJob == null ? Optional.empty() : Optional.of(OutboundWebSocketFrame.jobUpdate(publishedJob.job, publishedJob.version));
+    }
+
+    private OutboundWebSocketFrame patch(final PublishableJob job)
+    {
+        final JsonNode fields = safeSerialisation.toTree(job);
+        final PublishedJob previous = nameToPublishedJob.get(job.getName());
+        final long version = previous == null ? 1 : previous.version + 1;
+        nameToPublishedJob.put(job.getName(), new PublishedJob(job, fields, version));
+        if (previous == null)
+        {
+            return OutboundWebSocketFrame.jobUpdate(job, version);
+        }
+        counters.increment("feedback.publishing.patches");
+        return OutboundWebSocketFrame.jobPatch(new JobPatch(job.getName(), changes(previous.fields, fields), job), version);
+    }
+
+    private static ObjectNode changes(final JsonNode before, final JsonNode after)
+    {
+        final ObjectNode changes = JsonNodeFactory.instance.objectNode();
+        for (final Iterator<Map.Entry<String, JsonNode>> fields = after.fields(); fields.hasNext(); )
+        {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            if (!field.getValue().equals(before.get(field.getKey())))
+            {
+                changes.set(field.getKey(), field.getValue());
+            }
+        }
+        return changes;
+    }
+
+    private static final class PublishedJob
+    {
+        private final PublishableJob job;
+        private final JsonNode fields;
+        private final long version;
+
+        private PublishedJob(final PublishableJob job, final JsonNode fields, final long version)
+        {
+            this.job = job;
+            this.fields = fields;
+            this.version = version;
+        }
+    }
+}
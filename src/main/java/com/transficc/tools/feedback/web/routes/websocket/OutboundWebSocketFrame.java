@@ -12,6 +12,9 @@
  */
 package com.transficc.tools.feedback.web.routes.websocket;
 
+import java.util.List;
+
+import com.transficc.tools.feedback.web.messaging.JobPatch;
 import com.transficc.tools.feedback.web.messaging.PublishableIteration;
 import com.transficc.tools.feedback.web.messaging.PublishableJob;
 import com.transficc.tools.feedback.web.messaging.PublishableStatus;
@@ -22,11 +25,37 @@ public final class OutboundWebSocketFrame
 {
     private final FrameType type;
     private final Object value;
+    private final long sequence;
+    private final long version;
 
-    private OutboundWebSocketFrame(final FrameType type, final Object value)
+    private OutboundWebSocketFrame(final FrameType type, final Object value, final long sequence, final long version)
     {
         this.type = type;
         this.value = value;
+        this.sequence = sequence;
+        this.version = version;
+    }
+
+    private OutboundWebSocketFrame(final FrameType type, final Object value)
+    {
+        this(type, value, 0, 0);
+    }
+
+    /**
+     * The same frame, numbered by its position in the stream of frames broadcast since start up, so that a browser which reconnects can ask for
+     * just those it missed.
+     */
+    public OutboundWebSocketFrame sequenced(final long sequence)
+    {
+        return new OutboundWebSocketFrame(type, value, sequence, version);
+    }
+
+    /**
+     * The same frame with any patch replaced by the whole job, for when the patch cannot be relied on to follow the version it was made from.
+     */
+    public OutboundWebSocketFrame withoutPatch()
+    {
+        return type == FrameType.JOB_PATCH ? jobUpdate(((JobPatch)value).getJob(), version).sequenced(sequence) : this;
     }
 
     public FrameType getType()
@@ -39,11 +68,35 @@ public final class OutboundWebSocketFrame
         return value;
     }
 
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * How many times the job in a job update or patch has been published, so that a browser only applies a patch to the version it was made
+     * from.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
     public static OutboundWebSocketFrame jobUpdate(final PublishableJob job)
     {
         return new OutboundWebSocketFrame(FrameType.JOB_UPDATE, job);
     }
 
+    public static OutboundWebSocketFrame jobUpdate(final PublishableJob job, final long version)
+    {
+        return new OutboundWebSocketFrame(FrameType.JOB_UPDATE, job, 0, version);
+    }
+
+    public static OutboundWebSocketFrame jobPatch(final JobPatch patch, final long version)
+    {
+        return new OutboundWebSocketFrame(FrameType.JOB_PATCH, patch, 0, version);
+    }
+
     public static OutboundWebSocketFrame jobDeleted(final String jobName)
     {
         return new OutboundWebSocketFrame(FrameType.JOB_DELETED, jobName);
@@ -59,8 +112,18 @@ public final class OutboundWebSocketFrame
         return new OutboundWebSocketFrame(FrameType.ITERATION_UPDATE, iteration);
     }
 
+    public static OutboundWebSocketFrame batch(final List<OutboundWebSocketFrame> frames)
+    {
+        return new OutboundWebSocketFrame(FrameType.BATCH, frames);
+    }
+
     public static OutboundWebSocketFrame heartbeat(final HeartbeatMessage heartbeatMessage)
     {
         return new OutboundWebSocketFrame(FrameType.HEARTBEAT, heartbeatMessage);
     }
+
+    public static OutboundWebSocketFrame slowConsumer(final String reason)
+    {
+        return new OutboundWebSocketFrame(FrameType.SLOW_CONSUMER, reason);
+    }
 }
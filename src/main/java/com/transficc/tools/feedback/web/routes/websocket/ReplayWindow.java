@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes.websocket;
+
+import java.util.function.BiConsumer;
+
+/**
+ * The most recently broadcast frames, along with the text they were encoded to, so that they can be sent again as they were. Frames must be added
+ * in the order of their sequence numbers, which start at 1 and have no gaps.
+ */
+public final class ReplayWindow
+{
+    private final OutboundWebSocketFrame[] frames;
+    private final String[] encodedFrames;
+    private long latestSequence;
+
+    public ReplayWindow(final int capacity)
+    {
+        this.frames = new OutboundWebSocketFrame[capacity];
+        this.encodedFrames = new String[capacity];
+    }
+
+    public void add(final OutboundWebSocketFrame frame, final String encodedFrame)
+    {
+        latestSequence = frame.getSequence();
+        final int index = index(latestSequence);
+        frames[index] = frame;
+        encodedFrames[index] = encodedFrame;
+    }
+
+    /**
+     * Whether every frame after the given one is still held, which is always the case for the latest frame.
+     */
+    public boolean canReplayAfter(final long sequence)
+    {
+        return sequence >= 0 && sequence <= latestSequence && latestSequence - sequence <= frames.length;
+    }
+
+    public void replayAfter(final long sequence, final BiConsumer<OutboundWebSocketFrame, String> consumer)
+    {
+        for (long next = sequence + 1; next <= latestSequence; next++)
+        {
+            final int index = index(next);
+            consumer.accept(frames[index], encodedFrames[index]);
+        }
+    }
+
+    private int index(final long sequence)
+    {
+        return (int)(sequence % frames.length);
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes.websocket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.util.SafeSerialisation;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+
+
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+
+/**
+ * A browser connected for updates. Whilst its socket cannot keep up, frames are held back and only the latest for each job, the status and the
+ * iteration is kept, to be sent in one batch once the socket has caught up. Frames are sent and the session closed from the publishing thread,
+ * whilst catching up happens on the socket's event loop, so all of them hold the session's lock whilst they touch what is held back or write to
+ * the socket.
+ */
+public final class Session
+{
+    private static final long NOT_LAGGING = -1;
+    private final String id;
+    private final ServerWebSocket socket;
+    private final long connectedAt;
+    private final int maxPendingFrames;
+    private final SafeSerialisation safeSerialisation;
+    private final Counters counters;
+    private final LongAdder bytesSent = new LongAdder();
+    private final Map<Object, OutboundWebSocketFrame> keyToPendingFrame = new LinkedHashMap<>();
+    private volatile long lastHeartbeat;
+    private volatile boolean subscribed;
+    private long heldBackSequence;
+    private long laggingSince = NOT_LAGGING;
+    private boolean overflowed;
+    private long timesLagged;
+    private long framesDropped;
+
+    Session(final ServerWebSocket socket, final long connectedAt, final int maxPendingFrames, final SafeSerialisation safeSerialisation, final Counters counters)
+    {
+        this.id = socket.textHandlerID();
+        this.socket = socket;
+        this.connectedAt = connectedAt;
+        this.maxPendingFrames = maxPendingFrames;
+        this.safeSerialisation = safeSerialisation;
+        this.counters = counters;
+        this.lastHeartbeat = connectedAt;
+        socket.drainHandler(event -> catchUp());
+    }
+
+    /**
+     * Writes the frame, already serialised so the same text can be written to every session, unless the socket is behind, in which case the
+     * frame is held back.
+     *
+     * @throws IllegalStateException if the socket has closed
+     */
+    public synchronized void send(final String text, final OutboundWebSocketFrame frame, final long currentTime)
+    {
+        if (keyToPendingFrame.isEmpty() && !socket.writeQueueFull())
+        {
+            write(text);
+            return;
+        }
+        heldBackSequence = Math.max(heldBackSequence, frame.getSequence());
+        if (laggingSince == NOT_LAGGING)
+        {
+            laggingSince = currentTime;
+            timesLagged++;
+            counters.increment("feedback.sessions.lagged");
+        }
+        holdBack(frame);
+    }
+
+    /**
+     * Whether the socket has been behind for longer than the timeout, or so far behind that too many frames are being held back for it.
+     */
+    public synchronized boolean isStuck(final long currentTime, final long timeoutMillis)
+    {
+        return overflowed || (laggingSince != NOT_LAGGING && currentTime - laggingSince >= timeoutMillis);
+    }
+
+    /**
+     * Tells the browser it fell too far behind, so that it connects again straight away and asks for a snapshot, and closes the socket. A socket
+     * this far behind may never deliver the frame, in which case the browser notices the connection has gone and does the same a little later.
+     */
+    public synchronized void close(final String reason)
+    {
+        try
+        {
+            socket.writeFinalTextFrame(safeSerialisation.serisalise(OutboundWebSocketFrame.slowConsumer(reason)));
+            socket.close();
+        }
+        catch (final IllegalStateException e)
+        {
+            //Already closed
+        }
+    }
+
+    public void subscribe()
+    {
+        subscribed = true;
+    }
+
+    public boolean isSubscribed()
+    {
+        return subscribed;
+    }
+
+    public void onHeartbeat(final long currentTime)
+    {
+        lastHeartbeat = currentTime;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public ServerWebSocket getSocket()
+    {
+        return socket;
+    }
+
+    public long getConnectedAt()
+    {
+        return connectedAt;
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent.sum();
+    }
+
+    public long getLastHeartbeat()
+    {
+        return lastHeartbeat;
+    }
+
+    /**
+     * The number of frames held back until the socket catches up, at most one for each job, the status and the iteration.
+     */
+    public synchronized int getPendingWrites()
+    {
+        return keyToPendingFrame.size();
+    }
+
+    public synchronized long getTimesLagged()
+    {
+        return timesLagged;
+    }
+
+    /**
+     * The number of frames held back which were replaced by a newer frame for the same job before they could be sent.
+     */
+    public synchronized long getFramesDropped()
+    {
+        return framesDropped;
+    }
+
+    private void holdBack(final OutboundWebSocketFrame frame)
+    {
+        if (frame.getType() == FrameType.BATCH)
+        {
+            @SuppressWarnings("unchecked")
+            final List<OutboundWebSocketFrame> frames = (List<OutboundWebSocketFrame>)frame.getValue();
+            frames.forEach(this::holdBack);
+            return;
+        }
+        //A patch only holds the changes since the version before it, which may be one of the frames it replaces, so the whole job is held back
+        final OutboundWebSocketFrame wholeFrame = frame.withoutPatch();
+        final Object key = keyOf(wholeFrame);
+        //Removing first moves the key to the end, so frames are sent in the order of each key's latest change
+        if (keyToPendingFrame.remove(key) != null)
+        {
+            framesDropped++;
+            counters.increment("feedback.sessions.dropped");
+        }
+        keyToPendingFrame.put(key, wholeFrame);
+        overflowed = overflowed || keyToPendingFrame.size() > maxPendingFrames;
+    }
+
+    private synchronized void catchUp()
+    {
+        laggingSince = NOT_LAGGING;
+        if (keyToPendingFrame.isEmpty())
+        {
+            return;
+        }
+        final List<OutboundWebSocketFrame> frames = new ArrayList<>(keyToPendingFrame.values());
+        keyToPendingFrame.clear();
+        //Everything up to the latest frame held back has been folded into what is sent, so the browser can resume from there
+        final OutboundWebSocketFrame frame = (frames.size() == 1 ? frames.get(0) : OutboundWebSocketFrame.batch(frames)).sequenced(heldBackSequence);
+        try
+        {
+            write(safeSerialisation.serisalise(frame));
+        }
+        catch (final IllegalStateException e)
+        {
+            //Closed whilst catching up
+        }
+    }
+
+    private void write(final String text)
+    {
+        final WebSocketFrame frame = WebSocketFrame.textFrame(text, true);
+        socket.writeFrame(frame);
+        bytesSent.add(frame.binaryData().length());
+    }
+
+    private static Object keyOf(final OutboundWebSocketFrame frame)
+    {
+        switch (frame.getType())
+        {
+            case JOB_UPDATE:
+                return ((PublishableJob)frame.getValue()).getName();
+            case JOB_DELETED:
+                return frame.getValue();
+            default:
+                //Status and iteration updates replace the last of their own kind
+                return frame.getType();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes.websocket;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.util.SafeSerialisation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+import io.vertx.core.http.ServerWebSocket;
+
+/**
+ * The browsers connected for updates, by the id of their socket's text handler.
+ */
+public final class SessionRegistry
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionRegistry.class);
+    private final Map<String, Session> idToSession = new ConcurrentHashMap<>();
+    private final Collection<Session> sessions = Collections.unmodifiableCollection(idToSession.values());
+    private final int maxPendingFrames;
+    private final SafeSerialisation safeSerialisation;
+    private final Counters counters;
+
+    public SessionRegistry(final int maxPendingFrames, final SafeSerialisation safeSerialisation, final Counters counters)
+    {
+        this.maxPendingFrames = maxPendingFrames;
+        this.safeSerialisation = safeSerialisation;
+        this.counters = counters;
+    }
+
+    public Session register(final ServerWebSocket socket, final long currentTime)
+    {
+        final Session session = new Session(socket, currentTime, maxPendingFrames, safeSerialisation, counters);
+        idToSession.put(session.getId(), session);
+        return session;
+    }
+
+    public void remove(final String id)
+    {
+        idToSession.remove(id);
+    }
+
+    public void disconnectSlowConsumer(final Session session)
+    {
+        if (idToSession.remove(session.getId()) != null)
+        {
+            LOGGER.info("Disconnecting session {} from {} which has lagged {} times, had {} frames replaced whilst lagging and has {} frames waiting",
+                        session.getId(), session.getSocket().remoteAddress(), session.getTimesLagged(), session.getFramesDropped(), session.getPendingWrites());
+            counters.increment("feedback.sessions.disconnected");
+            session.close("Too far behind");
+        }
+    }
+
+    public Session get(final String id)
+    {
+        return idToSession.get(id);
+    }
+
+    /**
+     * A live view of the sessions, which can be iterated whilst sessions come and go without copying them.
+     */
+    public Collection<Session> sessions()
+    {
+        return sessions;
+    }
+
+    public int size()
+    {
+        return idToSession.size();
+    }
+
+    public long totalPendingWrites()
+    {
+        long pendingWrites = 0;
+        for (final Session session : sessions)
+        {
+            pendingWrites += session.getPendingWrites();
+        }
+        return pendingWrites;
+    }
+}
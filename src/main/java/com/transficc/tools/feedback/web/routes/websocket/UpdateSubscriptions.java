@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes.websocket;
+
+/**
+ * How a browser starts receiving updates once it has connected. Nothing is broadcast to a session until it has resumed or been sent a snapshot.
+ */
+public interface UpdateSubscriptions
+{
+    /**
+     * Sends the frames broadcast since the given one, or a snapshot if they are no longer all held or were broadcast before a restart.
+     */
+    void resume(Session session, long startUpTime, long lastSequence);
+
+    void snapshot(Session session);
+
+    /**
+     * Sends the whole of a job as it was last published, to a browser which cannot apply a patch to its copy.
+     */
+    void resend(Session session, String jobName);
+}
@@ -14,8 +14,6 @@ package com.transficc.tools.feedback.web.routes.websocket;
 
 import com.transficc.tools.feedback.util.ClockService;
 import com.transficc.tools.feedback.util.SafeSerialisation;
-import com.transficc.tools.feedback.web.messaging.PublishableJob;
-import com.transficc.tools.feedback.web.routes.JobStatusSnapshot;
 
 
 import io.vertx.core.Handler;
@@ -24,25 +22,25 @@ import io.vertx.core.http.WebSocketFrame;
 
 public class WebSocketFrameHandler implements Handler<WebSocketFrame>
 {
-    private final String sessionId;
+    private final Session session;
     private final EventBus eventBus;
     private final SafeSerialisation safeSerialisation;
     private final ClockService clockService;
-    private final JobStatusSnapshot jobStatusSnapshot;
+    private final UpdateSubscriptions updateSubscriptions;
     private final long startUpTime;
 
-    public WebSocketFrameHandler(final String sessionId,
+    public WebSocketFrameHandler(final Session session,
                                  final EventBus eventBus,
                                  final SafeSerialisation safeSerialisation,
                                  final ClockService clockService,
-                                 final JobStatusSnapshot jobStatusSnapshot,
+                                 final UpdateSubscriptions updateSubscriptions,
                                  final long startUpTime)
     {
-        this.sessionId = sessionId;
+        this.session = session;
         this.eventBus = eventBus;
         this.safeSerialisation = safeSerialisation;
         this.clockService = clockService;
-        this.jobStatusSnapshot = jobStatusSnapshot;
+        this.updateSubscriptions = updateSubscriptions;
         this.startUpTime = startUpTime;
     }
 
@@ -52,14 +50,33 @@ public class WebSocketFrameHandler implements Handler<WebSocketFrame>
         final String payload = frame.textData();
         if ("--heartbeat--".equals(payload))
         {
-            eventBus.send(sessionId, safeSerialisation.serisalise(OutboundWebSocketFrame.heartbeat(new HeartbeatMessage(clockService.currentTimeMillis(), startUpTime))));
+            final long currentTime = clockService.currentTimeMillis();
+            session.onHeartbeat(currentTime);
+            eventBus.send(session.getId(), safeSerialisation.serisalise(OutboundWebSocketFrame.heartbeat(new HeartbeatMessage(currentTime, startUpTime))));
         }
         else if ("snapshot".equals(payload))
         {
-            for (final PublishableJob job : jobStatusSnapshot.getPublishableJobs())
-            {
-                eventBus.send(sessionId, safeSerialisation.serisalise(OutboundWebSocketFrame.jobUpdate(job)));
-            }
+            updateSubscriptions.snapshot(session);
+        }
+        else if (payload.startsWith("resume "))
+        {
+            resume(payload.split(" "));
+        }
+        else if (payload.startsWith("job "))
+        {
+            updateSubscriptions.resend(session, payload.substring("job ".length()));
+        }
+    }
+
+    private void resume(final String[] resumeFrom)
+    {
+        try
+        {
+            updateSubscriptions.resume(session, Long.parseLong(resumeFrom[1]), Long.parseLong(resumeFrom[2]));
+        }
+        catch (final NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            updateSubscriptions.snapshot(session);
         }
     }
 }
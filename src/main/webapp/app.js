@@ -19,6 +19,12 @@ var heartBeatInterval = null;
 var webSocket;
 var missedHeartBeats = 0;
 var startUpTime;
+var lastSequence = 0;
+// The last whole copy of each job received, with its version, for patches to be applied to
+var jobs = {};
+
+// Set when the server says this page has fallen too far behind with updates, just before it closes the connection
+var closedAsSlowConsumer = false;
 
 // Job Status'
 var SUCCESS = 'success';
@@ -101,9 +107,12 @@ $(document).ready(function() {
 
     function onOpen() {
         if (heartBeatInterval === null) {
-            if ($('#disconnected').is(':visible')) {
-                webSocket.send('snapshot');
-            }
+            // A job asked for over the last connection may never have arrived
+            _.each(jobs, function(entry) {
+                entry.resending = false;
+            });
+            // Replays whatever was missed since the page was rendered or the last update, or sends a snapshot if that is too far back
+            webSocket.send('resume ' + startUpTime + ' ' + lastSequence);
             missedHeartBeats = 0;
             $('#disconnected').hide();
             heartBeatInterval = setInterval(function() {
@@ -124,10 +133,15 @@ $(document).ready(function() {
     function onClose() {
         clearInterval(heartBeatInterval);
         heartBeatInterval = null;
-        $('#disconnected').show();
+        var slowConsumer = closedAsSlowConsumer;
+        closedAsSlowConsumer = false;
+        if (!slowConsumer) {
+            // A slow consumer was closed by a server which is still there, so it catches up straight away rather than show the page as disconnected
+            $('#disconnected').show();
+        }
         setTimeout(function() {
             setupWebSocket()
-        }, 10000);
+        }, slowConsumer ? 1000 : 10000);
     }
 
     function handleUpdateForOrdinaryJob($job, jobName, newJobStatus) {
@@ -162,7 +176,7 @@ $(document).ready(function() {
     }
 
     function onJobUpdate(job) {
-        var $job = $('#' + job.name);
+        var $job = $(document.getElementById(job.name));
         var isANewJob = $job.length === 0;
         if (isANewJob) {
             location.reload();
@@ -190,34 +204,77 @@ $(document).ready(function() {
             failCount: !!testResults && testResults.failCount,
             skipCount: !!testResults && testResults.skipCount,
             timestamp: job.timestamp,
-            timeDifference: getJobTimeDifference(job.timestamp)
+            timeDifference: getJobTimeDifference(job.timestamp),
+            stale: job.stale,
+            queued: job.queued,
+            queuedSince: job.queuedSince,
+            queuedTimeDifference: getJobTimeDifference(job.queuedSince)
         }));
-        regulariseJobHeight();
+    }
+
+    function onJobPatch(patch, version) {
+        var current = jobs[patch.name];
+        if (!current || current.version !== version - 1) {
+            // Patches are ignored until the whole job arrives, which only needs asking for once
+            if (!current || !current.resending) {
+                jobs[patch.name] = {job: current && current.job, version: current ? current.version : 0, resending: true};
+                webSocket.send('job ' + patch.name);
+            }
+            return false;
+        }
+        var job = _.assign({}, current.job, patch.changes);
+        jobs[patch.name] = {job: job, version: version};
+        onJobUpdate(job);
+        return true;
     }
 
     function onJobRemoved(jobName) {
-        $job = $('#' + jobName).parent().remove();
+        delete jobs[jobName];
+        $job = $(document.getElementById(jobName)).parent().remove();
     }
 
-    function onUpdate(message) {
-        var data = JSON.parse(message.data);
-        var type = data.type;
+    // Returns whether a job was redrawn, so that the heights of the jobs are only evened up once however many were
+    function applyFrame(frame) {
+        var type = frame.type;
 
         if (type === 'JOB_UPDATE') {
-            onJobUpdate(data.value);
+            jobs[frame.value.name] = {job: frame.value, version: frame.version};
+            onJobUpdate(frame.value);
+            return true;
+        } else if (type === 'JOB_PATCH') {
+            return onJobPatch(frame.value, frame.version);
         } else if (type === 'STATUS_UPDATE') {
-            onStatusUpdate(data.value.status);
+            onStatusUpdate(frame.value.status);
         } else if (type === 'ITERATION_UPDATE') {
-            $('#iteration').html(data.value.iteration);
+            $('#iteration').html(frame.value.iteration);
         } else if (type === 'HEARTBEAT') {
-            if (data.value.serverStartUpTime !== startUpTime) {
+            if (frame.value.serverStartUpTime !== startUpTime) {
                 console.log('Server update detected. Reloading client');
                 location.reload();
             }
             missedHeartBeats = 0;
-            updateTimestamps(data.value.currentServerTime);
+            updateTimestamps(frame.value.currentServerTime);
         } else if (type === 'JOB_DELETED') {
-            onJobRemoved(data.value);
+            onJobRemoved(frame.value);
+        } else if (type === 'SLOW_CONSUMER') {
+            closedAsSlowConsumer = true;
+        }
+        return false;
+    }
+
+    function onUpdate(message) {
+        var data = JSON.parse(message.data);
+        var frames = data.type === 'BATCH' ? data.value : [data];
+        var jobsRedrawn = false;
+
+        if (data.sequence) {
+            lastSequence = data.sequence;
+        }
+        _.each(frames, function(frame) {
+            jobsRedrawn = applyFrame(frame) || jobsRedrawn;
+        });
+        if (jobsRedrawn) {
+            regulariseJobHeight();
         }
     }
 
@@ -242,6 +299,14 @@ $(document).ready(function() {
     }
 
     startUpTime = $('#start-up-time').data('value');
+    lastSequence = $('#sequence').data('value');
+    // Jobs are rendered as they were last published, so the patches which follow the page's sequence apply to them straight away
+    $('.job').each(function() {
+        var version = $(this).data('version');
+        if (version) {
+            jobs[$(this).attr('data-title')] = {job: $(this).data('job'), version: version};
+        }
+    });
     updateTimestamps();
     setupWebSocket();
     $('#set-iteration').click(setIteration);
@@ -3,25 +3,36 @@ package com.transficc.tools.feedback;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.ci.AsyncContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.BlockingContinuousIntegrationServerAdapter;
 import com.transficc.tools.feedback.ci.ContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.JobMetadataCache;
+import com.transficc.tools.feedback.ci.JobNamespace;
 import com.transficc.tools.feedback.ci.JobService;
+import com.transficc.tools.feedback.ci.PollScheduler;
+import com.transficc.tools.feedback.domain.Folder;
 import com.transficc.tools.feedback.domain.Job;
 import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
 import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.web.messaging.ConflatingMessageQueue;
 import com.transficc.tools.feedback.web.messaging.MessageBus;
 import com.transficc.tools.feedback.web.messaging.PublishableJob;
+import com.transficc.tools.feedback.web.routes.websocket.FrameType;
 import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
 
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.Is;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 
@@ -33,11 +44,14 @@ public class JobServiceTest
     private final ScheduledExecutorService scheduledExecutorService = Mockito.mock(ScheduledExecutorService.class);
     @SuppressWarnings("rawtypes")
     private final ScheduledFuture scheduledFuture = Mockito.mock(ScheduledFuture.class);
-    private final LinkedBlockingQueue<OutboundWebSocketFrame> messageBusQueue = new LinkedBlockingQueue<>();
+    private final ConflatingMessageQueue messageBusQueue = new ConflatingMessageQueue(64, ConflatingMessageQueue.WaitStrategy.BLOCKING,
+                                                                                      ConflatingMessageQueue.OverflowPolicy.BLOCK, new Counters());
     private final MessageBus messageBus = new MessageBus(messageBusQueue);
     private final ContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(ContinuousIntegrationServer.class);
     private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
-    private final JobService jobService = new JobService(jobRepository, messageBus, scheduledExecutorService, continuousIntegrationServer, "job");
+    private final BlockingContinuousIntegrationServerAdapter ciServer = new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run);
+    private final JobService jobService = new JobService(jobRepository, messageBus, scheduledExecutorService, Runnable::run, ciServer,
+                                                         "job", false, 1000, new JobMetadataCache(ciServer, 60_000, System::currentTimeMillis), 2, System::currentTimeMillis, new PollScheduler(), new JobNamespace(""));
 
     @SuppressWarnings("unchecked")
     @Before
@@ -50,9 +64,9 @@ public class JobServiceTest
     @Test
     public void shouldOnlyAddEachJobOnce()
     {
-        BDDMockito.given(continuousIntegrationServer.getAllJobs())
-                .willReturn(Result.success(Collections.singletonList(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT))),
-                            Result.success(Collections.singletonList(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT))));
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)),
+                            folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
 
         jobService.run();
         jobService.run();
@@ -70,10 +84,10 @@ public class JobServiceTest
     @SuppressWarnings("unchecked")
     public void shouldAddJobAsTheyAreCreated()
     {
-        BDDMockito.given(continuousIntegrationServer.getAllJobs())
-                .willReturn(Result.success(Collections.singletonList(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT))),
-                            Result.success(Arrays.asList(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT),
-                                                         new Job("Chinar", "stuff.com", JobStatus.DISABLED, VersionControl.GIT))));
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)),
+                            folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT),
+                                   new Job("Chinar", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
 
         jobService.run();
         jobService.run();
@@ -88,4 +102,142 @@ public class JobServiceTest
         MatcherAssert.assertThat(publishableJobs.get(1).getUrl(), Is.is("stuff.com"));
         MatcherAssert.assertThat(publishableJobs.get(1).getJobStatus(), Is.is(JobStatus.DISABLED));
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldRemoveJobsWhichNoLongerExist()
+    {
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT),
+                                   new Job("Chinar", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)),
+                            folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
+
+        jobService.run();
+        jobService.run();
+
+        MatcherAssert.assertThat(jobRepository.contains("Chinar"), Is.is(false));
+        MatcherAssert.assertThat(jobRepository.contains("Tom"), Is.is(true));
+        final OutboundWebSocketFrame frame = messageBusQueue.poll();
+        MatcherAssert.assertThat(frame.getType(), Is.is(FrameType.JOB_DELETED));
+        MatcherAssert.assertThat(frame.getValue(), Is.is("Chinar"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldKeepShowingAJobsLastBuildWhenItsUrlChanges()
+    {
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)),
+                            folder(new Job("Tom", "moved.com", JobStatus.DISABLED, VersionControl.GIT)));
+        jobService.run();
+        jobRepository.getJob("Tom").wasUpdated(new LatestBuildInformation("abc", JobStatus.SUCCESS, 7, 5L, 100, new String[0], false, null, 10));
+
+        jobService.run();
+
+        final PublishableJob publishableJob = jobRepository.getPublishableJobs().get(0);
+        MatcherAssert.assertThat(publishableJob.getUrl(), Is.is("moved.com"));
+        MatcherAssert.assertThat(publishableJob.getJobStatus(), Is.is(JobStatus.SUCCESS));
+        MatcherAssert.assertThat(publishableJob.getBuildNumber(), Is.is(7));
+        final OutboundWebSocketFrame frame = messageBusQueue.poll();
+        MatcherAssert.assertThat(frame.getType(), Is.is(FrameType.JOB_UPDATE));
+        MatcherAssert.assertThat(((PublishableJob)frame.getValue()).getBuildNumber(), Is.is(7));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldFindJobsWithinFolders()
+    {
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(Collections.singletonMap("team", "1-a"), new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
+        BDDMockito.given(continuousIntegrationServer.getFolder("team"))
+                .willReturn(folder(Collections.singletonMap("team/project", "1-b")));
+        BDDMockito.given(continuousIntegrationServer.getFolder("team/project"))
+                .willReturn(folder(new Job("team/project/master", "stuff.com/master", JobStatus.DISABLED, VersionControl.GIT)));
+
+        jobService.run();
+
+        MatcherAssert.assertThat(jobRepository.contains("Tom"), Is.is(true));
+        MatcherAssert.assertThat(jobRepository.contains("team/project/master"), Is.is(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotListAFolderAgainUntilItsMarkerChanges()
+    {
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(Collections.singletonMap("team", "1-a")),
+                            folder(Collections.singletonMap("team", "1-a")),
+                            folder(Collections.singletonMap("team", "2-b")));
+        BDDMockito.given(continuousIntegrationServer.getFolder("team"))
+                .willReturn(folder(new Job("team/master", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)),
+                            folder(new Job("team/master", "stuff.com", JobStatus.DISABLED, VersionControl.GIT),
+                                   new Job("team/release", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
+
+        jobService.run();
+        jobService.run();
+
+        Mockito.verify(continuousIntegrationServer, Mockito.times(1)).getFolder("team");
+        MatcherAssert.assertThat(jobRepository.contains("team/master"), Is.is(true));
+
+        jobService.run();
+
+        Mockito.verify(continuousIntegrationServer, Mockito.times(2)).getFolder("team");
+        MatcherAssert.assertThat(jobRepository.contains("team/release"), Is.is(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldKeepTheJobsInAFolderWhichCouldNotBeListedBecauseOfAnException()
+    {
+        final AsyncContinuousIntegrationServer throwingServer = Mockito.mock(AsyncContinuousIntegrationServer.class, AdditionalAnswers.delegatesTo(ciServer));
+        final JobService throwingJobService = jobService(throwingServer);
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(Collections.singletonMap("team", "1-a")),
+                            folder(Collections.singletonMap("team", "2-b")));
+        BDDMockito.given(continuousIntegrationServer.getFolder("team"))
+                .willReturn(folder(new Job("team/master", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
+        throwingJobService.run();
+        BDDMockito.willThrow(new IllegalStateException("Client closed")).given(throwingServer).getFolder("team");
+
+        throwingJobService.run();
+        throwingJobService.run();
+
+        MatcherAssert.assertThat(jobRepository.contains("team/master"), Is.is(true));
+        Mockito.verify(throwingServer, Mockito.times(3)).getFolder("");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldCarryOnDiscoveringJobsAfterAnExceptionListingTheTopLevelFolder()
+    {
+        final AsyncContinuousIntegrationServer throwingServer = Mockito.mock(AsyncContinuousIntegrationServer.class, AdditionalAnswers.delegatesTo(ciServer));
+        final JobService throwingJobService = jobService(throwingServer);
+        BDDMockito.willThrow(new IllegalStateException("Client closed"))
+                .willAnswer(AdditionalAnswers.delegatesTo(ciServer))
+                .given(throwingServer).getFolder("");
+        BDDMockito.given(continuousIntegrationServer.getFolder(""))
+                .willReturn(folder(new Job("Tom", "stuff.com", JobStatus.DISABLED, VersionControl.GIT)));
+
+        throwingJobService.run();
+        throwingJobService.run();
+
+        MatcherAssert.assertThat(jobRepository.contains("Tom"), Is.is(true));
+    }
+
+    private JobService jobService(final AsyncContinuousIntegrationServer server)
+    {
+        return new JobService(jobRepository, messageBus, scheduledExecutorService, Runnable::run, server,
+                              "job", false, 1000, new JobMetadataCache(server, 60_000, System::currentTimeMillis), 2, System::currentTimeMillis, new PollScheduler(),
+                              new JobNamespace(""));
+    }
+
+    private static Result<Integer, Folder> folder(final Job... jobs)
+    {
+        return folder(Collections.emptyMap(), jobs);
+    }
+
+    private static Result<Integer, Folder> folder(final Map<String, String> folderNameToMarker, final Job... jobs)
+    {
+        return Result.success(new Folder(Arrays.asList(jobs), folderNameToMarker));
+    }
+}
@@ -66,7 +66,7 @@ public class JobTest
     {
         Assert.assertTrue(job.wasUpdated(new LatestBuildInformation("revision21", JobStatus.SUCCESS, 2, 1468934838586L, 0, new String[0], false, null, 0)));
 
-        final PublishableJob publishable = job.createPublishable(1, false);
+        final PublishableJob publishable = job.createPublishable(1, false, false, 0, 0);
 
         assertThat(publishable.getRevision(), is("revisio"));
     }
@@ -77,7 +77,7 @@ public class JobTest
         final Job job = new Job("tom", "url", JobStatus.SUCCESS, VersionControl.SVN);
         Assert.assertTrue(job.wasUpdated(new LatestBuildInformation("revision21", JobStatus.SUCCESS, 2, 1468934838586L, 0, new String[0], false, null, 0)));
 
-        final PublishableJob publishable = job.createPublishable(1, false);
+        final PublishableJob publishable = job.createPublishable(1, false, false, 0, 0);
 
         assertThat(publishable.getRevision(), is("revision21"));
     }
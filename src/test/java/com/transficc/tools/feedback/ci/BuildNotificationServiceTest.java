@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Collections;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.web.messaging.MessageBus;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+public class BuildNotificationServiceTest
+{
+    private static final String JOB_NAME = "master-commit";
+    private static final long CLOCK_TIME = 1_000_000L;
+    private final ContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(ContinuousIntegrationServer.class);
+    private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
+    private final PollScheduler pollScheduler = new PollScheduler();
+    private final JobMetadataCache jobMetadataCache = new JobMetadataCache(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), 60_000,
+                                                                           () -> CLOCK_TIME);
+    private final BuildNotificationService buildNotificationService = new BuildNotificationService(jobRepository, Mockito.mock(MessageBus.class), pollScheduler, () -> CLOCK_TIME,
+                                                                                                   new JobNamespace(""), jobMetadataCache);
+
+    @Test
+    public void shouldPollDownstreamJobsStraightAwayWhenABuildIsPushedAsComplete()
+    {
+        //Given
+        final FeedbackJob job = new FeedbackJob(false, 1, new Job(JOB_NAME, "url", JobStatus.SUCCESS, VersionControl.GIT));
+        final FeedbackJob downstreamJob = new FeedbackJob(false, 0, new Job("Downstream", "url", JobStatus.SUCCESS, VersionControl.GIT));
+        job.wasUpdated(new LatestBuildInformation("5435dsd", JobStatus.BUILDING, 42, CLOCK_TIME - 10, 0, new String[0], true, null, 0));
+        jobRepository.add(job);
+        jobRepository.add(downstreamJob);
+        given(continuousIntegrationServer.getAllJobMetadata(Mockito.any()))
+                .willReturn(Result.success(Collections.singletonMap(JOB_NAME, new JobMetadata(true, 40, Collections.singletonList("Downstream")))));
+        jobMetadataCache.load(Collections.singletonList(JOB_NAME));
+        pollScheduler.takeDueJobs(Collections.singletonList(downstreamJob), CLOCK_TIME - 1000);
+        pollScheduler.onSuccess(downstreamJob, CLOCK_TIME - 1000);
+
+        //When
+        buildNotificationService.onBuildNotification(JOB_NAME, 42, false, JobStatus.SUCCESS, "5435dsd");
+
+        //Then
+        assertThat(job.getJobStatus(), is(JobStatus.SUCCESS));
+        assertThat(pollScheduler.nextDeadline("Downstream"), is(CLOCK_TIME));
+    }
+}
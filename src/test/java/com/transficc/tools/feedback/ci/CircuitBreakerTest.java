@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.tools.feedback.util.Counters;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class CircuitBreakerTest
+{
+    private static final long OPEN_MILLIS = 30_000;
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final Counters counters = new Counters();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("jenkins", 2, OPEN_MILLIS, clock::get, counters);
+
+    @Test
+    public void shouldIgnoreALateSuccessFromBeforeTheBreakerOpened()
+    {
+        //Given
+        final long straggler = circuitBreaker.tryAcquire();
+        circuitBreaker.onFailure(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure(circuitBreaker.tryAcquire());
+
+        //When
+        circuitBreaker.onSuccess(straggler);
+
+        //Then
+        assertThat(circuitBreaker.tryAcquire(), is(CircuitBreaker.REJECTED));
+        assertThat(counters.get("jenkins.breaker.closed"), is(0L));
+    }
+
+    @Test
+    public void shouldOnlyCloseOnceTheProbeSucceeds()
+    {
+        //Given
+        final long straggler = circuitBreaker.tryAcquire();
+        circuitBreaker.onFailure(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure(circuitBreaker.tryAcquire());
+        clock.addAndGet(OPEN_MILLIS);
+        final long probe = circuitBreaker.tryAcquire();
+        circuitBreaker.onSuccess(straggler);
+        assertThat(circuitBreaker.tryAcquire(), is(CircuitBreaker.REJECTED));
+
+        //When
+        circuitBreaker.onSuccess(probe);
+
+        //Then
+        assertThat(circuitBreaker.tryAcquire() == CircuitBreaker.REJECTED, is(false));
+        assertThat(counters.get("jenkins.breaker.closed"), is(1L));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.util.Counters;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CoalescingContinuousIntegrationServerTest
+{
+    private static final String JOB_NAME = "master";
+    private static final long CACHE_MILLIS = 500;
+    private static final Result<Integer, LatestBuildInformation> BUILD =
+            Result.success(new LatestBuildInformation("abc123", JobStatus.SUCCESS, 3, 10, 100, new String[0], false, null, 5));
+    private final AsyncContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(AsyncContinuousIntegrationServer.class);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final Counters counters = new Counters();
+    private final CoalescingContinuousIntegrationServer ciServer = new CoalescingContinuousIntegrationServer(continuousIntegrationServer, "jenkins", CACHE_MILLIS, timer,
+                                                                                                            clock::get, counters);
+
+    @After
+    public void tearDown()
+    {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void shouldShareARequestInFlightBetweenEveryoneAskingTheSameQuestion()
+    {
+        //Given
+        final CompletableFuture<Result<Integer, LatestBuildInformation>> response = new CompletableFuture<>();
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS)).willReturn(response);
+
+        //When
+        final CompletableFuture<Result<Integer, LatestBuildInformation>> first = ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
+        final CompletableFuture<Result<Integer, LatestBuildInformation>> second = ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
+        final boolean completedEarly = first.isDone() || second.isDone();
+        response.complete(BUILD);
+
+        //Then
+        assertFalse(completedEarly);
+        assertThat(first.join(), is(BUILD));
+        assertThat(second.join(), is(BUILD));
+        verify(continuousIntegrationServer, times(1)).getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
+        assertThat(counters.get("jenkins.requests.coalesced"), is(1L));
+    }
+
+    @Test
+    public void shouldAnswerFromTheLastResultOnlyWithinTheWindow()
+    {
+        //Given
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS)).willReturn(CompletableFuture.completedFuture(BUILD));
+        ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).join();
+
+        //When
+        clock.addAndGet(CACHE_MILLIS - 1);
+        final Result<Integer, LatestBuildInformation> cached = ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).join();
+        clock.addAndGet(1);
+        ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).join();
+
+        //Then
+        assertThat(cached, is(BUILD));
+        verify(continuousIntegrationServer, times(2)).getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
+        assertThat(counters.get("jenkins.requests.cached"), is(1L));
+    }
+
+    @Test
+    public void shouldNotKeepFailuresOrShareThemBetweenDifferentQuestions()
+    {
+        //Given
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS))
+                .willReturn(CompletableFuture.completedFuture(Result.error(503)))
+                .willReturn(CompletableFuture.completedFuture(BUILD));
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.ERROR)).willReturn(CompletableFuture.completedFuture(BUILD));
+
+        //When
+        ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).join();
+        final Result<Integer, LatestBuildInformation> retried = ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).join();
+        ciServer.getLatestBuildInformation(JOB_NAME, JobStatus.ERROR).join();
+
+        //Then
+        assertThat(retried, is(BUILD));
+        verify(continuousIntegrationServer, times(2)).getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
+        verify(continuousIntegrationServer, times(1)).getLatestBuildInformation(JOB_NAME, JobStatus.ERROR);
+        assertThat(counters.get("jenkins.requests.cached"), is(0L));
+    }
+}
@@ -40,4 +40,53 @@ public class FeedbackJobTest
         //Then
         Assert.assertArrayEquals(new String[0], publishable.getComments());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldIgnoreBuildInformationForAnOlderBuild()
+    {
+        //Given
+        final FeedbackJob job = new FeedbackJob(false, 1, new Job("tom", "tom.com", JobStatus.DISABLED, VersionControl.GIT));
+        job.wasNotified(4, JobStatus.BUILDING, true, "5678", 42342L);
+
+        //When
+        final boolean updated = job.wasUpdated(new LatestBuildInformation("1234", JobStatus.SUCCESS, 3, 42342L, 100, new String[0], false, null, 23));
+
+        //Then
+        Assert.assertFalse(updated);
+        Assert.assertEquals(4, job.createPublishable().getBuildNumber());
+    }
+
+    @Test
+    public void shouldKeepCommentsForTheSameBuildWhenNotifiedOfCompletion()
+    {
+        //Given
+        final FeedbackJob job = new FeedbackJob(true, 1, new Job("tom", "tom.com", JobStatus.DISABLED, VersionControl.GIT));
+        final String[] comments = {"This is a comment"};
+        job.wasUpdated(new LatestBuildInformation("1234", JobStatus.BUILDING, 3, 42342L, 50, comments, true, null, 23));
+
+        //When
+        final boolean updated = job.wasNotified(3, JobStatus.SUCCESS, false, "1234", 50000L);
+
+        //Then
+        Assert.assertTrue(updated);
+        final PublishableJob publishable = job.createPublishable();
+        Assert.assertArrayEquals(comments, publishable.getComments());
+        Assert.assertEquals(JobStatus.SUCCESS, publishable.getJobStatus());
+        Assert.assertEquals(42342L, publishable.getTimestamp());
+    }
+
+    @Test
+    public void shouldKeepTheRevisionWhenNotifiedOfABuildWithoutACommit()
+    {
+        //Given
+        final FeedbackJob job = new FeedbackJob(false, 1, new Job("tom", "tom.com", JobStatus.DISABLED, VersionControl.GIT));
+        job.wasNotified(3, JobStatus.BUILDING, true, "1234567890", 42342L);
+
+        //When
+        final boolean updated = job.wasNotified(3, JobStatus.BUILDING, true, null, 42342L);
+
+        //Then
+        Assert.assertFalse(updated);
+        Assert.assertEquals("1234567", job.createPublishable().getRevision());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.JobMetadata;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class JobMetadataCacheTest
+{
+    private static final String JOB_NAME = "master";
+    private static final List<String> JOB_NAMES = Collections.singletonList(JOB_NAME);
+    private static final long TIME_TO_LIVE_MILLIS = 60_000;
+    private final ContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(ContinuousIntegrationServer.class);
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final JobMetadataCache jobMetadataCache = new JobMetadataCache(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run),
+                                                                           TIME_TO_LIVE_MILLIS, clock::get);
+
+    @Test
+    public void shouldSayWhichJobsHaveHadTheirMetadataFetched() throws Exception
+    {
+        //Given
+        given(continuousIntegrationServer.getAllJobMetadata(JOB_NAMES)).willReturn(Result.success(Collections.singletonMap(JOB_NAME, new JobMetadata(false, 20))));
+
+        //When
+        final Collection<String> fetchedJobNames = jobMetadataCache.load(JOB_NAMES).get();
+
+        //Then
+        assertThat(fetchedJobNames, is(JOB_NAMES));
+        assertThat(jobMetadataCache.get(JOB_NAME), is(new JobMetadata(false, 20)));
+    }
+
+    @Test
+    public void shouldNotWaitForMetadataWhichIsStillBeingFetched()
+    {
+        //Given
+        final CompletableFuture<Result<Integer, Map<String, JobMetadata>>> response = new CompletableFuture<>();
+        final AsyncContinuousIntegrationServer slowCiServer = Mockito.mock(AsyncContinuousIntegrationServer.class);
+        given(slowCiServer.getAllJobMetadata(JOB_NAMES)).willReturn(response);
+        final JobMetadataCache slowJobMetadataCache = new JobMetadataCache(slowCiServer, TIME_TO_LIVE_MILLIS, clock::get);
+        slowJobMetadataCache.load(JOB_NAMES);
+
+        //When
+        final boolean loaded = slowJobMetadataCache.load(JOB_NAMES).isDone();
+
+        //Then
+        assertTrue(loaded);
+        verify(slowCiServer, times(1)).getAllJobMetadata(Mockito.any());
+        assertThat(slowJobMetadataCache.get(JOB_NAME), is(JobMetadata.UNKNOWN));
+    }
+
+    @Test
+    public void shouldOnlyFetchTheMetadataOfANewJobRatherThanRefreshEveryJob()
+    {
+        //Given
+        final List<String> jobNamesWithNewJob = Arrays.asList(JOB_NAME, "new");
+        given(continuousIntegrationServer.getAllJobMetadata(Mockito.any())).willReturn(Result.success(Collections.emptyMap()));
+        jobMetadataCache.load(JOB_NAMES);
+
+        //When
+        clock.addAndGet(1);
+        jobMetadataCache.load(jobNamesWithNewJob);
+
+        //Then
+        verify(continuousIntegrationServer).getAllJobMetadata(JOB_NAMES);
+        verify(continuousIntegrationServer).getAllJobMetadata(Collections.singletonList("new"));
+        verify(continuousIntegrationServer, times(0)).getAllJobMetadata(jobNamesWithNewJob);
+    }
+
+    @Test
+    public void shouldOnlyFetchMetadataAgainOnceItHasExpired()
+    {
+        //Given
+        given(continuousIntegrationServer.getAllJobMetadata(JOB_NAMES))
+                .willReturn(Result.success(Collections.singletonMap(JOB_NAME, new JobMetadata(true, 20))))
+                .willReturn(Result.success(Collections.singletonMap(JOB_NAME, new JobMetadata(true, 30))));
+        jobMetadataCache.load(JOB_NAMES);
+
+        //When
+        clock.addAndGet(TIME_TO_LIVE_MILLIS - 1);
+        jobMetadataCache.load(JOB_NAMES);
+        final JobMetadata beforeExpiry = jobMetadataCache.get(JOB_NAME);
+        clock.addAndGet(1);
+        jobMetadataCache.load(JOB_NAMES);
+
+        //Then
+        verify(continuousIntegrationServer, times(2)).getAllJobMetadata(JOB_NAMES);
+        assertThat(beforeExpiry, is(new JobMetadata(true, 20)));
+        assertThat(jobMetadataCache.get(JOB_NAME), is(new JobMetadata(true, 30)));
+    }
+
+    @Test
+    public void shouldPollWithoutMetadataAndWaitBeforeAskingAgainWhenItCannotBeFetched()
+    {
+        //Given
+        given(continuousIntegrationServer.getAllJobMetadata(JOB_NAMES)).willReturn(Result.error(503));
+        jobMetadataCache.load(JOB_NAMES);
+
+        //When
+        clock.addAndGet(JobMetadataCache.RETRY_MILLIS - 1);
+        final boolean loaded = jobMetadataCache.load(JOB_NAMES).isDone();
+
+        //Then
+        assertTrue(loaded);
+        verify(continuousIntegrationServer, times(1)).getAllJobMetadata(JOB_NAMES);
+        assertThat(jobMetadataCache.get(JOB_NAME), is(JobMetadata.UNKNOWN));
+    }
+}
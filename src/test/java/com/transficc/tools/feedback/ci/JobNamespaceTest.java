@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class JobNamespaceTest
+{
+    private final JobNamespace london = new JobNamespace("london");
+
+    @Test
+    public void shouldKeepTheServerNameApartFromTheFoldersOfAJob()
+    {
+        //When
+        final String qualifiedJobName = london.qualify("team/master");
+
+        //Then
+        assertThat(qualifiedJobName, is("london:team/master"));
+        assertThat(london.unqualify(qualifiedJobName), is("team/master"));
+        assertThat(london.contains(qualifiedJobName), is(true));
+    }
+
+    @Test
+    public void shouldNotClaimAJobInAFolderNamedAfterTheServer()
+    {
+        //Then
+        assertThat(london.contains("london/master"), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectAServerNameContainingTheSeparator()
+    {
+        //When
+        new JobNamespace("london:city");
+    }
+}
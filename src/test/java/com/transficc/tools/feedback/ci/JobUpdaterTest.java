@@ -1,10 +1,19 @@
 package com.transficc.tools.feedback.ci;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.transficc.functionality.Result;
 import com.transficc.tools.feedback.JobRepository;
 import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
 import com.transficc.tools.feedback.domain.JobStatus;
 import com.transficc.tools.feedback.domain.LatestBuildInformation;
 import com.transficc.tools.feedback.domain.TestResults;
@@ -12,6 +21,8 @@ import com.transficc.tools.feedback.domain.VersionControl;
 import com.transficc.tools.feedback.web.messaging.MessageBus;
 import com.transficc.tools.feedback.web.messaging.PublishableJob;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -21,6 +32,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -30,11 +43,28 @@ public class JobUpdaterTest
     private static final String JOB_URL = "tom-url";
     private static final String JOB_NAME = "Tom is the best";
     private static final JobStatus CURRENT_JOB_STATUS = JobStatus.SUCCESS;
+    private static final long CLOCK_TIME = 1_000_000L;
     private final ContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(ContinuousIntegrationServer.class);
     private final MessageBus messageBus = Mockito.mock(MessageBus.class);
     private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
     private final FeedbackJob feedbackJob = new FeedbackJob(false, 1, new Job(JOB_NAME, JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
-    private final JobUpdater jobUpdater = new JobUpdater(continuousIntegrationServer, messageBus, jobRepository);
+    private final ExecutorService pollerService = Executors.newFixedThreadPool(2);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, false,
+                                                         () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+
+    @Before
+    public void setUp()
+    {
+        given(continuousIntegrationServer.getAllJobMetadata(Mockito.any())).willReturn(Result.success(Collections.emptyMap()));
+    }
+
+    @After
+    public void tearDown()
+    {
+        pollerService.shutdownNow();
+        timer.shutdownNow();
+    }
 
     @Test
     public void shouldPushJobUpdateToMessageBus()
@@ -60,6 +90,30 @@ public class JobUpdaterTest
         assertJob(feedbackJob, expectedRevision, expectedStatus, expectedBuildNumber, expectedTimestamp, expectedCompletionPercentage, comments, expectedTestResults);
     }
 
+    @Test
+    public void shouldOnlyPollJobsFromItsOwnServer()
+    {
+        //Given
+        final JobNamespace london = new JobNamespace("london");
+        final JobUpdater jobUpdater = new JobUpdater(new NamespacedContinuousIntegrationServer(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run),
+                                                                                               london),
+                                                     messageBus, jobRepository, false, () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), london);
+        final FeedbackJob londonJob = new FeedbackJob(false, 1, new Job(london.qualify(JOB_NAME), JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        jobRepository.add(feedbackJob);
+        jobRepository.add(londonJob);
+        final LatestBuildInformation buildUpdate = new LatestBuildInformation("5435dsd", JobStatus.BUILDING, 1, 5L, 50, new String[0], false, null, 0);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS)).willReturn(Result.success(buildUpdate));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(continuousIntegrationServer, times(1)).getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS);
+        verify(messageBus).sendUpdate(londonJob);
+        assertThat(londonJob.createPublishable().getJobStatus(), is(JobStatus.BUILDING));
+        assertThat(feedbackJob.createPublishable().getJobStatus(), is(CURRENT_JOB_STATUS));
+    }
+
     @Test
     public void shouldNotPublishAnUpdateIfNothingHasChanged()
     {
@@ -106,6 +160,339 @@ public class JobUpdaterTest
         verifyZeroInteractions(messageBus);
     }
 
+    @Test
+    public void shouldPollJobsConcurrently()
+    {
+        //Given
+        final CountDownLatch bothPollsStarted = new CountDownLatch(2);
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, pollerService), messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        final FeedbackJob otherJob = new FeedbackJob(false, 1, new Job("Other job", JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        jobRepository.add(feedbackJob);
+        jobRepository.add(otherJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(Mockito.anyString(), Mockito.eq(CURRENT_JOB_STATUS))).willAnswer(invocation ->
+                                                                                                                                   {
+                                                                                                                                       bothPollsStarted.countDown();
+                                                                                                                                       bothPollsStarted.await(1, TimeUnit.SECONDS);
+                                                                                                                                       return Result.success(new LatestBuildInformation(
+                                                                                                                                               "rev", JobStatus.SUCCESS, 1, 5L, 100, new String[0], false, null, 0));
+                                                                                                                                   });
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus, timeout(1000)).sendUpdate(feedbackJob);
+        verify(messageBus, timeout(1000)).sendUpdate(otherJob);
+        assertThat(bothPollsStarted.getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldNotPollAJobAgainWhilstAPreviousPollIsStillInProgress() throws InterruptedException
+    {
+        //Given
+        final CountDownLatch pollStarted = new CountDownLatch(1);
+        final CountDownLatch releasePoll = new CountDownLatch(1);
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, pollerService), messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS)).willAnswer(invocation ->
+                                                                                                            {
+                                                                                                                pollStarted.countDown();
+                                                                                                                releasePoll.await(1, TimeUnit.SECONDS);
+                                                                                                                return Result.error(500);
+                                                                                                            });
+
+        //When
+        jobUpdater.run();
+        pollStarted.await(1, TimeUnit.SECONDS);
+        jobUpdater.run();
+        releasePoll.countDown();
+
+        //Then
+        verify(continuousIntegrationServer, times(1)).getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS);
+    }
+
+    @Test
+    public void shouldApplyBulkBuildInformationToEachJob()
+    {
+        //Given
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, true,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        final FeedbackJob neverBuiltJob = new FeedbackJob(false, 1, new Job("Never built", JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        jobRepository.add(feedbackJob);
+        jobRepository.add(neverBuiltJob);
+        final Map<String, Result<Integer, LatestBuildInformation>> buildInformation = new HashMap<>();
+        buildInformation.put(JOB_NAME, Result.success(new LatestBuildInformation("5435dsd", JobStatus.ERROR, 3, 5L, 100, new String[0], false, null, 0)));
+        buildInformation.put("Never built", Result.error(400));
+        final Map<String, JobStatus> previousJobStatuses = new HashMap<>();
+        previousJobStatuses.put(JOB_NAME, CURRENT_JOB_STATUS);
+        previousJobStatuses.put("Never built", CURRENT_JOB_STATUS);
+        given(continuousIntegrationServer.getAllLatestBuildInformation(previousJobStatuses)).willReturn(Result.success(buildInformation));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus).sendUpdate(feedbackJob);
+        assertThat(feedbackJob.getJobStatus(), is(JobStatus.ERROR));
+        assertTrue(jobRepository.contains("Never built"));
+        verify(continuousIntegrationServer, Mockito.never()).getLatestBuildInformation(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void shouldRemoveJobIfAbsentFromBulkBuildInformation()
+    {
+        //Given
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, true,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getAllLatestBuildInformation(Collections.singletonMap(JOB_NAME, CURRENT_JOB_STATUS))).willReturn(Result.success(Collections.emptyMap()));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus).jobRemoved(JOB_NAME);
+        assertFalse(jobRepository.contains(JOB_NAME));
+    }
+
+    @Test
+    public void shouldNotRemoveAnyJobsWhenTheBulkRequestIsNotFound()
+    {
+        //Given
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, true,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getAllLatestBuildInformation(Collections.singletonMap(JOB_NAME, CURRENT_JOB_STATUS))).willReturn(Result.error(404));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus, Mockito.never()).jobRemoved(JOB_NAME);
+        assertTrue(jobRepository.contains(JOB_NAME));
+        assertFalse(feedbackJob.createPublishable().isStale());
+    }
+
+    @Test
+    public void shouldMarkEveryJobAsStaleWhenTheBulkRequestFindsTheCIServerUnavailable()
+    {
+        //Given
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, true,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getAllLatestBuildInformation(Collections.singletonMap(JOB_NAME, CURRENT_JOB_STATUS))).willReturn(Result.error(503));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus).sendUpdate(feedbackJob);
+        assertTrue(jobRepository.contains(JOB_NAME));
+        assertTrue(feedbackJob.createPublishable().isStale());
+    }
+
+    @Test
+    public void shouldMarkJobAsStaleWhilstTheCIServerIsUnavailable()
+    {
+        //Given
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS)).willReturn(Result.error(503));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus).sendUpdate(feedbackJob);
+        assertTrue(feedbackJob.createPublishable().isStale());
+        assertThat(feedbackJob.getJobStatus(), is(CURRENT_JOB_STATUS));
+    }
+
+    @Test
+    public void shouldClearStaleFlagOnceTheCIServerResponds()
+    {
+        //Given
+        jobRepository.add(feedbackJob);
+        feedbackJob.markStale();
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS))
+                .willReturn(Result.success(new LatestBuildInformation("", JobStatus.SUCCESS, 0, 10L, 0, new String[0], false, null, 0)));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus).sendUpdate(feedbackJob);
+        assertFalse(feedbackJob.createPublishable().isStale());
+    }
+
+    @Test
+    public void shouldGiveUpOnPollsWhichOutlastTheCycleBudget()
+    {
+        //Given
+        final CountDownLatch releasePoll = new CountDownLatch(1);
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, pollerService), messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 50, jobMetadataCache(), new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS)).willAnswer(invocation ->
+                                                                                                            {
+                                                                                                                releasePoll.await(1, TimeUnit.SECONDS);
+                                                                                                                return Result.error(500);
+                                                                                                            });
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(messageBus, timeout(1000)).sendUpdate(feedbackJob);
+        assertTrue(feedbackJob.createPublishable().isStale());
+        releasePoll.countDown();
+    }
+
+    @Test
+    public void shouldKeepAJobInFlightUntilAPollWhichOutlastedTheCycleBudgetHasFinished() throws InterruptedException
+    {
+        //Given
+        final CountDownLatch releasePoll = new CountDownLatch(1);
+        final CountDownLatch pollFinished = new CountDownLatch(1);
+        final PollScheduler pollScheduler = new PollScheduler();
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, pollerService), messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, pollScheduler, timer, 50, jobMetadataCache(), new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS)).willAnswer(invocation ->
+                                                                                                            {
+                                                                                                                releasePoll.await(1, TimeUnit.SECONDS);
+                                                                                                                pollFinished.countDown();
+                                                                                                                return Result.error(500);
+                                                                                                            });
+        jobUpdater.run();
+        verify(messageBus, timeout(1000)).sendUpdate(feedbackJob);
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(continuousIntegrationServer, times(1)).getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS);
+        assertThat(pollScheduler.nextDeadline(JOB_NAME), is(Long.MAX_VALUE));
+        releasePoll.countDown();
+        pollFinished.await(1, TimeUnit.SECONDS);
+        final long deadline = System.currentTimeMillis() + 1000;
+        while (pollScheduler.nextDeadline(JOB_NAME) == Long.MAX_VALUE && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(pollScheduler.nextDeadline(JOB_NAME) > CLOCK_TIME);
+    }
+
+    @Test
+    public void shouldCombineEachPolledBuildWithTheJobsMetadata()
+    {
+        //Given
+        final Map<String, JobMetadata> jobNameToMetadata = new HashMap<>();
+        jobNameToMetadata.put(JOB_NAME, new JobMetadata(true, 40));
+        jobNameToMetadata.put("Disabled", new JobMetadata(false, 40));
+        given(continuousIntegrationServer.getAllJobMetadata(Mockito.any())).willReturn(Result.success(jobNameToMetadata));
+        final FeedbackJob disabledJob = new FeedbackJob(false, 1, new Job("Disabled", JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        jobRepository.add(feedbackJob);
+        jobRepository.add(disabledJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(Mockito.anyString(), Mockito.eq(CURRENT_JOB_STATUS)))
+                .willReturn(Result.success(new LatestBuildInformation("5435dsd", JobStatus.BUILDING, 1, CLOCK_TIME - 10, 0, new String[0], true, null, 0)));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        assertThat(feedbackJob.createPublishable().getJobCompletionPercentage(), is(25.0));
+        assertThat(feedbackJob.getJobStatus(), is(JobStatus.BUILDING));
+        assertThat(disabledJob.getJobStatus(), is(JobStatus.DISABLED));
+    }
+
+    @Test
+    public void shouldPollANewJobWithoutWaitingForItsMetadataAndApplyItOnceItArrives()
+    {
+        //Given
+        final CompletableFuture<Result<Integer, Map<String, JobMetadata>>> metadataResponse = new CompletableFuture<>();
+        final AsyncContinuousIntegrationServer metadataCiServer = Mockito.mock(AsyncContinuousIntegrationServer.class);
+        given(metadataCiServer.getAllJobMetadata(Mockito.any())).willReturn(metadataResponse);
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, new PollScheduler(), timer, 1000, new JobMetadataCache(metadataCiServer, 60_000, () -> CLOCK_TIME),
+                                                     new JobNamespace(""));
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, CURRENT_JOB_STATUS))
+                .willReturn(Result.success(new LatestBuildInformation("5435dsd", JobStatus.SUCCESS, 1, CLOCK_TIME - 10, 100, new String[0], false, null, 5)));
+
+        //When
+        jobUpdater.run();
+        final JobStatus statusBeforeMetadata = feedbackJob.getJobStatus();
+        metadataResponse.complete(Result.success(Collections.singletonMap(JOB_NAME, new JobMetadata(false, 40))));
+
+        //Then
+        assertThat(statusBeforeMetadata, is(JobStatus.SUCCESS));
+        assertThat(feedbackJob.getJobStatus(), is(JobStatus.DISABLED));
+        verify(messageBus, times(2)).sendUpdate(feedbackJob);
+    }
+
+    @Test
+    public void shouldPollDownstreamJobsStraightAwayWhenABuildCompletes()
+    {
+        //Given
+        final PollScheduler pollScheduler = new PollScheduler();
+        final JobUpdater jobUpdater = new JobUpdater(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, pollScheduler, timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        final FeedbackJob downstreamJob = new FeedbackJob(false, 0, new Job("Downstream", JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        feedbackJob.wasUpdated(new LatestBuildInformation("5435dsd", JobStatus.BUILDING, 1, CLOCK_TIME - 10, 0, new String[0], true, null, 0));
+        jobRepository.add(feedbackJob);
+        jobRepository.add(downstreamJob);
+        pollScheduler.takeDueJobs(Collections.singletonList(downstreamJob), CLOCK_TIME - 1000);
+        pollScheduler.onSuccess(downstreamJob, CLOCK_TIME - 1000);
+        given(continuousIntegrationServer.getAllJobMetadata(Mockito.any()))
+                .willReturn(Result.success(Collections.singletonMap(JOB_NAME, new JobMetadata(true, 40, Collections.singletonList("Downstream")))));
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.BUILDING))
+                .willReturn(Result.success(new LatestBuildInformation("5435dsd", JobStatus.SUCCESS, 1, CLOCK_TIME - 10, 100, new String[0], false, null, 5)));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        assertThat(feedbackJob.getJobStatus(), is(JobStatus.SUCCESS));
+        assertThat(pollScheduler.nextDeadline("Downstream"), is(CLOCK_TIME));
+    }
+
+    @Test
+    public void shouldPollPrioritisedAndBuildingJobsFirstAndPutTheRestOffWhenRateLimited()
+    {
+        //Given
+        final PollScheduler pollScheduler = new PollScheduler();
+        final RateLimiter rateLimiter = new RateLimiter(1, 2, timer, () -> CLOCK_TIME);
+        final AsyncContinuousIntegrationServer rateLimitedCiServer =
+                new RateLimitedContinuousIntegrationServer(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), rateLimiter);
+        final JobUpdater jobUpdater = new JobUpdater(rateLimitedCiServer, messageBus, jobRepository, false,
+                                                     () -> CLOCK_TIME, pollScheduler, timer, 1000, jobMetadataCache(), new JobNamespace(""));
+        final FeedbackJob idleJob = new FeedbackJob(false, 0, new Job("Idle", JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        final FeedbackJob buildingJob = new FeedbackJob(false, 0, new Job("Building", JOB_URL, CURRENT_JOB_STATUS, VersionControl.GIT));
+        buildingJob.wasUpdated(new LatestBuildInformation("5435dsd", JobStatus.BUILDING, 1, CLOCK_TIME - 10, 0, new String[0], true, null, 0));
+        jobRepository.add(idleJob);
+        jobRepository.add(buildingJob);
+        jobRepository.add(feedbackJob);
+        given(continuousIntegrationServer.getLatestBuildInformation(Mockito.anyString(), Mockito.any()))
+                .willReturn(Result.success(new LatestBuildInformation("5435dsd", JobStatus.BUILDING, 1, CLOCK_TIME - 10, 0, new String[0], true, null, 0)));
+
+        //When
+        jobUpdater.run();
+
+        //Then
+        verify(continuousIntegrationServer).getLatestBuildInformation(Mockito.eq(JOB_NAME), Mockito.any());
+        verify(continuousIntegrationServer).getLatestBuildInformation(Mockito.eq("Building"), Mockito.any());
+        verify(continuousIntegrationServer, times(0)).getLatestBuildInformation(Mockito.eq("Idle"), Mockito.any());
+        assertThat(pollScheduler.nextDeadline("Idle"), is(CLOCK_TIME));
+        assertThat(idleJob.createPublishable().isStale(), is(false));
+    }
+
+    private JobMetadataCache jobMetadataCache()
+    {
+        return new JobMetadataCache(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), 60_000, () -> CLOCK_TIME);
+    }
+
     private void assertJob(final FeedbackJob job,
                            final String expectedRevision,
                            final JobStatus expectedStatus,
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class PollSchedulerTest
+{
+    private static final long NOW = 1_000_000_000L;
+    private final PollScheduler pollScheduler = new PollScheduler();
+    private final FeedbackJob job = createJob("Tom", 0);
+
+    @Test
+    public void shouldPollNewJobsImmediately()
+    {
+        final List<FeedbackJob> dueJobs = pollScheduler.takeDueJobs(Arrays.asList(job, createJob("Chinar", 0)), NOW);
+
+        assertThat(dueJobs.size(), is(2));
+    }
+
+    @Test
+    public void shouldNotHandOutAJobAgainUntilItsPollHasCompleted()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+
+        final List<FeedbackJob> dueJobs = pollScheduler.takeDueJobs(Collections.singletonList(job), NOW + PollScheduler.MAX_BACKOFF_MILLIS);
+
+        assertThat(dueJobs.size(), is(0));
+    }
+
+    @Test
+    public void shouldPollBuildingJobsFrequently()
+    {
+        job.wasUpdated(new LatestBuildInformation("rev", JobStatus.BUILDING, 2, NOW, 10, new String[0], true, null, 0));
+
+        assertThat(pollScheduler.interval(job, NOW), is(PollScheduler.BUILDING_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldPollRecentlyCompletedJobsAtAMediumRate()
+    {
+        job.wasUpdated(new LatestBuildInformation("rev", JobStatus.SUCCESS, 2, NOW - 60_000, 100, new String[0], false, null, 0));
+
+        assertThat(pollScheduler.interval(job, NOW), is(PollScheduler.RECENTLY_COMPLETED_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldPollIdleJobsSlowly()
+    {
+        job.wasUpdated(new LatestBuildInformation("rev", JobStatus.SUCCESS, 2, NOW - 86_400_000, 100, new String[0], false, null, 0));
+
+        assertThat(pollScheduler.interval(job, NOW), is(PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldPollDisabledJobsSlowly()
+    {
+        job.wasUpdated(new LatestBuildInformation("rev", JobStatus.DISABLED, 2, NOW - 60_000, 100, new String[0], false, null, 0));
+
+        assertThat(pollScheduler.interval(job, NOW), is(PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldShortenTheIntervalForPrioritisedJobs()
+    {
+        final FeedbackJob prioritisedJob = createJob("master-commit", 3);
+        prioritisedJob.wasUpdated(new LatestBuildInformation("rev", JobStatus.SUCCESS, 2, NOW - 86_400_000, 100, new String[0], false, null, 0));
+
+        assertThat(pollScheduler.interval(prioritisedJob, NOW), is(PollScheduler.IDLE_INTERVAL_MILLIS / 4));
+    }
+
+    @Test
+    public void shouldHandOutADeferredJobAgainWithoutBackingOff()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onDeferred(job, NOW);
+
+        final List<FeedbackJob> dueJobs = pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+
+        assertThat(dueJobs.size(), is(1));
+    }
+
+    @Test
+    public void shouldRescheduleAfterASuccessfulPoll()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+
+        pollScheduler.onSuccess(job, NOW);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + PollScheduler.IDLE_INTERVAL_MILLIS));
+        assertThat(pollScheduler.takeDueJobs(Collections.singletonList(job), NOW + PollScheduler.IDLE_INTERVAL_MILLIS).size(), is(1));
+    }
+
+    @Test
+    public void shouldBackOffExponentiallyWhenTheServerErrors()
+    {
+        long currentTime = NOW;
+        for (int i = 1; i <= 3; i++)
+        {
+            pollScheduler.takeDueJobs(Collections.singletonList(job), currentTime);
+            pollScheduler.onError(job, 500, currentTime);
+
+            assertThat(pollScheduler.nextDeadline("Tom"), is(currentTime + Math.min(PollScheduler.IDLE_INTERVAL_MILLIS << i, PollScheduler.MAX_BACKOFF_MILLIS)));
+            currentTime = pollScheduler.nextDeadline("Tom");
+        }
+
+        pollScheduler.takeDueJobs(Collections.singletonList(job), currentTime);
+        pollScheduler.onSuccess(job, currentTime);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(currentTime + PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldNotBackOffWhenAJobHasNeverBeenBuilt()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+
+        pollScheduler.onError(job, 400, NOW);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldForgetJobsWhichAreNoLongerInTheRepository()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onSuccess(job, NOW);
+
+        final List<FeedbackJob> dueJobs = pollScheduler.takeDueJobs(Collections.emptyList(), NOW + PollScheduler.IDLE_INTERVAL_MILLIS);
+
+        assertThat(dueJobs.size(), is(0));
+        assertThat(pollScheduler.nextDeadline("Tom"), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldPollStartedBuildsImmediatelyWhenNotified()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onSuccess(job, NOW);
+        job.wasNotified(2, JobStatus.BUILDING, true, "rev", NOW);
+
+        pollScheduler.onNotification(job, NOW);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW));
+    }
+
+    @Test
+    public void shouldOnlyReconcileCompletedBuildsWhenNotified()
+    {
+        job.wasNotified(2, JobStatus.SUCCESS, false, "rev", NOW);
+
+        pollScheduler.onNotification(job, NOW);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + PollScheduler.RECONCILIATION_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldPollJobsAboutToStartEverySecondUntilTheirBuildStarts()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onSuccess(job, NOW);
+
+        pollScheduler.onAboutToStart(job, NOW + 100);
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + 100));
+
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW + 100);
+        pollScheduler.onSuccess(job, NOW + 100);
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + 100 + PollScheduler.ABOUT_TO_START_INTERVAL_MILLIS));
+
+        job.wasUpdated(new LatestBuildInformation("rev", JobStatus.BUILDING, 2, NOW + 500, 0, new String[0], true, null, 0));
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW + 1100);
+        pollScheduler.onSuccess(job, NOW + 1100);
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + 1100 + PollScheduler.BUILDING_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldGoBackToTheUsualIntervalIfABuildNeverLeavesTheQueue()
+    {
+        pollScheduler.onAboutToStart(job, NOW);
+
+        final long later = NOW + PollScheduler.ABOUT_TO_START_WINDOW_MILLIS;
+        pollScheduler.takeDueJobs(Collections.singletonList(job), later);
+        pollScheduler.onSuccess(job, later);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(later + PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldPollAgainOnceAPollInFlightCompletesIfAnUpstreamBuildCompletedMeanwhile()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+
+        pollScheduler.onUpstreamCompleted(job, NOW + 100);
+        assertThat(pollScheduler.nextDeadline("Tom"), is(Long.MAX_VALUE));
+        pollScheduler.onSuccess(job, NOW + 200);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + 200));
+    }
+
+    @Test
+    public void shouldNotPollAgainAfterALaterSuccessIfThePollInFlightFailed()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onUpstreamCompleted(job, NOW + 100);
+        pollScheduler.onError(job, 400, NOW + 200);
+
+        final long later = NOW + 200 + PollScheduler.IDLE_INTERVAL_MILLIS;
+        pollScheduler.takeDueJobs(Collections.singletonList(job), later);
+        pollScheduler.onSuccess(job, later);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(later + PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldNotPollAgainAfterALaterSuccessIfThePollInFlightWasDeferred()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onUpstreamCompleted(job, NOW + 100);
+        pollScheduler.onDeferred(job, NOW + 200);
+
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW + 200);
+        pollScheduler.onSuccess(job, NOW + 300);
+
+        assertThat(pollScheduler.nextDeadline("Tom"), is(NOW + 300 + PollScheduler.IDLE_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void shouldOnlyHandOutAJobOnceAfterItsPollHasBeenRescheduledManyTimes()
+    {
+        pollScheduler.takeDueJobs(Collections.singletonList(job), NOW);
+        pollScheduler.onSuccess(job, NOW);
+        for (int i = 1; i <= 100; i++)
+        {
+            pollScheduler.onUpstreamCompleted(job, NOW + i);
+        }
+
+        final List<FeedbackJob> dueJobs = pollScheduler.takeDueJobs(Collections.singletonList(job), NOW + PollScheduler.IDLE_INTERVAL_MILLIS);
+
+        assertThat(dueJobs.size(), is(1));
+        assertThat(pollScheduler.nextDeadline("Tom"), is(Long.MAX_VALUE));
+    }
+
+    private static FeedbackJob createJob(final String name, final int priority)
+    {
+        return new FeedbackJob(false, priority, new Job(name, "url", JobStatus.SUCCESS, VersionControl.GIT));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.web.messaging.MessageBus;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class QueuePollerTest
+{
+    private static final String JOB_NAME = "master";
+    private final ContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(ContinuousIntegrationServer.class);
+    private final MessageBus messageBus = Mockito.mock(MessageBus.class);
+    private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
+    private final FeedbackJob job = new FeedbackJob(false, 0, new Job(JOB_NAME, "url", JobStatus.SUCCESS, VersionControl.GIT));
+    private final PollScheduler pollScheduler = new PollScheduler();
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final QueuePoller queuePoller = new QueuePoller(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), jobRepository,
+                                                            messageBus, pollScheduler, clock::get, new JobNamespace(""));
+
+    @Before
+    public void setUp()
+    {
+        jobRepository.add(job);
+    }
+
+    @Test
+    public void shouldPublishHowLongABuildWaitedInTheQueue()
+    {
+        //Given
+        given(continuousIntegrationServer.getQueue())
+                .willReturn(Result.success(Arrays.asList(new QueuedBuild(JOB_NAME, 990_000L, false), new QueuedBuild(JOB_NAME, 980_000L, false))))
+                .willReturn(Result.success(Collections.emptyList()));
+
+        //When
+        queuePoller.run();
+        final PublishableJob queued = job.createPublishable();
+        clock.addAndGet(5_000);
+        queuePoller.run();
+
+        //Then
+        assertTrue(queued.isQueued());
+        assertThat(queued.getQueuedSince(), is(980_000L));
+        assertFalse(job.createPublishable().isQueued());
+        assertThat(job.createPublishable().getQueueWaitMillis(), is(25_000L));
+        verify(messageBus, times(2)).sendUpdate(job);
+    }
+
+    @Test
+    public void shouldPollAJobStraightAwayWhenItsBuildIsAboutToStart()
+    {
+        //Given
+        pollScheduler.takeDueJobs(Collections.singletonList(job), clock.get());
+        pollScheduler.onSuccess(job, clock.get());
+        given(continuousIntegrationServer.getQueue()).willReturn(Result.success(Collections.singletonList(new QueuedBuild(JOB_NAME, 990_000L, true))));
+
+        //When
+        queuePoller.run();
+
+        //Then
+        assertThat(pollScheduler.nextDeadline(JOB_NAME), is(clock.get()));
+    }
+
+    @Test
+    public void shouldLeaveJobsAsTheyWereWhenTheQueueCannotBeFetched()
+    {
+        //Given
+        given(continuousIntegrationServer.getQueue())
+                .willReturn(Result.success(Collections.singletonList(new QueuedBuild(JOB_NAME, 990_000L, false))))
+                .willReturn(Result.error(503));
+
+        //When
+        queuePoller.run();
+        queuePoller.run();
+
+        //Then
+        assertTrue(job.createPublishable().isQueued());
+        verify(messageBus, times(1)).sendUpdate(job);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verify;
+
+public class RateLimiterTest
+{
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final RateLimiter rateLimiter = new RateLimiter(10, 2, timer, clock::get);
+
+    @After
+    public void tearDown()
+    {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void shouldAdmitABurstAndThenOnlyAsFastAsTokensAreAdded()
+    {
+        //When
+        final boolean first = rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        final boolean second = rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        final boolean third = rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        clock.addAndGet(100);
+        final boolean afterRefill = rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+
+        //Then
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertTrue(afterRefill);
+    }
+
+    @Test
+    public void shouldServeRequestsWaitingForATokenBeforeAnyoneElseAtTheSamePriority() throws Exception
+    {
+        //Given
+        rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+
+        //When
+        final CompletableFuture<Void> waiting = rateLimiter.acquire(RateLimiter.Priority.BACKGROUND);
+        final boolean admittedEarly = waiting.isDone();
+        clock.addAndGet(100);
+        final boolean jumpedTheQueue = rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        waiting.get(5, TimeUnit.SECONDS);
+
+        //Then
+        assertFalse(admittedEarly);
+        assertFalse(jumpedTheQueue);
+    }
+
+    @Test
+    public void shouldLetJobPollsGoAheadOfBackgroundRequestsWaitingForAToken() throws Exception
+    {
+        //Given
+        rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        rateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        final CompletableFuture<Void> background = rateLimiter.acquire(RateLimiter.Priority.BACKGROUND);
+
+        //When
+        final CompletableFuture<Void> jobPoll = rateLimiter.acquire(RateLimiter.Priority.JOB_POLL);
+        clock.addAndGet(100);
+        jobPoll.get(5, TimeUnit.SECONDS);
+        final boolean backgroundAdmittedWithTheJobPoll = background.isDone();
+        clock.addAndGet(100);
+        background.get(5, TimeUnit.SECONDS);
+
+        //Then
+        assertFalse(backgroundAdmittedWithTheJobPoll);
+    }
+
+    @Test
+    public void shouldLetABackgroundRequestWhichHasWaitedTooLongGoAheadOfJobPolls()
+    {
+        //Given
+        final ScheduledExecutorService manualTimer = Mockito.mock(ScheduledExecutorService.class);
+        final RateLimiter saturatedRateLimiter = new RateLimiter(10, 1, manualTimer, clock::get);
+        saturatedRateLimiter.tryAcquire(RateLimiter.Priority.BACKGROUND);
+        final CompletableFuture<Void> background = saturatedRateLimiter.acquire(RateLimiter.Priority.BACKGROUND);
+        final ArgumentCaptor<Runnable> drain = ArgumentCaptor.forClass(Runnable.class);
+        verify(manualTimer).schedule(drain.capture(), anyLong(), any(TimeUnit.class));
+
+        //When
+        int jobPollsAdmitted = 0;
+        boolean jobPollRefused = false;
+        for (int i = 0; i < 1000 && !jobPollRefused; i++)
+        {
+            clock.addAndGet(100);
+            jobPollRefused = !saturatedRateLimiter.tryAcquire(RateLimiter.Priority.JOB_POLL);
+            jobPollsAdmitted += jobPollRefused ? 0 : 1;
+        }
+        drain.getValue().run();
+
+        //Then
+        assertEquals(RateLimiter.MAX_WAIT_MILLIS / 100 - 1, jobPollsAdmitted);
+        assertTrue(background.isDone());
+    }
+
+    @Test
+    public void shouldAdmitEverythingWithoutARate()
+    {
+        //Given
+        final RateLimiter unlimited = RateLimiter.unlimited();
+
+        //Then
+        for (int i = 0; i < 1000; i++)
+        {
+            assertTrue(unlimited.tryAcquire(RateLimiter.Priority.JOB_POLL));
+            assertTrue(unlimited.acquire(RateLimiter.Priority.BACKGROUND).isDone());
+        }
+    }
+}
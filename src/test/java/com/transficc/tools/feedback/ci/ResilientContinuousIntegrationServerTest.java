@@ -0,0 +1,243 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.ci.jenkins.VertxJenkinsClient;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.Counters;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+
+public class ResilientContinuousIntegrationServerTest
+{
+    private static final String JOBS = "{\"jobs\":[{\"name\":\"master-commit\",\"url\":\"http://jenkins/job/master-commit/\"}]}";
+    private static final long BREAKER_OPEN_MILLIS = 30_000;
+    private final Vertx vertx = Vertx.vertx();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final AtomicInteger requestsReceived = new AtomicInteger();
+    private final Counters counters = new Counters();
+    private volatile long latencyMillis;
+    private volatile int statusCode = 200;
+    private ResilientContinuousIntegrationServer ciServer;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+        vertx.createHttpServer().requestHandler(request ->
+                                                {
+                                                    requestsReceived.incrementAndGet();
+                                                    if (latencyMillis == 0)
+                                                    {
+                                                        request.response().setStatusCode(statusCode).end(JOBS);
+                                                    }
+                                                    else
+                                                    {
+                                                        vertx.setTimer(latencyMillis, timerId -> request.response().setStatusCode(statusCode).end(JOBS));
+                                                    }
+                                                })
+                .listen(0, result ->
+                {
+                    if (result.succeeded())
+                    {
+                        listening.complete(result.result());
+                    }
+                    else
+                    {
+                        listening.completeExceptionally(result.cause());
+                    }
+                });
+        final int port = listening.get(5, TimeUnit.SECONDS).actualPort();
+        final VertxJenkinsClient jenkinsClient = new VertxJenkinsClient(vertx, URI.create("http://localhost:" + port), null, null, 4, 5_000, clock::get, VersionControl.GIT);
+        ciServer = new ResilientContinuousIntegrationServer(jenkinsClient, "jenkins", 2, BREAKER_OPEN_MILLIS, 100, timer, clock::get, counters);
+    }
+
+    @After
+    public void tearDown()
+    {
+        timer.shutdownNow();
+        vertx.close();
+    }
+
+    @Test
+    public void shouldGiveUpOnACallWhichMissesItsDeadline() throws Exception
+    {
+        //Given
+        latencyMillis = 1_000;
+
+        //When
+        final Result<Integer, Folder> response = ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(504)),
+                         folder -> Assert.fail("This should not happen"));
+        assertThat(counters.get("jenkins.requests.timeout"), is(1L));
+    }
+
+    @Test
+    public void shouldFailFastWithoutCallingJenkinsOnceTheBreakerIsOpen() throws Exception
+    {
+        //Given
+        statusCode = 500;
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //When
+        final Result<Integer, LatestBuildInformation> response = ciServer.getLatestBuildInformation("master-commit", JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(503)),
+                         information -> Assert.fail("This should not happen"));
+        assertThat(requestsReceived.get(), is(2));
+        assertThat(counters.get("jenkins.breaker.open"), is(1L));
+        assertThat(counters.get("jenkins.breaker.rejected"), is(1L));
+    }
+
+    @Test
+    public void shouldOpenTheBreakerWhenJenkinsKeepsMissingDeadlines() throws Exception
+    {
+        //Given
+        latencyMillis = 1_000;
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //When
+        final Result<Integer, Folder> response = ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(503)),
+                         folder -> Assert.fail("This should not happen"));
+        assertThat(requestsReceived.get(), is(2));
+    }
+
+    @Test
+    public void shouldCloseTheBreakerOnceAProbeSucceeds() throws Exception
+    {
+        //Given
+        statusCode = 500;
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        statusCode = 200;
+        clock.addAndGet(BREAKER_OPEN_MILLIS);
+
+        //When
+        final Result<Integer, Folder> probe = ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        final Result<Integer, Folder> afterProbe = ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        probe.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                      folder -> assertThat(folder.getJobs().size(), is(1)));
+        afterProbe.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                           folder -> assertThat(folder.getJobs().size(), is(1)));
+        assertThat(counters.get("jenkins.breaker.half_open"), is(1L));
+        assertThat(counters.get("jenkins.breaker.closed"), is(1L));
+    }
+
+    @Test
+    public void shouldReopenTheBreakerIfTheProbeFails() throws Exception
+    {
+        //Given
+        statusCode = 500;
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        clock.addAndGet(BREAKER_OPEN_MILLIS);
+        ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //When
+        final Result<Integer, Folder> response = ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(503)),
+                         folder -> Assert.fail("This should not happen"));
+        assertThat(requestsReceived.get(), is(3));
+        assertThat(counters.get("jenkins.breaker.open"), is(2L));
+    }
+
+    @Test
+    public void shouldNotTripTheBreakerForJobsWhichDoNotExist() throws Exception
+    {
+        //Given
+        statusCode = 404;
+        ciServer.getLatestBuildInformation("gone", JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+        ciServer.getLatestBuildInformation("gone", JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+        //When
+        final Result<Integer, LatestBuildInformation> response = ciServer.getLatestBuildInformation("gone", JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(404)),
+                         information -> Assert.fail("This should not happen"));
+        assertThat(requestsReceived.get(), is(3));
+    }
+
+    @Test
+    public void shouldNotSendARequestWhichMissedItsDeadlineWhilstStillQueued() throws Exception
+    {
+        //Given
+        final ContinuousIntegrationServer blockingCiServer = Mockito.mock(ContinuousIntegrationServer.class);
+        final CountDownLatch releaseRequest = new CountDownLatch(1);
+        //Blocking HTTP clients carry on regardless of being interrupted
+        given(blockingCiServer.getFolder("")).willAnswer(invocation ->
+                                                       {
+                                                           while (releaseRequest.getCount() > 0)
+                                                           {
+                                                               Thread.yield();
+                                                           }
+                                                           return Result.error(500);
+                                                       });
+        final ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        final ResilientContinuousIntegrationServer ciServer = new ResilientContinuousIntegrationServer(new BlockingContinuousIntegrationServerAdapter(blockingCiServer, singleThread),
+                                                                                                       "jenkins", 5, BREAKER_OPEN_MILLIS, 100, timer, clock::get, counters);
+        ciServer.getFolder("");
+
+        //When
+        final Result<Integer, Folder> queued = ciServer.getFolder("").get(5, TimeUnit.SECONDS);
+        releaseRequest.countDown();
+        singleThread.shutdown();
+        singleThread.awaitTermination(5, TimeUnit.SECONDS);
+
+        //Then
+        queued.consume(error -> assertThat(error, is(504)),
+                       folder -> Assert.fail("This should not happen"));
+        verify(blockingCiServer, times(1)).getFolder("");
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.tools.feedback.util.ClockService;
+
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A stand-in for Jenkins which serves the parts of the JSON API Feedback uses, for any number of simulated jobs. Each job builds over and over
+ * again, with every build running for a while before it succeeds or fails, so polling sees the same state transitions it would against a real
+ * Jenkins server. Each build sits in the queue for a quiet period before it starts. Latency, errors and the size of each build's change set and test report can be varied to see how Feedback copes.
+ * <p>
+ * Run it on its own with {@code ./gradlew fakeJenkins -PfakeJenkinsArgs="jobs=10000 latency=50"}, passing any of the options listed in {@link #main(String[])}.
+ */
+public final class FakeJenkins
+{
+    private static final long QUIET_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private final Vertx vertx;
+    private final Options options;
+    private final ClockService clockService;
+    private final Map<String, SimulatedJob> jobNameToJob = new LinkedHashMap<>();
+    private final Map<String, List<String>> folderNameToItemNames = new LinkedHashMap<>();
+    private final AtomicLong requestsReceived = new AtomicLong();
+    private HttpServer server;
+
+    public FakeJenkins(final Vertx vertx, final Options options, final ClockService clockService)
+    {
+        this.vertx = vertx;
+        this.options = options;
+        this.clockService = clockService;
+        final Random random = new Random(options.seed);
+        folderNameToItemNames.put("", new ArrayList<>());
+        for (int i = 0; i < options.folders; i++)
+        {
+            final String folderName = String.format("folder-%03d", i);
+            folderNameToItemNames.get("").add(folderName);
+            folderNameToItemNames.put(folderName, new ArrayList<>());
+        }
+        for (int i = 0; i < options.jobs; i++)
+        {
+            final String folderName = options.folders == 0 ? "" : String.format("folder-%03d", i % options.folders);
+            final String jobName = String.format("job-%05d", i);
+            folderNameToItemNames.get(folderName).add(jobName);
+            final String fullName = folderName.isEmpty() ? jobName : folderName + "/" + jobName;
+            jobNameToJob.put(fullName, new SimulatedJob(new Random(random.nextLong()), clockService.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Starts listening on the given port, or on any free port if it is 0, and completes with the port listened on.
+     */
+    public int start(final int port) throws Exception
+    {
+        final CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+        vertx.createHttpServer().requestHandler(this::onRequest).listen(port, result ->
+        {
+            if (result.succeeded())
+            {
+                listening.complete(result.result());
+            }
+            else
+            {
+                listening.completeExceptionally(result.cause());
+            }
+        });
+        server = listening.get(10, TimeUnit.SECONDS);
+        return server.actualPort();
+    }
+
+    public String getUrl()
+    {
+        return "http://localhost:" + server.actualPort() + "/";
+    }
+
+    public List<String> getJobNames()
+    {
+        return new ArrayList<>(jobNameToJob.keySet());
+    }
+
+    public long getRequestsReceived()
+    {
+        return requestsReceived.get();
+    }
+
+    private void onRequest(final HttpServerRequest request)
+    {
+        requestsReceived.incrementAndGet();
+        final long latencyMillis = options.latencyMillis == 0 ? 0 : options.latencyMillis + ThreadLocalRandom.current().nextLong(options.latencyMillis / 2 + 1);
+        if (latencyMillis == 0)
+        {
+            respond(request);
+        }
+        else
+        {
+            vertx.setTimer(latencyMillis, timerId -> respond(request));
+        }
+    }
+
+    private void respond(final HttpServerRequest request)
+    {
+        if (ThreadLocalRandom.current().nextDouble() < options.errorRate)
+        {
+            request.response().setStatusCode(500).end("Simulated failure");
+            return;
+        }
+        final JsonObject body = handle(request.path(), request.getParam("tree"));
+        if (body == null)
+        {
+            request.response().setStatusCode(404).end();
+        }
+        else
+        {
+            request.response().putHeader("Content-Type", "application/json").end(body.encode());
+        }
+    }
+
+    private JsonObject handle(final String path, final String tree)
+    {
+        if (!path.endsWith("/api/json"))
+        {
+            return null;
+        }
+        if ("/queue/api/json".equals(path))
+        {
+            return new JsonObject().put("items", queue());
+        }
+        //Paths look like /job/folder/job/name/api/json, or /job/folder/job/name/42/api/json for a build
+        final List<String> segments = new ArrayList<>(Arrays.asList(path.substring(0, path.length() - "/api/json".length()).split("/")));
+        segments.removeIf(String::isEmpty);
+        final StringBuilder fullName = new StringBuilder();
+        while (segments.size() >= 2 && "job".equals(segments.get(0)))
+        {
+            fullName.append(fullName.length() == 0 ? "" : "/").append(decode(segments.get(1)));
+            segments.subList(0, 2).clear();
+        }
+        final String name = fullName.toString();
+        //Only include builds when they were asked for, as a tree query listing jobs would not get them from Jenkins either
+        final boolean includeBuilds = tree == null || tree.contains("lastBuild");
+        if (folderNameToItemNames.containsKey(name) && segments.isEmpty())
+        {
+            return new JsonObject().put("jobs", items(name, includeBuilds, 2));
+        }
+        final SimulatedJob job = jobNameToJob.get(name);
+        if (job == null)
+        {
+            return null;
+        }
+        synchronized (job)
+        {
+            job.advance(clockService.currentTimeMillis());
+            if (segments.isEmpty())
+            {
+                return job(name, job, true);
+            }
+            return segments.size() == 1 && segments.get(0).equals(String.valueOf(job.number)) ? build(name, job) : null;
+        }
+    }
+
+    private JsonArray queue()
+    {
+        final long currentTime = clockService.currentTimeMillis();
+        final JsonArray items = new JsonArray();
+        jobNameToJob.forEach((fullName, job) ->
+                             {
+                                 synchronized (job)
+                                 {
+                                     job.advance(currentTime);
+                                     if (!job.building && job.nextBuildTime - currentTime <= QUIET_PERIOD_MILLIS)
+                                     {
+                                         items.add(new JsonObject()
+                                                           .put("inQueueSince", job.nextBuildTime - QUIET_PERIOD_MILLIS)
+                                                           .put("buildable", false)
+                                                           .put("blocked", false)
+                                                           .put("timestamp", job.nextBuildTime)
+                                                           .put("task", new JsonObject().put("name", fullName.substring(fullName.lastIndexOf('/') + 1)).put("url", url(fullName))));
+                                     }
+                                 }
+                             });
+        return items;
+    }
+
+    private JsonArray items(final String folderName, final boolean includeBuilds, final int depth)
+    {
+        final JsonArray items = new JsonArray();
+        for (final String itemName : folderNameToItemNames.get(folderName))
+        {
+            final String fullName = folderName.isEmpty() ? itemName : folderName + "/" + itemName;
+            final SimulatedJob job = jobNameToJob.get(fullName);
+            if (job == null)
+            {
+                final JsonObject folder = new JsonObject().put("name", itemName).put("url", url(fullName));
+                items.add(depth == 0 ? folder : folder.put("jobs", items(fullName, includeBuilds, depth - 1)));
+            }
+            else
+            {
+                synchronized (job)
+                {
+                    job.advance(clockService.currentTimeMillis());
+                    items.add(job(fullName, job, includeBuilds));
+                }
+            }
+        }
+        return items;
+    }
+
+    private JsonObject job(final String fullName, final SimulatedJob job, final boolean includeBuilds)
+    {
+        final JsonObject json = new JsonObject()
+                .put("name", fullName.substring(fullName.lastIndexOf('/') + 1))
+                .put("url", url(fullName))
+                .put("buildable", true)
+                .put("color", job.building ? "blue_anime" : job.failed ? "red" : "blue");
+        return includeBuilds ? json.put("lastBuild", build(fullName, job)) : json;
+    }
+
+    private JsonObject build(final String fullName, final SimulatedJob job)
+    {
+        final JsonArray comments = new JsonArray();
+        for (int i = 0; i < options.changeSetSize; i++)
+        {
+            comments.add(new JsonObject().put("comment", comment(job.number, i)));
+        }
+        final int failCount = job.failed ? Math.max(1, options.tests / 20) : 0;
+        final JsonArray actions = new JsonArray()
+                .add(new JsonObject().put("lastBuiltRevision", new JsonObject().put("SHA1", String.format("%040x", (long)fullName.hashCode() << 20 | job.number))));
+        if (!job.building && options.tests > 0)
+        {
+            actions.add(new JsonObject().put("urlName", "testReport").put("failCount", failCount).put("skipCount", 0).put("totalCount", options.tests));
+        }
+        return new JsonObject()
+                .put("number", job.number)
+                .put("url", url(fullName) + job.number + "/")
+                .put("result", job.building ? null : job.failed ? "FAILURE" : "SUCCESS")
+                .put("building", job.building)
+                .put("timestamp", job.timestamp)
+                .put("duration", job.building ? 0 : job.duration)
+                .put("estimatedDuration", options.buildDurationMillis)
+                .put("actions", actions)
+                .put("changeSet", new JsonObject().put("items", comments));
+    }
+
+    private String comment(final int buildNumber, final int index)
+    {
+        final StringBuilder comment = new StringBuilder("Change ").append(index).append(" in build ").append(buildNumber).append(' ');
+        while (comment.length() < options.commentLength)
+        {
+            comment.append('x');
+        }
+        return comment.toString();
+    }
+
+    private String url(final String fullName)
+    {
+        return getUrl() + JenkinsJsonParser.jobPath(fullName).substring(1) + "/";
+    }
+
+    private static String decode(final String segment)
+    {
+        try
+        {
+            return URLDecoder.decode(segment, StandardCharsets.UTF_8.name());
+        }
+        catch (final UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class SimulatedJob
+    {
+        private final Random random;
+        private int number = 1;
+        private long timestamp;
+        private long duration;
+        private boolean building;
+        private boolean failed;
+        private long nextBuildTime;
+
+        private SimulatedJob(final Random random, final long startTime)
+        {
+            this.random = random;
+            //Start part way through a cycle so the jobs do not all build at once
+            this.timestamp = startTime - (long)(random.nextDouble() * (options.buildDurationMillis + options.idleMillis));
+            this.duration = vary(options.buildDurationMillis);
+            this.building = timestamp + duration > startTime;
+            this.failed = !building && random.nextDouble() < options.failureRate;
+            this.nextBuildTime = timestamp + duration + vary(options.idleMillis);
+        }
+
+        private void advance(final long currentTime)
+        {
+            if (building && currentTime >= timestamp + duration)
+            {
+                building = false;
+                failed = random.nextDouble() < options.failureRate;
+                nextBuildTime = timestamp + duration + vary(options.idleMillis);
+            }
+            if (!building && currentTime >= nextBuildTime)
+            {
+                number++;
+                building = true;
+                timestamp = nextBuildTime;
+                duration = vary(options.buildDurationMillis);
+                advance(currentTime);
+            }
+        }
+
+        private long vary(final long millis)
+        {
+            return Math.max(1, (long)(millis * (0.5 + random.nextDouble())));
+        }
+    }
+
+    public static final class Options
+    {
+        private int jobs = 100;
+        private int folders;
+        private long latencyMillis;
+        private double errorRate;
+        private long buildDurationMillis = TimeUnit.MINUTES.toMillis(1);
+        private long idleMillis = TimeUnit.MINUTES.toMillis(2);
+        private double failureRate = 0.2;
+        private int changeSetSize = 1;
+        private int commentLength = 50;
+        private int tests = 100;
+        private long seed = 42;
+
+        public Options setJobs(final int jobs)
+        {
+            this.jobs = jobs;
+            return this;
+        }
+
+        public Options setFolders(final int folders)
+        {
+            this.folders = folders;
+            return this;
+        }
+
+        public Options setLatencyMillis(final long latencyMillis)
+        {
+            this.latencyMillis = latencyMillis;
+            return this;
+        }
+
+        public Options setErrorRate(final double errorRate)
+        {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public Options setBuildDurationMillis(final long buildDurationMillis)
+        {
+            this.buildDurationMillis = buildDurationMillis;
+            return this;
+        }
+
+        public Options setIdleMillis(final long idleMillis)
+        {
+            this.idleMillis = idleMillis;
+            return this;
+        }
+
+        public Options setFailureRate(final double failureRate)
+        {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        public Options setChangeSetSize(final int changeSetSize)
+        {
+            this.changeSetSize = changeSetSize;
+            return this;
+        }
+
+        public Options setCommentLength(final int commentLength)
+        {
+            this.commentLength = commentLength;
+            return this;
+        }
+
+        public Options setTests(final int tests)
+        {
+            this.tests = tests;
+            return this;
+        }
+
+        public Options setSeed(final long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+    }
+
+    /**
+     * Takes name=value arguments: port (defaults to 8080), jobs, folders, latency (milliseconds, each request takes up to half as long again),
+     * errorRate (the fraction of requests which fail), buildDuration and idle (milliseconds, each build and the gap after it vary by up to half either
+     * way), failureRate (the fraction of builds which fail), changeSetSize, commentLength, tests and seed.
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        final Options options = new Options();
+        int port = 8080;
+        for (final String arg : args)
+        {
+            final String[] nameAndValue = arg.split("=", 2);
+            final String value = nameAndValue[1];
+            switch (nameAndValue[0])
+            {
+                case "port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "jobs":
+                    options.setJobs(Integer.parseInt(value));
+                    break;
+                case "folders":
+                    options.setFolders(Integer.parseInt(value));
+                    break;
+                case "latency":
+                    options.setLatencyMillis(Long.parseLong(value));
+                    break;
+                case "errorRate":
+                    options.setErrorRate(Double.parseDouble(value));
+                    break;
+                case "buildDuration":
+                    options.setBuildDurationMillis(Long.parseLong(value));
+                    break;
+                case "idle":
+                    options.setIdleMillis(Long.parseLong(value));
+                    break;
+                case "failureRate":
+                    options.setFailureRate(Double.parseDouble(value));
+                    break;
+                case "changeSetSize":
+                    options.setChangeSetSize(Integer.parseInt(value));
+                    break;
+                case "commentLength":
+                    options.setCommentLength(Integer.parseInt(value));
+                    break;
+                case "tests":
+                    options.setTests(Integer.parseInt(value));
+                    break;
+                case "seed":
+                    options.setSeed(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + nameAndValue[0]);
+            }
+        }
+        final FakeJenkins fakeJenkins = new FakeJenkins(Vertx.vertx(), options, System::currentTimeMillis);
+        fakeJenkins.start(port);
+        System.out.println("Simulating " + options.jobs + " jobs at " + fakeJenkins.getUrl());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.offbytwo.jenkins.client.JenkinsHttpClient;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+
+import io.vertx.core.Vertx;
+
+public class FakeJenkinsTest
+{
+    private final Vertx vertx = Vertx.vertx();
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @After
+    public void tearDown()
+    {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldListEverySimulatedJobWithinItsFolder() throws Exception
+    {
+        //Given
+        final FakeJenkins fakeJenkins = start(new FakeJenkins.Options().setJobs(10).setFolders(2));
+        final VertxJenkinsClient client = vertxClient(fakeJenkins);
+
+        //When
+        final Result<Integer, Folder> root = client.getFolder("").get(5, TimeUnit.SECONDS);
+        final Result<Integer, Folder> folder = client.getFolder("folder-001").get(5, TimeUnit.SECONDS);
+
+        //Then
+        root.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                     listedRoot ->
+                     {
+                         assertThat(listedRoot.getJobs().isEmpty(), is(true));
+                         assertThat(listedRoot.getFolderNameToMarker().size(), is(2));
+                     });
+        folder.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                       listedFolder ->
+                       {
+                           assertThat(listedFolder.getJobs().size(), is(5));
+                           assertThat(listedFolder.getJobs().get(0).getName(), is("folder-001/job-00001"));
+                       });
+    }
+
+    @Test
+    public void shouldServeTheLatestBuildOfEveryJobToTheBlockingClient() throws Exception
+    {
+        //Given
+        final FakeJenkins fakeJenkins = start(new FakeJenkins.Options().setJobs(3).setChangeSetSize(4).setTests(200));
+        final JenkinsHttpClient jenkinsHttpClient = new JenkinsHttpClient(URI.create(fakeJenkins.getUrl()));
+        final JenkinsFacade jenkinsFacade = new JenkinsFacade(jenkinsHttpClient, clock::get, VersionControl.GIT);
+
+        //When
+        final Result<Integer, LatestBuildInformation> response = jenkinsFacade.getLatestBuildInformation("job-00002", JobStatus.SUCCESS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         information ->
+                         {
+                             assertThat(information.getNumber(), is(1));
+                             assertThat(information.getRevision().length(), is(40));
+                             assertThat(information.getComments().length, is(4));
+                         });
+    }
+
+    @Test
+    public void shouldStartAndFinishBuildsAsTimePasses() throws Exception
+    {
+        //Given
+        final FakeJenkins fakeJenkins = start(new FakeJenkins.Options().setJobs(1).setBuildDurationMillis(1_000).setIdleMillis(1_000));
+        final VertxJenkinsClient client = vertxClient(fakeJenkins);
+        final int firstBuild = latestBuild(client, "job-00000").getNumber();
+
+        //When
+        clock.addAndGet(10_000);
+        final LatestBuildInformation laterBuild = latestBuild(client, "job-00000");
+
+        //Then
+        assertThat(laterBuild.getNumber() > firstBuild + 2, is(true));
+    }
+
+    @Test
+    public void shouldReportTheLatestBuildOfEveryJobInASingleResponse() throws Exception
+    {
+        //Given
+        final FakeJenkins fakeJenkins = start(new FakeJenkins.Options().setJobs(1_000).setFolders(10));
+        final Map<String, JobStatus> previousJobStatuses = new HashMap<>();
+        fakeJenkins.getJobNames().forEach(jobName -> previousJobStatuses.put(jobName, JobStatus.SUCCESS));
+
+        //When
+        final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> response =
+                vertxClient(fakeJenkins).getAllLatestBuildInformation(previousJobStatuses).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         jobNameToBuildInformation -> assertThat(jobNameToBuildInformation.keySet(), is(previousJobStatuses.keySet())));
+        assertThat(fakeJenkins.getRequestsReceived(), is(1L));
+    }
+
+    @Test
+    public void shouldFailRequestsAtTheConfiguredErrorRate() throws Exception
+    {
+        //Given
+        final FakeJenkins fakeJenkins = start(new FakeJenkins.Options().setJobs(1).setErrorRate(1));
+
+        //When
+        final Result<Integer, Folder> response = vertxClient(fakeJenkins).getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(500)),
+                         folder -> Assert.fail("This should not happen"));
+    }
+
+    private FakeJenkins start(final FakeJenkins.Options options) throws Exception
+    {
+        final FakeJenkins fakeJenkins = new FakeJenkins(vertx, options, clock::get);
+        fakeJenkins.start(0);
+        return fakeJenkins;
+    }
+
+    private VertxJenkinsClient vertxClient(final FakeJenkins fakeJenkins)
+    {
+        return new VertxJenkinsClient(vertx, URI.create(fakeJenkins.getUrl()), null, null, 4, 5_000, clock::get, VersionControl.GIT);
+    }
+
+    private static LatestBuildInformation latestBuild(final VertxJenkinsClient client, final String jobName) throws Exception
+    {
+        final List<LatestBuildInformation> latestBuild = new ArrayList<>();
+        client.getLatestBuildInformation(jobName, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS)
+                .consume(error -> Assert.fail("Should not have happened. Received: " + error), latestBuild::add);
+        return latestBuild.get(0);
+    }
+}
@@ -13,27 +13,19 @@
 package com.transficc.tools.feedback.ci.jenkins;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import com.offbytwo.jenkins.JenkinsServer;
-import com.offbytwo.jenkins.model.Build;
-import com.offbytwo.jenkins.model.BuildChangeSet;
-import com.offbytwo.jenkins.model.BuildResult;
-import com.offbytwo.jenkins.model.BuildWithDetails;
-import com.offbytwo.jenkins.model.JobWithDetails;
+import com.offbytwo.jenkins.client.JenkinsHttpClient;
 import com.transficc.functionality.Result;
-import com.transficc.tools.feedback.MessageBuilder;
 import com.transficc.tools.feedback.domain.JobStatus;
 import com.transficc.tools.feedback.domain.LatestBuildInformation;
 import com.transficc.tools.feedback.domain.TestResults;
 import com.transficc.tools.feedback.domain.VersionControl;
 import com.transficc.tools.feedback.util.ClockService;
 
+import org.apache.http.client.HttpResponseException;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -47,10 +39,9 @@ public class JenkinsFacadeTest
 {
     private static final String JOB_NAME = "something going on";
     private static final long TIMESTAMP = 20;
-    private final JenkinsServer jenkinsServer = Mockito.mock(JenkinsServer.class);
-    private final JobWithDetails jobWithDetails = Mockito.mock(JobWithDetails.class);
-    private final Build lastBuild = Mockito.mock(Build.class);
-    private final JenkinsFacade jenkinsFacade = new JenkinsFacade(jenkinsServer, new ClockService()
+    private static final String JOB_PATH = "/job/something%20going%20on/";
+    private final JenkinsHttpClient jenkinsHttpClient = Mockito.mock(JenkinsHttpClient.class);
+    private final JenkinsFacade jenkinsFacade = new JenkinsFacade(jenkinsHttpClient, new ClockService()
     {
         @Override
         public long currentTimeMillis()
@@ -63,8 +54,7 @@ public class JenkinsFacadeTest
     public void shouldReturnWith400IfJobHasNeverBeenBuilt() throws IOException
     {
         //Given
-        given(jenkinsServer.getJob(JOB_NAME)).willReturn(jobWithDetails);
-        given(jobWithDetails.getLastBuild()).willReturn(Build.BUILD_HAS_NEVER_RUN);
+        given(jenkinsHttpClient.get(Mockito.startsWith(JOB_PATH))).willReturn("{\"name\":\"" + JOB_NAME + "\",\"buildable\":true,\"lastBuild\":null}");
 
         //When
         final Result<Integer, LatestBuildInformation> response = jenkinsFacade.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
@@ -78,7 +68,7 @@ public class JenkinsFacadeTest
     public void shouldReturnWith404IfJobCannotBeFound() throws IOException
     {
         //Given
-        given(jenkinsServer.getJob(JOB_NAME)).willReturn(null);
+        given(jenkinsHttpClient.get(Mockito.startsWith(JOB_PATH))).willThrow(new HttpResponseException(404, "Not Found"));
 
         //When
         final Result<Integer, LatestBuildInformation> response = jenkinsFacade.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS);
@@ -141,6 +131,61 @@ public class JenkinsFacadeTest
                          });
     }
 
+    @Test
+    public void shouldReturnLatestBuildInformationForAllJobsFromASingleRequest() throws IOException
+    {
+        //Given
+        given(jenkinsHttpClient.get(Mockito.startsWith("/?tree="))).willReturn(
+                "{\"jobs\":[" +
+                "{\"name\":\"" + JOB_NAME + "\",\"buildable\":true,\"lastBuild\":{\"number\":7,\"result\":null,\"timestamp\":5,\"duration\":1," +
+                "\"estimatedDuration\":20,\"building\":true,\"actions\":[{},{\"lastBuiltRevision\":{\"SHA1\":\"34534509abfd\"}}," +
+                "{\"urlName\":\"testReport\",\"failCount\":1,\"skipCount\":2,\"totalCount\":6}]," +
+                "\"changeSet\":{\"items\":[{\"comment\":\"Fixed the build\"}]}}}," +
+                "{\"name\":\"never built\",\"buildable\":true,\"lastBuild\":null}," +
+                "{\"name\":\"disabled\",\"buildable\":false,\"lastBuild\":{\"number\":1,\"result\":\"SUCCESS\",\"timestamp\":5,\"duration\":1," +
+                "\"estimatedDuration\":20,\"building\":false,\"actions\":[],\"changeSet\":{\"items\":[]}}}]}");
+
+        //When
+        final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> response = jenkinsFacade.getAllLatestBuildInformation(
+                Collections.singletonMap(JOB_NAME, JobStatus.SUCCESS));
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         jobs ->
+                         {
+                             assertThat(jobs.size(), is(3));
+                             jobs.get(JOB_NAME).consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                                                        information ->
+                                                        {
+                                                            assertThat(information.getRevision(), is("34534509abfd"));
+                                                            assertThat(information.getNumber(), is(7));
+                                                            assertThat(information.isBuilding(), is(true));
+                                                            assertThat(information.getJobStatus(), is(JobStatus.BUILDING));
+                                                            assertThat(information.getJobCompletionPercentage(), is(75.0));
+                                                            assertThat(information.getComments(), is(new String[]{"Fixed the build"}));
+                                                            assertThat(information.getTestResults(), is(new TestResults(3, 1, 2)));
+                                                        });
+                             jobs.get("never built").consume(error -> assertThat(error, is(400)),
+                                                             information -> Assert.fail("This should not happen"));
+                             jobs.get("disabled").consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                                                          information -> assertThat(information.getJobStatus(), is(JobStatus.DISABLED)));
+                         });
+    }
+
+    @Test
+    public void shouldReturnWith500IfAllJobsCannotBeFetched() throws IOException
+    {
+        //Given
+        given(jenkinsHttpClient.get(Mockito.anyString())).willThrow(new IOException("Connection refused"));
+
+        //When
+        final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> response = jenkinsFacade.getAllLatestBuildInformation(Collections.emptyMap());
+
+        //Then
+        response.consume(error -> assertThat(error, is(500)),
+                         jobs -> Assert.fail("This should not happen"));
+    }
+
     private void setupJobExpectations(final String revision,
                                       final boolean isBuilding,
                                       final Optional<Tests> testReport,
@@ -148,34 +193,13 @@ public class JenkinsFacadeTest
                                       final int estimatedDuration,
                                       final int duration) throws IOException
     {
-        final Map<Object, Object> revisionActions = new HashMap<>();
-        final Map<Object, Object> revisions = new HashMap<>();
-        revisions.put("SHA1", revision);
-        revisionActions.put("lastBuiltRevision", revisions);
-        final Map<Object, Object> testResults = new HashMap<>();
-        testReport.ifPresent(test ->
-                             {
-                                 testResults.put("failCount", test.failCount);
-                                 testResults.put("skipCount", test.skipCount);
-                                 testResults.put("totalCount", test.totalCount);
-                                 testResults.put("urlName", "testReport");
-                             });
-        final List<Map<Object, Object>> actions = Arrays.asList(revisionActions, testResults);
-        final BuildChangeSet buildChangeSet = new BuildChangeSet();
-        buildChangeSet.setItems(Collections.emptyList());
-
-        given(jenkinsServer.getJob(JOB_NAME)).willReturn(jobWithDetails);
-        given(jobWithDetails.getLastBuild()).willReturn(lastBuild);
-        given(jobWithDetails.isBuildable()).willReturn(true);
-        given(lastBuild.details()).willReturn(new MessageBuilder<>(BuildWithDetails.class)
-                                                      .setField("actions", actions)
-                                                      .setField("building", isBuilding)
-                                                      .setField("changeSet", buildChangeSet)
-                                                      .setField("result", BuildResult.SUCCESS)
-                                                      .setField("timestamp", timestamp)
-                                                      .setField("duration", duration)
-                                                      .setField("estimatedDuration", estimatedDuration)
-                                                      .build());
+        final String testReportAction = testReport.map(test -> ",{\"urlName\":\"testReport\",\"failCount\":" + test.failCount +
+                                                               ",\"skipCount\":" + test.skipCount + ",\"totalCount\":" + test.totalCount + "}")
+                                                  .orElse("");
+        given(jenkinsHttpClient.get(Mockito.startsWith(JOB_PATH))).willReturn(
+                "{\"name\":\"" + JOB_NAME + "\",\"buildable\":true,\"lastBuild\":{\"number\":1,\"result\":\"SUCCESS\",\"timestamp\":" + timestamp +
+                ",\"duration\":" + duration + ",\"estimatedDuration\":" + estimatedDuration + ",\"building\":" + isBuilding +
+                ",\"actions\":[{\"lastBuiltRevision\":{\"SHA1\":\"" + revision + "\"}}" + testReportAction + "],\"changeSet\":{\"items\":[]}}}");
     }
 
     private static final class Tests
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.TestResults;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class JenkinsJsonParserTest
+{
+    private final JenkinsJsonParser parser = new JenkinsJsonParser(() -> 15, VersionControl.GIT);
+
+    @Test
+    public void shouldSkipFieldsItDoesNotNeedWhereverTheyAppear() throws IOException
+    {
+        //Given
+        final String json = "{\"_class\":\"hudson.model.FreeStyleProject\",\"healthReport\":[{\"score\":100,\"description\":{\"nested\":[1,2]}}]," +
+                            "\"name\":\"job\",\"lastBuild\":{\"url\":\"http://jenkins/job/job/3/\",\"culprits\":[{\"fullName\":\"someone\"}]," +
+                            "\"actions\":[null,{},{\"failCount\":1,\"skipCount\":2,\"totalCount\":6,\"urlName\":\"testReport\"}," +
+                            "{\"lastBuiltRevision\":{\"branch\":[{\"SHA1\":\"wrong\"}],\"SHA1\":\"abc123\"}}," +
+                            "{\"lastBuiltRevision\":{\"SHA1\":\"second\"}}]," +
+                            "\"changeSet\":{\"kind\":\"git\",\"items\":[{\"author\":{\"fullName\":\"someone\"},\"comment\":\"First\"},{\"comment\":\"Second\"}]}," +
+                            "\"number\":3,\"result\":\"FAILURE\",\"timestamp\":5,\"duration\":0,\"estimatedDuration\":20,\"building\":true},\"buildable\":true}";
+
+        //When
+        final Result<Integer, LatestBuildInformation> result = parse(json, JobStatus.SUCCESS);
+
+        //Then
+        result.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                       information ->
+                       {
+                           assertThat(information.getNumber(), is(3));
+                           assertThat(information.getRevision(), is("abc123"));
+                           assertThat(information.getJobStatus(), is(JobStatus.ERROR));
+                           assertThat(information.getComments(), is(new String[]{"First", "Second"}));
+                           assertThat(information.getTestResults(), is(new TestResults(3, 1, 2)));
+                           assertThat(information.getJobCompletionPercentage(), is(50.0));
+                           assertThat(information.isBuilding(), is(true));
+                       });
+    }
+
+    @Test
+    public void shouldKeepThePreviousStatusForAnUnrecognisedResult() throws IOException
+    {
+        //Given
+        final String json = "{\"name\":\"job\",\"buildable\":true,\"lastBuild\":{\"number\":1,\"result\":\"SOMETHING_NEW\",\"actions\":[],\"changeSet\":null}}";
+
+        //When
+        final Result<Integer, LatestBuildInformation> result = parse(json, JobStatus.SUCCESS);
+
+        //Then
+        result.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                       information ->
+                       {
+                           assertThat(information.getJobStatus(), is(JobStatus.SUCCESS));
+                           assertThat(information.getRevision(), is(""));
+                           assertThat(information.getComments().length, is(0));
+                       });
+    }
+
+    @Test
+    public void shouldReadJobsNestedInFolders() throws IOException
+    {
+        //Given
+        final String json = "{\"_class\":\"hudson.model.Hudson\",\"jobs\":[{\"name\":\"team\",\"jobs\":[{\"name\":\"project\",\"jobs\":[" +
+                            "{\"name\":\"master\",\"buildable\":true,\"lastBuild\":{\"number\":9,\"result\":\"SUCCESS\"}}]}," +
+                            "{\"name\":\"tool\",\"buildable\":true,\"lastBuild\":null}]}," +
+                            "{\"name\":\"top\",\"buildable\":false,\"lastBuild\":{\"number\":1,\"result\":\"SUCCESS\"}}]}";
+
+        //When
+        final Map<String, Result<Integer, LatestBuildInformation>> jobs;
+        try (JsonParser jsonParser = parser.createParser(json))
+        {
+            jobs = parser.parseAllLatestBuildInformation(jsonParser, Collections.emptyMap());
+        }
+
+        //Then
+        assertThat(jobs.size(), is(3));
+        jobs.get("team/project/master").consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                                                information -> assertThat(information.getNumber(), is(9)));
+        jobs.get("team/tool").consume(error -> assertThat(error, is(400)),
+                                      information -> Assert.fail("This should not happen"));
+        jobs.get("top").consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                                information -> assertThat(information.getJobStatus(), is(JobStatus.DISABLED)));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldRejectAFolderWhoseJobsComeBeforeItsName() throws IOException
+    {
+        //Given
+        final String json = "{\"jobs\":[{\"jobs\":[{\"name\":\"master\",\"lastBuild\":null}],\"name\":\"team\"}]}";
+
+        //When
+        try (JsonParser jsonParser = parser.createParser(json))
+        {
+            parser.parseAllLatestBuildInformation(jsonParser, Collections.emptyMap());
+        }
+    }
+
+    private Result<Integer, LatestBuildInformation> parse(final String json, final JobStatus previousJobStatus) throws IOException
+    {
+        try (JsonParser jsonParser = parser.createParser(json))
+        {
+            return parser.parseLatestBuildInformation(jsonParser, previousJobStatus);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offbytwo.jenkins.model.BuildChangeSetItem;
+import com.offbytwo.jenkins.model.BuildWithDetails;
+import com.offbytwo.jenkins.model.JobWithDetails;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Measures the bytes allocated to turn the responses for one job into its latest build information, comparing binding the job and build the
+ * way jenkins-client does with streaming just the fields Feedback needs out of the tree query it now makes.
+ * <p>
+ * Run it with {@code ./gradlew jenkinsParsingBenchmark}, optionally passing the number of change set items and actions in each build, e.g.
+ * {@code -PjenkinsParsingBenchmarkArgs="changeSetSize=20 actions=30"}.
+ */
+public final class JenkinsParsingBenchmark
+{
+    private static final int WARM_UP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 50_000;
+    private static final ObjectMapper JENKINS_CLIENT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    //Keeps the JIT from deciding the results are unused
+    private static volatile long sink;
+
+    private final JenkinsJsonParser parser = new JenkinsJsonParser(System::currentTimeMillis, VersionControl.GIT);
+    private final String jobJson;
+    private final String buildJson;
+    private final String treeJson;
+
+    private JenkinsParsingBenchmark(final int changeSetSize, final int actions)
+    {
+        final JsonArray builds = new JsonArray();
+        for (int i = 100; i > 0; i--)
+        {
+            builds.add(new JsonObject().put("number", i).put("url", "http://jenkins/job/benchmark/" + i + "/"));
+        }
+        jobJson = new JsonObject()
+                .put("description", "")
+                .put("displayName", "benchmark")
+                .put("name", "benchmark")
+                .put("url", "http://jenkins/job/benchmark/")
+                .put("buildable", true)
+                .put("builds", builds)
+                .put("color", "blue")
+                .put("firstBuild", builds.getJsonObject(99))
+                .put("inQueue", false)
+                .put("keepDependencies", false)
+                .put("lastBuild", builds.getJsonObject(0))
+                .put("lastCompletedBuild", builds.getJsonObject(0))
+                .put("lastFailedBuild", builds.getJsonObject(3))
+                .put("lastStableBuild", builds.getJsonObject(0))
+                .put("lastSuccessfulBuild", builds.getJsonObject(0))
+                .put("nextBuildNumber", 101)
+                .encode();
+        buildJson = build(changeSetSize, actions, false).encode();
+        treeJson = new JsonObject().put("name", "benchmark").put("buildable", true).put("lastBuild", build(changeSetSize, actions, true)).encode();
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        int changeSetSize = 5;
+        int actions = 10;
+        for (final String arg : args)
+        {
+            final String[] nameAndValue = arg.split("=", 2);
+            switch (nameAndValue[0])
+            {
+                case "changeSetSize":
+                    changeSetSize = Integer.parseInt(nameAndValue[1]);
+                    break;
+                case "actions":
+                    actions = Integer.parseInt(nameAndValue[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + nameAndValue[0]);
+            }
+        }
+        final JenkinsParsingBenchmark benchmark = new JenkinsParsingBenchmark(changeSetSize, actions);
+        System.out.println("Response bytes per poll: bound " + (benchmark.jobJson.length() + benchmark.buildJson.length()) + ", streamed " + benchmark.treeJson.length());
+        System.out.println("Bytes allocated per poll: bound " + benchmark.measure(benchmark::bind) + ", streamed " + benchmark.measure(benchmark::stream));
+    }
+
+    private long measure(final Poll poll) throws IOException
+    {
+        long checksum = 0;
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++)
+        {
+            checksum += poll.run();
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            checksum += poll.run();
+        }
+        final long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        sink = checksum;
+        return allocated / ITERATIONS;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int bind() throws IOException
+    {
+        //What getLatestBuildInformation used to do: bind the whole job, then the whole build, then dig through the actions as untyped maps
+        final JobWithDetails job = JENKINS_CLIENT_MAPPER.readValue(jobJson, JobWithDetails.class);
+        final BuildWithDetails build = JENKINS_CLIENT_MAPPER.readValue(buildJson, BuildWithDetails.class);
+        int checksum = job.isBuildable() ? build.getNumber() : 0;
+        for (final Object action : build.getActions())
+        {
+            final Map<String, Object> fields = (Map<String, Object>)action;
+            final Map<String, String> lastBuiltRevision = (Map<String, String>)fields.get("lastBuiltRevision");
+            if (lastBuiltRevision != null)
+            {
+                checksum += lastBuiltRevision.get("SHA1").length();
+            }
+            if ("testReport".equals(fields.get("urlName")))
+            {
+                checksum += (int)fields.get("totalCount");
+            }
+        }
+        for (final BuildChangeSetItem item : build.getChangeSet().getItems())
+        {
+            checksum += item.getComment().length();
+        }
+        return checksum;
+    }
+
+    private int stream() throws IOException
+    {
+        try (JsonParser json = parser.createParser(treeJson))
+        {
+            final int[] checksum = new int[1];
+            parser.parseLatestBuildInformation(json, JobStatus.SUCCESS).consume(error -> checksum[0] = error,
+                                                                                 information -> checksum[0] = information.getNumber() + information.getRevision().length());
+            return checksum[0];
+        }
+    }
+
+    private static JsonObject build(final int changeSetSize, final int actions, final boolean tree)
+    {
+        final JsonArray items = new JsonArray();
+        for (int i = 0; i < changeSetSize; i++)
+        {
+            final JsonObject item = new JsonObject().put("comment", "Change " + i + " to the benchmark which is about as long as most commit messages\n");
+            if (!tree)
+            {
+                item.put("affectedPaths", new JsonArray().add("src/main/java/Benchmark.java").add("README.md"))
+                        .put("commitId", String.format("%040x", i))
+                        .put("timestamp", 1_500_000_000_000L + i)
+                        .put("author", new JsonObject().put("absoluteUrl", "http://jenkins/user/someone").put("fullName", "Someone"))
+                        .put("authorEmail", "someone@example.com")
+                        .put("date", "2017-07-14 02:40:00 +0000")
+                        .put("id", String.format("%040x", i))
+                        .put("msg", "Change " + i)
+                        .put("paths", new JsonArray().add(new JsonObject().put("editType", "edit").put("file", "README.md")));
+            }
+            items.add(item);
+        }
+        final JsonArray buildActions = new JsonArray()
+                .add(new JsonObject().put("lastBuiltRevision", new JsonObject().put("SHA1", String.format("%040x", 42))))
+                .add(new JsonObject().put("urlName", "testReport").put("failCount", 1).put("skipCount", 2).put("totalCount", 100));
+        for (int i = 0; i < actions; i++)
+        {
+            //Most actions are plugins Feedback has no interest in, and a tree query reduces each to an empty object
+            buildActions.add(tree ? new JsonObject() : new JsonObject().put("_class", "hudson.model.CauseAction")
+                    .put("causes", new JsonArray().add(new JsonObject().put("shortDescription", "Started by an SCM change"))));
+        }
+        final JsonObject changeSet = new JsonObject().put("items", items);
+        final JsonObject build = new JsonObject()
+                .put("number", 100)
+                .put("result", "SUCCESS")
+                .put("timestamp", 1_500_000_000_000L)
+                .put("duration", 60_000)
+                .put("estimatedDuration", 60_000)
+                .put("building", false)
+                .put("actions", buildActions)
+                .put("changeSet", changeSet);
+        if (!tree)
+        {
+            changeSet.put("kind", "git");
+            build.put("description", "")
+                    .put("displayName", "#100")
+                    .put("fullDisplayName", "benchmark #100")
+                    .put("id", "100")
+                    .put("url", "http://jenkins/job/benchmark/100/")
+                    .put("builtOn", "agent-1")
+                    .put("artifacts", new JsonArray())
+                    .put("culprits", new JsonArray().add(new JsonObject().put("absoluteUrl", "http://jenkins/user/someone").put("fullName", "Someone")));
+        }
+        return build;
+    }
+
+    private interface Poll
+    {
+        int run() throws IOException;
+    }
+}
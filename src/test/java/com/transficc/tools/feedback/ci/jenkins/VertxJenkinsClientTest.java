@@ -0,0 +1,298 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.jenkins;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobMetadata;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.QueuedBuild;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+
+public class VertxJenkinsClientTest
+{
+    private static final String JOB_NAME = "something going on";
+    private static final long TIMESTAMP = 20;
+    private final Vertx vertx = Vertx.vertx();
+    private final Router router = Router.router(vertx);
+    private VertxJenkinsClient client;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+        vertx.createHttpServer().requestHandler(router::accept).listen(0, result ->
+        {
+            if (result.succeeded())
+            {
+                listening.complete(result.result());
+            }
+            else
+            {
+                listening.completeExceptionally(result.cause());
+            }
+        });
+        final int port = listening.get(5, TimeUnit.SECONDS).actualPort();
+        client = new VertxJenkinsClient(vertx, URI.create("http://localhost:" + port + "/jenkins/"), "tom", "secret", 2, 200, () -> TIMESTAMP, VersionControl.GIT);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldReturnLatestBuildInformation() throws Exception
+    {
+        //Given
+        router.get("/jenkins/job/something%20going%20on/api/json").handler(context ->
+        {
+            assertThat(context.request().getHeader("Authorization"), is("Basic dG9tOnNlY3JldA=="));
+            context.response().end("{\"name\":\"" + JOB_NAME + "\",\"buildable\":true,\"lastBuild\":{\"number\":7,\"result\":\"SUCCESS\",\"timestamp\":5,\"duration\":1," +
+                                   "\"estimatedDuration\":20,\"building\":false,\"actions\":[{\"lastBuiltRevision\":{\"SHA1\":\"34534509abfd\"}}]," +
+                                   "\"changeSet\":{\"items\":[]}}}");
+        });
+
+        //When
+        final Result<Integer, LatestBuildInformation> response = client.getLatestBuildInformation(JOB_NAME, JobStatus.ERROR).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         information ->
+                         {
+                             assertThat(information.getRevision(), is("34534509abfd"));
+                             assertThat(information.getNumber(), is(7));
+                             assertThat(information.getJobStatus(), is(JobStatus.SUCCESS));
+                             assertThat(information.getJobCompletionPercentage(), is(75.0));
+                         });
+    }
+
+    @Test
+    public void shouldReturnWith400IfJobHasNeverBeenBuilt() throws Exception
+    {
+        //Given
+        router.get("/jenkins/job/something%20going%20on/api/json").handler(context -> context.response().end("{\"name\":\"" + JOB_NAME + "\",\"buildable\":true,\"lastBuild\":null}"));
+
+        //When
+        final Result<Integer, LatestBuildInformation> response = client.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(400)),
+                         information -> Assert.fail("This should not happen"));
+    }
+
+    @Test
+    public void shouldReturnWith404IfJobCannotBeFound() throws Exception
+    {
+        //When
+        final Result<Integer, LatestBuildInformation> response = client.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(404)),
+                         information -> Assert.fail("This should not happen"));
+    }
+
+    @Test
+    public void shouldReturnWith504IfJenkinsDoesNotRespondInTime() throws Exception
+    {
+        //Given
+        router.get("/jenkins/api/json").handler(context ->
+        {
+            //never respond
+        });
+
+        //When
+        final Result<Integer, Folder> response = client.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(504)),
+                         folder -> Assert.fail("This should not happen"));
+    }
+
+    @Test
+    public void shouldReturnAllJobs() throws Exception
+    {
+        //Given
+        router.get("/jenkins/api/json").handler(context -> context.response().end("{\"jobs\":[{\"name\":\"" + JOB_NAME + "\",\"url\":\"http://jenkins/job/x/\"}]}"));
+
+        //When
+        final Result<Integer, Folder> response = client.getFolder("").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         folder ->
+                         {
+                             final List<Job> jobs = folder.getJobs();
+                             assertThat(jobs.size(), is(1));
+                             assertThat(jobs.get(0).getName(), is(JOB_NAME));
+                             assertThat(jobs.get(0).getUrl(), is("http://jenkins/job/x/"));
+                             assertThat(folder.getFolderNameToMarker().isEmpty(), is(true));
+                         });
+    }
+
+    @Test
+    public void shouldListTheJobsAndFoldersWithinAFolder() throws Exception
+    {
+        //Given
+        router.get("/jenkins/job/team/job/project/api/json").handler(context -> context.response().end(
+                "{\"jobs\":[{\"name\":\"feature%2Fbuild\",\"url\":\"http://jenkins/job/team/job/project/job/feature%252Fbuild/\"}," +
+                "{\"name\":\"libraries\",\"jobs\":[{\"name\":\"core\",\"jobs\":[{\"name\":\"master\"}]}]}]}"));
+
+        //When
+        final Result<Integer, Folder> response = client.getFolder("team/project").get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         folder ->
+                         {
+                             assertThat(folder.getJobs().size(), is(1));
+                             assertThat(folder.getJobs().get(0).getName(), is("team/project/feature%2Fbuild"));
+                             assertThat(folder.getFolderNameToMarker().keySet(), is(Collections.singleton("team/project/libraries")));
+                         });
+    }
+
+    @Test
+    public void shouldReturnLatestBuildInformationForAJobInAFolder() throws Exception
+    {
+        //Given
+        router.get("/jenkins/job/team/job/project/job/feature%252Fbuild/api/json").handler(context -> context.response().end("{\"name\":\"feature%2Fbuild\",\"lastBuild\":null}"));
+
+        //When
+        final Result<Integer, LatestBuildInformation> response = client.getLatestBuildInformation("team/project/feature%2Fbuild", JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> assertThat(error, is(400)),
+                         information -> Assert.fail("This should not happen"));
+    }
+
+    @Test
+    public void shouldReturnLatestBuildInformationForAllJobsFromASingleRequest() throws Exception
+    {
+        //Given
+        router.get("/jenkins/api/json").handler(context ->
+        {
+            assertThat(context.request().getParam("tree").startsWith("jobs[name,lastBuild[number,"), is(true));
+            context.response().end("{\"jobs\":[{\"name\":\"never built\",\"lastBuild\":null}]}");
+        });
+
+        //When
+        final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> response =
+                client.getAllLatestBuildInformation(Collections.emptyMap()).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         jobs -> jobs.get("never built").consume(error -> assertThat(error, is(400)),
+                                                                 information -> Assert.fail("This should not happen")));
+    }
+
+    @Test
+    public void shouldDescendIntoFoldersForTheLatestBuildInformationOfNestedJobs() throws Exception
+    {
+        //Given
+        router.get("/jenkins/api/json").handler(context -> context.response().end(
+                "{\"jobs\":[{\"name\":\"team\",\"jobs\":[{\"name\":\"never built\",\"buildable\":true,\"lastBuild\":null}]}]}"));
+
+        //When
+        final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> response =
+                client.getAllLatestBuildInformation(Collections.singletonMap("team/never built", JobStatus.SUCCESS)).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         jobs ->
+                         {
+                             assertThat(jobs.keySet(), is(Collections.singleton("team/never built")));
+                             jobs.get("team/never built").consume(error -> assertThat(error, is(400)),
+                                                                  information -> Assert.fail("This should not happen"));
+                         });
+    }
+
+    @Test
+    public void shouldFetchTheMetadataOfAllJobsFromASingleRequest() throws Exception
+    {
+        //Given
+        router.get("/jenkins/api/json").handler(context ->
+        {
+            assertThat(context.request().getParam("tree"), is("jobs[name,buildable,lastBuild[estimatedDuration],downstreamProjects[name,url]," +
+                                                              "jobs[name,buildable,lastBuild[estimatedDuration],downstreamProjects[name,url]]]"));
+            context.response().end("{\"jobs\":[{\"name\":\"disabled\",\"buildable\":false,\"lastBuild\":{\"estimatedDuration\":120000}," +
+                                   "\"downstreamProjects\":[{\"name\":\"never built\",\"url\":\"http://jenkins/job/team/job/never%20built/\"}]}," +
+                                   "{\"name\":\"team\",\"jobs\":[{\"name\":\"never built\",\"buildable\":true,\"lastBuild\":null}]}]}");
+        });
+
+        //When
+        final Result<Integer, Map<String, JobMetadata>> response = client.getAllJobMetadata(Arrays.asList("disabled", "team/never built")).get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         jobs ->
+                         {
+                             assertThat(jobs.get("disabled"), is(new JobMetadata(false, 120_000, Collections.singletonList("team/never built"))));
+                             assertThat(jobs.get("team/never built"), is(new JobMetadata(true, -1)));
+                         });
+    }
+
+    @Test
+    public void shouldListQueuedBuildsByTheFullNameOfTheirJob() throws Exception
+    {
+        //Given
+        router.get("/jenkins/queue/api/json").handler(context -> context.response().end(
+                "{\"_class\":\"hudson.model.Queue\",\"items\":[" +
+                "{\"_class\":\"hudson.model.Queue$BuildableItem\",\"blocked\":false,\"buildable\":true,\"inQueueSince\":10," +
+                "\"task\":{\"name\":\"never built\",\"url\":\"http://jenkins/job/team/job/never%20built/\"},\"timestamp\":10}," +
+                "{\"_class\":\"hudson.model.Queue$BlockedItem\",\"blocked\":true,\"buildable\":false,\"inQueueSince\":12," +
+                "\"task\":{\"name\":\"disabled\",\"url\":\"http://jenkins/job/disabled/\"},\"timestamp\":12}," +
+                "{\"_class\":\"hudson.model.Queue$WaitingItem\",\"blocked\":false,\"buildable\":false,\"inQueueSince\":14," +
+                "\"task\":{\"name\":\"later\",\"url\":\"http://jenkins/job/later/\"},\"timestamp\":60000}]}"));
+
+        //When
+        final Result<Integer, List<QueuedBuild>> response = client.getQueue().get(5, TimeUnit.SECONDS);
+
+        //Then
+        response.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                         queuedBuilds ->
+                         {
+                             assertThat(queuedBuilds.size(), is(3));
+                             assertThat(queuedBuilds.get(0).getJobName(), is("team/never built"));
+                             assertThat(queuedBuilds.get(0).getInQueueSince(), is(10L));
+                             assertThat(queuedBuilds.get(0).isAboutToStart(), is(true));
+                             assertThat(queuedBuilds.get(1).getJobName(), is("disabled"));
+                             assertThat(queuedBuilds.get(1).isAboutToStart(), is(false));
+                             assertThat(queuedBuilds.get(2).getJobName(), is("later"));
+                             assertThat(queuedBuilds.get(2).isAboutToStart(), is(false));
+                         });
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.ci.replay;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.transficc.functionality.Result;
+import com.transficc.tools.feedback.ci.BlockingContinuousIntegrationServerAdapter;
+import com.transficc.tools.feedback.ci.ContinuousIntegrationServer;
+import com.transficc.tools.feedback.domain.Folder;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.TestResults;
+import com.transficc.tools.feedback.domain.VersionControl;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+
+public class ReplayingContinuousIntegrationServerTest
+{
+    private static final String JOB_NAME = "master-commit";
+    private final ContinuousIntegrationServer continuousIntegrationServer = Mockito.mock(ContinuousIntegrationServer.class);
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private Path recording;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        recording = temporaryFolder.newFile("recording.json").toPath();
+    }
+
+    @Test
+    public void shouldReplayEachResultOnceItsRecordedTimeHasPassed() throws Exception
+    {
+        //Given
+        final LatestBuildInformation building = new LatestBuildInformation("34534509abfd", JobStatus.BUILDING, 7, 5L, 50, new String[]{"Fix the build"}, true, null, 0);
+        final LatestBuildInformation built = new LatestBuildInformation("34534509abfd", JobStatus.SUCCESS, 7, 5L, 100, new String[]{"Fix the build"}, false,
+                                                                        new TestResults(10, 1, 2), 20);
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS)).willReturn(Result.success(building)).willReturn(Result.success(built));
+        try (final RecordingContinuousIntegrationServer recorder = recorder())
+        {
+            recorder.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+            clock.addAndGet(10_000);
+            recorder.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+        }
+
+        //When
+        try (final ReplayingContinuousIntegrationServer replayer = new ReplayingContinuousIntegrationServer(recording, 10, clock::get, VersionControl.GIT))
+        {
+            final LatestBuildInformation first = latestBuild(replayer);
+            clock.addAndGet(999);
+            final LatestBuildInformation beforeSecond = latestBuild(replayer);
+            clock.addAndGet(1);
+            final LatestBuildInformation second = latestBuild(replayer);
+
+            //Then
+            assertThat(first.getJobStatus(), is(JobStatus.BUILDING));
+            assertThat(first.getComments()[0], is("Fix the build"));
+            assertThat(beforeSecond.getJobStatus(), is(JobStatus.BUILDING));
+            assertThat(second.getJobStatus(), is(JobStatus.SUCCESS));
+            assertThat(second.getTestResults(), is(new TestResults(10, 1, 2)));
+            assertThat(second.getDuration(), is(20L));
+            assertThat(replayer.isFinished(), is(true));
+        }
+    }
+
+    @Test
+    public void shouldReplayRecordedFoldersAndErrors() throws Exception
+    {
+        //Given
+        given(continuousIntegrationServer.getFolder("")).willReturn(Result.success(new Folder(Collections.singletonList(new Job(JOB_NAME, "url", JobStatus.DISABLED,
+                                                                                                                                VersionControl.GIT)),
+                                                                                              Collections.singletonMap("team", "1-a"))));
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS)).willReturn(Result.error(404));
+        final Map<String, Result<Integer, LatestBuildInformation>> allBuildInformation = new HashMap<>();
+        allBuildInformation.put(JOB_NAME, Result.error(400));
+        given(continuousIntegrationServer.getAllLatestBuildInformation(Collections.emptyMap())).willReturn(Result.success(allBuildInformation));
+        try (final RecordingContinuousIntegrationServer recorder = recorder())
+        {
+            recorder.getFolder("").get(5, TimeUnit.SECONDS);
+            recorder.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+            recorder.getAllLatestBuildInformation(Collections.emptyMap()).get(5, TimeUnit.SECONDS);
+        }
+
+        //When
+        try (final ReplayingContinuousIntegrationServer replayer = new ReplayingContinuousIntegrationServer(recording, 1, clock::get, VersionControl.GIT))
+        {
+            final Result<Integer, Folder> folder = replayer.getFolder("").get(5, TimeUnit.SECONDS);
+            final Result<Integer, LatestBuildInformation> latestBuild = replayer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+            final Result<Integer, Map<String, Result<Integer, LatestBuildInformation>>> allLatestBuilds =
+                    replayer.getAllLatestBuildInformation(Collections.emptyMap()).get(5, TimeUnit.SECONDS);
+
+            //Then
+            folder.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                           listedFolder ->
+                           {
+                               assertThat(listedFolder.getJobs().get(0).getName(), is(JOB_NAME));
+                               assertThat(listedFolder.getJobs().get(0).getUrl(), is("url"));
+                               assertThat(listedFolder.getFolderNameToMarker(), is(Collections.singletonMap("team", "1-a")));
+                           });
+            latestBuild.consume(error -> assertThat(error, is(404)),
+                                information -> Assert.fail("This should not happen"));
+            allLatestBuilds.consume(error -> Assert.fail("Should not have happened. Received: " + error),
+                                    jobs -> jobs.get(JOB_NAME).consume(error -> assertThat(error, is(400)),
+                                                                       information -> Assert.fail("This should not happen")));
+        }
+    }
+
+    @Test
+    public void shouldWriteRecordedCallsOutWithoutWaitingForTheRecordingToBeClosed() throws Exception
+    {
+        //Given
+        given(continuousIntegrationServer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS)).willReturn(Result.error(404));
+
+        try (final RecordingContinuousIntegrationServer recorder = recorder())
+        {
+            //When
+            recorder.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+            final long giveUpTime = System.currentTimeMillis() + 5 * RecordingContinuousIntegrationServer.FLUSH_INTERVAL_MILLIS;
+            while (Files.size(recording) == 0 && System.currentTimeMillis() < giveUpTime)
+            {
+                Thread.sleep(10);
+            }
+
+            //Then
+            assertThat(Files.readAllLines(recording).size(), is(1));
+        }
+    }
+
+    @Test
+    public void shouldReportNothingForCallsWhichHaveNotBeenRecordedYet() throws Exception
+    {
+        //When
+        try (final ReplayingContinuousIntegrationServer replayer = new ReplayingContinuousIntegrationServer(recording, 1, clock::get, VersionControl.GIT))
+        {
+            final Result<Integer, LatestBuildInformation> latestBuild = replayer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS);
+
+            //Then
+            latestBuild.consume(error -> assertThat(error, is(400)),
+                                information -> Assert.fail("This should not happen"));
+        }
+    }
+
+    private RecordingContinuousIntegrationServer recorder()
+    {
+        return new RecordingContinuousIntegrationServer(new BlockingContinuousIntegrationServerAdapter(continuousIntegrationServer, Runnable::run), recording, clock::get);
+    }
+
+    private static LatestBuildInformation latestBuild(final ReplayingContinuousIntegrationServer replayer) throws Exception
+    {
+        final LatestBuildInformation[] latestBuild = new LatestBuildInformation[1];
+        replayer.getLatestBuildInformation(JOB_NAME, JobStatus.SUCCESS).get(5, TimeUnit.SECONDS)
+                .consume(error -> Assert.fail("Should not have happened. Received: " + error), information -> latestBuild[0] = information);
+        return latestBuild[0];
+    }
+}
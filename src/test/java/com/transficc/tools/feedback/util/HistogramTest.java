@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class HistogramTest
+{
+    private final Histogram histogram = new Histogram();
+
+    @Test
+    public void shouldReportPercentilesToWithinAPowerOfTwo()
+    {
+        //Given
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i);
+        }
+
+        //Then
+        assertThat(histogram.count(), is(100L));
+        assertThat(histogram.percentile(0.5), is(63L));
+        assertThat(histogram.percentile(0.99), is(100L));
+    }
+
+    @Test
+    public void shouldReportNothingRecordedAsZero()
+    {
+        assertThat(histogram.count(), is(0L));
+        assertThat(histogram.percentile(0.99), is(0L));
+    }
+}
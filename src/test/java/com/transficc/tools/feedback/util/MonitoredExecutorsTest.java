@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
+
+public class MonitoredExecutorsTest
+{
+    private final Counters counters = new Counters();
+    private final ExecutorService executor = MonitoredExecutors.newFixedThreadPool("test", 2, counters);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown()
+    {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldReportTasksWaitingForABusyPool() throws InterruptedException
+    {
+        //Given
+        final CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 3; i++)
+        {
+            executor.execute(() ->
+                             {
+                                 started.countDown();
+                                 awaitRelease();
+                             });
+        }
+
+        //When
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //Then
+        assertThat(counters.get("test.active"), is(2L));
+        assertThat(counters.get("test.queued"), is(1L));
+        assertThat(counters.get("test.saturation"), is(100L));
+        assertThat(counters.snapshot().get("test.queued"), is(1L));
+    }
+
+    @Test
+    public void shouldReportAnIdlePool()
+    {
+        assertThat(counters.get("test.active"), is(0L));
+        assertThat(counters.get("test.queued"), is(0L));
+        assertThat(counters.get("test.saturation"), is(0L));
+    }
+
+    private void awaitRelease()
+    {
+        try
+        {
+            release.await();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
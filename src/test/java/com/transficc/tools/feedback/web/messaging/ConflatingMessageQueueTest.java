@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.messaging;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.web.routes.websocket.FrameType;
+import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class ConflatingMessageQueueTest
+{
+    private final Counters counters = new Counters();
+    private final ConflatingMessageQueue queue = new ConflatingMessageQueue(4, ConflatingMessageQueue.WaitStrategy.BLOCKING, ConflatingMessageQueue.OverflowPolicy.BLOCK,
+                                                                            counters);
+
+    @Test
+    public void shouldOnlyKeepTheLatestWaitingFrameForAKeyInItsOriginalPlace()
+    {
+        //Given
+        final OutboundWebSocketFrame firstUpdate = frame("first");
+        final OutboundWebSocketFrame status = frame("status");
+        final OutboundWebSocketFrame latestUpdate = frame("latest");
+
+        //When
+        queue.offerLatest("job", firstUpdate);
+        queue.offer(status);
+        queue.offerLatest("job", latestUpdate);
+
+        //Then
+        assertThat(queue.size(), is(2));
+        assertThat(queue.poll(), is(latestUpdate));
+        assertThat(queue.poll(), is(status));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldQueueAFrameForAKeyWhoseLastFrameHasAlreadyBeenTaken() throws InterruptedException
+    {
+        //Given
+        final OutboundWebSocketFrame firstUpdate = frame("first");
+        final OutboundWebSocketFrame secondUpdate = frame("second");
+        queue.offerLatest("job", firstUpdate);
+
+        //When
+        final OutboundWebSocketFrame taken = queue.take();
+        queue.offerLatest("job", secondUpdate);
+
+        //Then
+        assertThat(taken, is(firstUpdate));
+        assertThat(queue.poll(), is(secondUpdate));
+    }
+
+    @Test
+    public void shouldNotPublishAWaitingFrameForAKeyWhichHasBeenDiscarded()
+    {
+        //Given
+        final OutboundWebSocketFrame update = frame("update");
+        final OutboundWebSocketFrame deleted = OutboundWebSocketFrame.jobDeleted("job");
+        final OutboundWebSocketFrame recreated = frame("recreated");
+        queue.offerLatest("job", update);
+
+        //When
+        queue.discard("job");
+        queue.offer(deleted);
+        queue.offerLatest("job", recreated);
+
+        //Then
+        assertThat(queue.poll(), is(deleted));
+        assertThat(queue.poll(), is(recreated));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldDeliverTheLatestFrameForEveryJobWhenFullOfDistinctJobs()
+    {
+        //Given
+        final ConflatingMessageQueue conflatingQueue = new ConflatingMessageQueue(4, ConflatingMessageQueue.WaitStrategy.BLOCKING,
+                                                                                  ConflatingMessageQueue.OverflowPolicy.CONFLATE, counters);
+        final List<OutboundWebSocketFrame> latestFrames = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            conflatingQueue.offerLatest("job" + i, frame("first" + i));
+        }
+
+        //When
+        for (int i = 0; i < 10; i++)
+        {
+            final OutboundWebSocketFrame latest = frame("latest" + i);
+            conflatingQueue.offerLatest("job" + i, latest);
+            latestFrames.add(latest);
+        }
+
+        //Then
+        final List<OutboundWebSocketFrame> delivered = new ArrayList<>();
+        OutboundWebSocketFrame frame;
+        while ((frame = conflatingQueue.poll()) != null)
+        {
+            delivered.add(frame);
+        }
+        assertThat(delivered, is(latestFrames));
+        assertThat(counters.get("feedback.publishing.dropped"), is(0L));
+    }
+
+    @Test
+    public void shouldDropAStatusFrameWhichALaterOneSupersedesWhenFull()
+    {
+        //Given
+        final ConflatingMessageQueue conflatingQueue = new ConflatingMessageQueue(4, ConflatingMessageQueue.WaitStrategy.BLOCKING,
+                                                                                  ConflatingMessageQueue.OverflowPolicy.CONFLATE, counters);
+        final OutboundWebSocketFrame first = frame("first");
+        final OutboundWebSocketFrame latestStatus = frame("latestStatus");
+        final OutboundWebSocketFrame second = frame("second");
+        conflatingQueue.offer(frame("status"));
+        conflatingQueue.offerLatest("first", first);
+        conflatingQueue.offer(latestStatus);
+        conflatingQueue.offerLatest("second", second);
+
+        //When
+        final OutboundWebSocketFrame third = frame("third");
+        conflatingQueue.offerLatest("third", third);
+
+        //Then
+        assertThat(conflatingQueue.capacity(), is(4));
+        assertThat(conflatingQueue.poll(), is(first));
+        assertThat(conflatingQueue.poll(), is(latestStatus));
+        assertThat(conflatingQueue.poll(), is(second));
+        assertThat(conflatingQueue.poll(), is(third));
+        assertThat(counters.get("feedback.publishing.dropped"), is(1L));
+        assertThat(counters.histogram("feedback.publishing.occupancy").percentile(1), is(4L));
+    }
+
+    @Test
+    public void shouldDropTheOldestFrameWhenFull()
+    {
+        //Given
+        final ConflatingMessageQueue droppingQueue = new ConflatingMessageQueue(2, ConflatingMessageQueue.WaitStrategy.BUSY_SPIN,
+                                                                                ConflatingMessageQueue.OverflowPolicy.DROP_OLDEST, counters);
+        final OutboundWebSocketFrame second = frame("second");
+        final OutboundWebSocketFrame third = frame("third");
+        droppingQueue.offer(frame("first"));
+        droppingQueue.offer(second);
+
+        //When
+        droppingQueue.offer(third);
+
+        //Then
+        assertThat(droppingQueue.poll(), is(second));
+        assertThat(droppingQueue.poll(), is(third));
+        assertThat(counters.get("feedback.publishing.dropped"), is(1L));
+    }
+
+    @Test
+    public void shouldReuseRoomLeftByDiscardedFramesBeforeApplyingTheOverflowPolicy()
+    {
+        //Given
+        final OutboundWebSocketFrame status = frame("status");
+        final OutboundWebSocketFrame last = frame("last");
+        queue.offer(status);
+        queue.offerLatest("a", frame("a"));
+        queue.offerLatest("b", frame("b"));
+        queue.offerLatest("c", frame("c"));
+        queue.discard("b");
+        queue.discard("a");
+
+        //When
+        queue.offerLatest("d", last);
+
+        //Then
+        assertThat(queue.size(), is(3));
+        assertThat(queue.poll(), is(status));
+        assertThat(queue.poll().getType(), is(FrameType.STATUS_UPDATE));
+        assertThat(queue.poll(), is(last));
+        assertThat(counters.get("feedback.publishing.dropped"), is(0L));
+    }
+
+    @Test
+    public void shouldConflateRatherThanBlockAProducerWhichMustNotWait()
+    {
+        //Given
+        final ConflatingMessageQueue eventLoopQueue = new ConflatingMessageQueue(2, ConflatingMessageQueue.WaitStrategy.BLOCKING,
+                                                                                 ConflatingMessageQueue.OverflowPolicy.BLOCK, () -> false, counters);
+        final OutboundWebSocketFrame first = frame("first");
+        final OutboundWebSocketFrame second = frame("second");
+        final OutboundWebSocketFrame third = frame("third");
+        eventLoopQueue.offerLatest("first", first);
+        eventLoopQueue.offerLatest("second", second);
+
+        //When
+        eventLoopQueue.offerLatest("third", third);
+
+        //Then
+        assertThat(eventLoopQueue.poll(), is(first));
+        assertThat(eventLoopQueue.poll(), is(second));
+        assertThat(eventLoopQueue.poll(), is(third));
+        assertThat(counters.get("feedback.publishing.dropped"), is(0L));
+    }
+
+    @Test
+    public void shouldKeepFindingTheWaitingFrameForEachKeyAsFramesComeAndGo()
+    {
+        //Given
+        final ConflatingMessageQueue largeQueue = new ConflatingMessageQueue(64, ConflatingMessageQueue.WaitStrategy.BLOCKING,
+                                                                             ConflatingMessageQueue.OverflowPolicy.CONFLATE, counters);
+        for (int i = 0; i < 1000; i++)
+        {
+            largeQueue.offerLatest("job" + (i % 50), frame("update" + i));
+            if (i % 3 == 0)
+            {
+                largeQueue.poll();
+            }
+            if (i % 7 == 0)
+            {
+                largeQueue.discard("job" + (i % 11));
+            }
+        }
+
+        final Set<OutboundWebSocketFrame> latestFrames = new HashSet<>();
+
+        //When
+        for (int i = 0; i < 50; i++)
+        {
+            final OutboundWebSocketFrame latest = frame("latest" + i);
+            latestFrames.add(latest);
+            largeQueue.offerLatest("job" + i, latest);
+        }
+
+        //Then
+        final Set<OutboundWebSocketFrame> polledFrames = new HashSet<>();
+        for (OutboundWebSocketFrame frame = largeQueue.poll(); frame != null; frame = largeQueue.poll())
+        {
+            polledFrames.add(frame);
+        }
+        assertThat(polledFrames, is(latestFrames));
+    }
+
+    private static OutboundWebSocketFrame frame(final String status)
+    {
+        return OutboundWebSocketFrame.statusUpdate(new PublishableStatus(status));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.messaging;
+
+import java.util.Arrays;
+
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.web.routes.websocket.FrameType;
+import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class JobUpdateSubscriberTest
+{
+    private final ConflatingMessageQueue queue = new ConflatingMessageQueue(16, ConflatingMessageQueue.WaitStrategy.BLOCKING, ConflatingMessageQueue.OverflowPolicy.BLOCK,
+                                                                            new Counters());
+    private final JobUpdateSubscriber subscriber = new JobUpdateSubscriber(queue, null, 3, 1000, () -> 0L);
+
+    @Test
+    public void shouldSendALoneMessageAsItIs()
+    {
+        //Given
+        final OutboundWebSocketFrame message = frame("lone");
+
+        //When
+        final OutboundWebSocketFrame sent = subscriber.batchWithWaitingMessages(message);
+
+        //Then
+        assertThat(sent, is(message));
+    }
+
+    @Test
+    public void shouldBatchWaitingMessagesInOrderUpToTheMaximumSize()
+    {
+        //Given
+        final OutboundWebSocketFrame first = frame("first");
+        final OutboundWebSocketFrame second = frame("second");
+        final OutboundWebSocketFrame third = frame("third");
+        final OutboundWebSocketFrame fourth = frame("fourth");
+        queue.offerLatest("second", second);
+        queue.offer(third);
+        queue.offer(fourth);
+
+        //When
+        final OutboundWebSocketFrame sent = subscriber.batchWithWaitingMessages(first);
+
+        //Then
+        assertThat(sent.getType(), is(FrameType.BATCH));
+        assertThat(sent.getValue(), is(Arrays.asList(first, second, third)));
+        assertThat(queue.poll(), is(fourth));
+    }
+
+    @Test
+    public void shouldStopBatchingOnceTheTimeLimitHasPassed()
+    {
+        //Given
+        final long[] now = {0};
+        final JobUpdateSubscriber slowSubscriber = new JobUpdateSubscriber(queue, null, 10, 5, () -> now[0] += 3);
+        final OutboundWebSocketFrame first = frame("first");
+        final OutboundWebSocketFrame second = frame("second");
+        final OutboundWebSocketFrame third = frame("third");
+        queue.offer(second);
+        queue.offer(third);
+
+        //When
+        final OutboundWebSocketFrame sent = slowSubscriber.batchWithWaitingMessages(first);
+
+        //Then
+        assertThat(sent.getValue(), is(Arrays.asList(first, second)));
+        assertThat(queue.poll(), is(third));
+    }
+
+    private static OutboundWebSocketFrame frame(final String status)
+    {
+        return OutboundWebSocketFrame.statusUpdate(new PublishableStatus(status));
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.transficc.portals.RouteHandlerFactory;
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.ci.AsyncContinuousIntegrationServer;
+import com.transficc.tools.feedback.ci.BuildNotificationService;
+import com.transficc.tools.feedback.ci.FeedbackJob;
+import com.transficc.tools.feedback.ci.JobMetadataCache;
+import com.transficc.tools.feedback.ci.JobNamespace;
+import com.transficc.tools.feedback.ci.PollScheduler;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.web.messaging.MessageBus;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.Json;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.handler.BodyHandler;
+
+public class BuildNotificationRouteTest
+{
+    private static final String JOB_NAME = "master-commit";
+    private static final String REVISION = "7b5b3f8e0c6a4d2b9a1e2f3c4d5e6f708192a3b4";
+    private static final long CLOCK_TIME = 1_000_000L;
+    private final MessageBus messageBus = Mockito.mock(MessageBus.class);
+    private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
+    private final FeedbackJob job = new FeedbackJob(true, 1, new Job(JOB_NAME, "url", JobStatus.SUCCESS, VersionControl.GIT));
+    private final JobMetadataCache jobMetadataCache = new JobMetadataCache(Mockito.mock(AsyncContinuousIntegrationServer.class), 60_000, () -> CLOCK_TIME);
+    private final Vertx vertx = Vertx.vertx();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Json.mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        final Map<String, BuildNotificationService> serverNameToNotificationService = new HashMap<>();
+        serverNameToNotificationService.put("", new BuildNotificationService(jobRepository, messageBus, new PollScheduler(), () -> CLOCK_TIME, new JobNamespace(""),
+                                                                     jobMetadataCache));
+        serverNameToNotificationService.put("london", new BuildNotificationService(jobRepository, messageBus, new PollScheduler(), () -> CLOCK_TIME, new JobNamespace("london"),
+                                                                           jobMetadataCache));
+        final Router router = Router.router(vertx);
+        router.route().handler(BodyHandler.create());
+        router.post("/notification").handler(RouteHandlerFactory.requestWithPayload(BuildNotificationRoute.BuildNotification.class,
+                                                                                    new BuildNotificationRoute(serverNameToNotificationService)));
+        final CompletableFuture<HttpServer> listening = new CompletableFuture<>();
+        vertx.createHttpServer().requestHandler(router::accept).listen(0, result ->
+        {
+            if (result.succeeded())
+            {
+                listening.complete(result.result());
+            }
+            else
+            {
+                listening.completeExceptionally(result.cause());
+            }
+        });
+        server = listening.get(5, TimeUnit.SECONDS);
+        jobRepository.add(job);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldMarkJobAsBuildingWhenABuildStarts() throws IOException
+    {
+        //When
+        final int responseCode = post("notifications/started.json");
+
+        //Then
+        assertThat(responseCode, is(200));
+        verify(messageBus).sendUpdate(job);
+        final PublishableJob publishable = job.createPublishable();
+        assertThat(publishable.getJobStatus(), is(JobStatus.BUILDING));
+        assertThat(publishable.getBuildNumber(), is(42));
+        assertThat(publishable.getRevision(), is("7b5b3f8"));
+        assertThat(publishable.isShouldHideProgressBar(), is(false));
+    }
+
+    @Test
+    public void shouldPublishTheOutcomeWhenABuildCompletes() throws IOException
+    {
+        //When
+        post("notifications/started.json");
+        final int responseCode = post("notifications/completed.json");
+
+        //Then
+        assertThat(responseCode, is(200));
+        verify(messageBus, times(2)).sendUpdate(job);
+        final PublishableJob publishable = job.createPublishable();
+        assertThat(publishable.getJobStatus(), is(JobStatus.ERROR));
+        assertThat(publishable.getBuildNumber(), is(42));
+        assertThat(publishable.isShouldHideProgressBar(), is(true));
+    }
+
+    @Test
+    public void shouldIgnoreAPollWhichRacedWithTheNotification() throws IOException
+    {
+        //Given
+        post("notifications/completed.json");
+
+        //When
+        final boolean updated = job.wasUpdated(new LatestBuildInformation(REVISION, JobStatus.BUILDING, 42, CLOCK_TIME, 50, new String[0], true, null, 0));
+
+        //Then
+        assertThat(updated, is(false));
+        assertThat(job.createPublishable().getJobStatus(), is(JobStatus.ERROR));
+    }
+
+    @Test
+    public void shouldRejectNotificationsForUnknownJobs() throws IOException
+    {
+        //Given
+        jobRepository.remove(JOB_NAME);
+
+        //When
+        final int responseCode = post("notifications/started.json");
+
+        //Then
+        assertThat(responseCode, is(404));
+        Mockito.verifyZeroInteractions(messageBus);
+    }
+
+    @Test
+    public void shouldApplyNotificationsFromANamedServerToItsOwnJobs() throws IOException
+    {
+        //Given
+        final FeedbackJob londonJob = new FeedbackJob(false, 1, new Job("london:" + JOB_NAME, "url", JobStatus.SUCCESS, VersionControl.GIT));
+        jobRepository.add(londonJob);
+
+        //When
+        final int responseCode = post("/notification?server=london", "notifications/started.json");
+
+        //Then
+        assertThat(responseCode, is(200));
+        verify(messageBus).sendUpdate(londonJob);
+        assertThat(londonJob.createPublishable().getJobStatus(), is(JobStatus.BUILDING));
+        assertThat(job.createPublishable().getJobStatus(), is(JobStatus.SUCCESS));
+    }
+
+    @Test
+    public void shouldApplyNotificationsForAJobInAFolderToThatJob() throws IOException
+    {
+        //Given
+        final FeedbackJob branchJob = new FeedbackJob(false, 1, new Job("team/app/main", "url", JobStatus.SUCCESS, VersionControl.GIT));
+        final FeedbackJob topLevelJob = new FeedbackJob(false, 1, new Job("main", "url", JobStatus.SUCCESS, VersionControl.GIT));
+        jobRepository.add(branchJob);
+        jobRepository.add(topLevelJob);
+
+        //When
+        final int responseCode = post("notifications/started-in-folder.json");
+
+        //Then
+        assertThat(responseCode, is(200));
+        verify(messageBus).sendUpdate(branchJob);
+        assertThat(branchJob.createPublishable().getJobStatus(), is(JobStatus.BUILDING));
+        assertThat(topLevelJob.createPublishable().getJobStatus(), is(JobStatus.SUCCESS));
+    }
+
+    @Test
+    public void shouldRejectNotificationsFromUnknownServers() throws IOException
+    {
+        //When
+        final int responseCode = post("/notification?server=paris", "notifications/started.json");
+
+        //Then
+        assertThat(responseCode, is(404));
+        Mockito.verifyZeroInteractions(messageBus);
+    }
+
+    private int post(final String payload) throws IOException
+    {
+        return post("/notification", payload);
+    }
+
+    private int post(final String path, final String payload) throws IOException
+    {
+        final HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + server.actualPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (final InputStream recordedPayload = getClass().getClassLoader().getResourceAsStream(payload);
+             final OutputStream body = connection.getOutputStream())
+        {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = recordedPayload.read(buffer)) != -1)
+            {
+                body.write(buffer, 0, read);
+            }
+        }
+        final int responseCode = connection.getResponseCode();
+        connection.disconnect();
+        return responseCode;
+    }
+}
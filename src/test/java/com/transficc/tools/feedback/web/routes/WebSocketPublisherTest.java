@@ -0,0 +1,411 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transficc.tools.feedback.JobRepository;
+import com.transficc.tools.feedback.ci.FeedbackJob;
+import com.transficc.tools.feedback.domain.Job;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.domain.LatestBuildInformation;
+import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.util.SafeSerialisation;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+import com.transficc.tools.feedback.web.messaging.PublishableStatus;
+import com.transficc.tools.feedback.web.routes.websocket.OutboundWebSocketFrame;
+import com.transficc.tools.feedback.web.routes.websocket.Session;
+import com.transficc.tools.feedback.web.routes.websocket.SessionRegistry;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrame;
+
+public class WebSocketPublisherTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper().setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+    private final SafeSerialisation safeSerialisation = new SafeSerialisation(objectMapper);
+    private final Counters counters = new Counters();
+    private final SessionRegistry sessionRegistry = new SessionRegistry(3, safeSerialisation, counters);
+    private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
+    private long currentTime;
+    private final WebSocketPublisher publisher = new WebSocketPublisher(sessionRegistry, Mockito.mock(EventBus.class), safeSerialisation, () -> currentTime,
+                                                                        jobRepository, 0, 30_000, 2, counters);
+
+    @Test
+    public void shouldWriteTheSameTextToEverySession()
+    {
+        //Given
+        final ServerWebSocket firstSocket = socket("first");
+        final ServerWebSocket secondSocket = socket("second");
+        connect(firstSocket);
+        connect(secondSocket);
+        final OutboundWebSocketFrame frame = OutboundWebSocketFrame.statusUpdate(new PublishableStatus("Release today"));
+
+        //When
+        publisher.onMessage(frame);
+
+        //Then
+        assertThat(writtenText(firstSocket), is(safeSerialisation.serisalise(frame.sequenced(1))));
+        assertThat(writtenText(secondSocket), is(safeSerialisation.serisalise(frame.sequenced(1))));
+        assertThat(sessionRegistry.get("first").getBytesSent(), is((long)safeSerialisation.serialiseToBytes(frame.sequenced(1)).length));
+    }
+
+    @Test
+    public void shouldCarryOnWritingToOtherSessionsWhenOneHasClosed()
+    {
+        //Given
+        final ServerWebSocket closedSocket = socket("closed");
+        final ServerWebSocket openSocket = socket("open");
+        given(closedSocket.writeFrame(any(WebSocketFrame.class))).willThrow(new IllegalStateException("WebSocket is closed"));
+        connect(closedSocket);
+        connect(openSocket);
+
+        //When
+        publisher.onMessage(OutboundWebSocketFrame.statusUpdate(new PublishableStatus("Release today")));
+
+        //Then
+        assertThat(writtenText(openSocket),
+                   is(safeSerialisation.serisalise(OutboundWebSocketFrame.statusUpdate(new PublishableStatus("Release today")).sequenced(1))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldOnlySendTheLatestStateOfEachJobOnceASessionWhichFellBehindCatchesUp()
+    {
+        //Given
+        final ServerWebSocket slowSocket = socket("slow");
+        given(slowSocket.writeQueueFull()).willReturn(true);
+        connect(slowSocket);
+        final ArgumentCaptor<Handler<Void>> drainHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(slowSocket).drainHandler(drainHandler.capture());
+        final OutboundWebSocketFrame tomBuilding = jobUpdate("Tom", JobStatus.BUILDING);
+        final OutboundWebSocketFrame chinarFailed = jobUpdate("Chinar", JobStatus.ERROR);
+        final OutboundWebSocketFrame tomPassed = jobUpdate("Tom", JobStatus.SUCCESS);
+        publisher.onMessage(tomBuilding);
+        publisher.onMessage(OutboundWebSocketFrame.batch(Arrays.asList(chinarFailed, tomPassed)));
+        final Session session = sessionRegistry.get("slow");
+        assertThat(session.getPendingWrites(), is(2));
+        assertThat(session.getFramesDropped(), is(1L));
+        assertThat(session.getTimesLagged(), is(1L));
+        verify(slowSocket, never()).writeFrame(any(WebSocketFrame.class));
+
+        //When
+        drainHandler.getValue().handle(null);
+
+        //Then
+        assertThat(writtenText(slowSocket),
+                   is(safeSerialisation.serisalise(OutboundWebSocketFrame.batch(Arrays.asList(OutboundWebSocketFrame.jobUpdate(job(chinarFailed), 1),
+                                                                                              OutboundWebSocketFrame.jobUpdate(job(tomPassed), 2)))
+                                                                         .sequenced(2))));
+        assertThat(session.getPendingWrites(), is(0));
+        assertThat(counters.get("feedback.sessions.dropped"), is(1L));
+    }
+
+    @Test
+    public void shouldDisconnectASessionWhichStaysBehind() throws IOException
+    {
+        //Given
+        final ServerWebSocket slowSocket = socket("slow");
+        given(slowSocket.writeQueueFull()).willReturn(true);
+        connect(slowSocket);
+        publisher.onMessage(jobUpdate("Tom", JobStatus.BUILDING));
+
+        //When
+        currentTime += 30_000;
+        publisher.onMessage(jobUpdate("Tom", JobStatus.SUCCESS));
+
+        //Then
+        final ArgumentCaptor<String> lastFrame = ArgumentCaptor.forClass(String.class);
+        verify(slowSocket).writeFinalTextFrame(lastFrame.capture());
+        assertThat(objectMapper.readTree(lastFrame.getValue()).get("type").asText(), is("SLOW_CONSUMER"));
+        verify(slowSocket).close();
+        assertThat(sessionRegistry.size(), is(0));
+        assertThat(counters.get("feedback.sessions.disconnected"), is(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotCloseASessionWhilstItIsCatchingUp() throws InterruptedException
+    {
+        //Given
+        final ServerWebSocket slowSocket = socket("slow");
+        given(slowSocket.writeQueueFull()).willReturn(true);
+        connect(slowSocket);
+        final ArgumentCaptor<Handler<Void>> drainHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(slowSocket).drainHandler(drainHandler.capture());
+        publisher.onMessage(jobUpdate("Tom", JobStatus.BUILDING));
+        final CountDownLatch catchingUp = new CountDownLatch(1);
+        final CountDownLatch caughtUp = new CountDownLatch(1);
+        willAnswer(invocation ->
+                   {
+                       catchingUp.countDown();
+                       caughtUp.await(5, TimeUnit.SECONDS);
+                       return slowSocket;
+                   }).given(slowSocket).writeFrame(any(WebSocketFrame.class));
+        final Thread eventLoop = new Thread(() -> drainHandler.getValue().handle(null));
+        eventLoop.start();
+        catchingUp.await(5, TimeUnit.SECONDS);
+
+        //When
+        final Thread publishing = new Thread(() -> sessionRegistry.get("slow").close("Too far behind"));
+        publishing.start();
+        publishing.join(200);
+
+        //Then
+        verify(slowSocket, never()).writeFinalTextFrame(anyString());
+        caughtUp.countDown();
+        eventLoop.join(5_000);
+        publishing.join(5_000);
+        verify(slowSocket).writeFinalTextFrame(anyString());
+        verify(slowSocket).close();
+    }
+
+    @Test
+    public void shouldDisconnectASessionWithTooManyFramesHeldBack()
+    {
+        //Given
+        final ServerWebSocket slowSocket = socket("slow");
+        given(slowSocket.writeQueueFull()).willReturn(true);
+        connect(slowSocket);
+
+        //When
+        publisher.onMessage(OutboundWebSocketFrame.batch(Arrays.asList(jobUpdate("a", JobStatus.SUCCESS), jobUpdate("b", JobStatus.SUCCESS),
+                                                                       jobUpdate("c", JobStatus.SUCCESS), jobUpdate("d", JobStatus.SUCCESS))));
+
+        //Then
+        verify(slowSocket).close();
+        assertThat(sessionRegistry.size(), is(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldForgetASessionOnceItHasClosed()
+    {
+        //Given
+        final ServerWebSocket socket = socket("leaving");
+        connect(socket);
+        final ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+        verify(socket).closeHandler(closeHandler.capture());
+
+        //When
+        closeHandler.getValue().handle(null);
+
+        //Then
+        assertThat(sessionRegistry.size(), is(0));
+    }
+
+    @Test
+    public void shouldNotSendUpdatesToASessionUntilItHasSubscribed()
+    {
+        //Given
+        final ServerWebSocket socket = socket("connecting");
+        publisher.handle(socket);
+
+        //When
+        publisher.onMessage(jobUpdate("Tom", JobStatus.BUILDING));
+
+        //Then
+        verify(socket, never()).writeFrame(any(WebSocketFrame.class));
+    }
+
+    @Test
+    public void shouldReplayTheUpdatesMissedByASessionWhichResumes() throws IOException
+    {
+        //Given
+        final OutboundWebSocketFrame tomBuilding = jobUpdate("Tom", JobStatus.BUILDING);
+        final OutboundWebSocketFrame tomPassed = jobUpdate("Tom", JobStatus.SUCCESS);
+        publisher.onMessage(jobUpdate("Chinar", JobStatus.ERROR));
+        publisher.onMessage(tomBuilding);
+        publisher.onMessage(tomPassed);
+        final ServerWebSocket socket = socket("returning");
+        publisher.handle(socket);
+
+        //When
+        publisher.resume(sessionRegistry.get("returning"), 0, 1);
+
+        //Then
+        final ArgumentCaptor<WebSocketFrame> frames = ArgumentCaptor.forClass(WebSocketFrame.class);
+        verify(socket, Mockito.times(2)).writeFrame(frames.capture());
+        assertThat(text(frames.getAllValues().get(0)), is(safeSerialisation.serisalise(OutboundWebSocketFrame.jobUpdate(job(tomBuilding), 1).sequenced(2))));
+        final JsonNode patch = objectMapper.readTree(text(frames.getAllValues().get(1)));
+        assertThat(patch.get("type").asText(), is("JOB_PATCH"));
+        assertThat(patch.get("sequence").asLong(), is(3L));
+        assertThat(patch.get("version").asLong(), is(2L));
+        assertThat(patch.get("value").get("changes").get("jobStatus").asText(), is("SUCCESS"));
+        assertThat(sessionRegistry.get("returning").isSubscribed(), is(true));
+        assertThat(counters.get("feedback.sessions.resumed"), is(1L));
+    }
+
+    @Test
+    public void shouldSendASnapshotToASessionWhichMissedMoreThanCanBeReplayed()
+    {
+        //Given
+        publisher.onMessage(jobUpdate("Chinar", JobStatus.ERROR));
+        publisher.onMessage(jobUpdate("Tom", JobStatus.BUILDING));
+        publisher.onMessage(jobUpdate("Tom", JobStatus.SUCCESS));
+        final ServerWebSocket socket = socket("returning");
+        publisher.handle(socket);
+
+        //When
+        publisher.resume(sessionRegistry.get("returning"), 0, 0);
+
+        //Then
+        assertThat(writtenText(socket),
+                   is(safeSerialisation.serisalise(OutboundWebSocketFrame.batch(Collections.emptyList()).sequenced(3))));
+        assertThat(counters.get("feedback.sessions.snapshots"), is(1L));
+    }
+
+    @Test
+    public void shouldSendASnapshotToASessionFromBeforeTheServerRestarted()
+    {
+        //Given
+        publisher.onMessage(jobUpdate("Tom", JobStatus.BUILDING));
+        final ServerWebSocket socket = socket("returning");
+        publisher.handle(socket);
+
+        //When
+        publisher.resume(sessionRegistry.get("returning"), 12345, 1);
+
+        //Then
+        assertThat(writtenText(socket),
+                   is(safeSerialisation.serisalise(OutboundWebSocketFrame.batch(Collections.emptyList()).sequenced(1))));
+        assertThat(sessionRegistry.get("returning").isSubscribed(), is(true));
+    }
+
+    @Test
+    public void shouldSendEveryJobInPriorityOrderInASnapshot()
+    {
+        //Given
+        final FeedbackJob job1 = new FeedbackJob(false, 1, new Job("blah", "http://www.google.com", JobStatus.DISABLED, VersionControl.GIT));
+        final FeedbackJob job2 = new FeedbackJob(false, 2, new Job("Judd", "http://www.google.com", JobStatus.SUCCESS, VersionControl.GIT));
+        jobRepository.add(job1);
+        jobRepository.add(job2);
+        final ServerWebSocket socket = socket("new");
+        publisher.handle(socket);
+
+        //When
+        publisher.snapshot(sessionRegistry.get("new"));
+
+        //Then
+        assertThat(writtenText(socket),
+                   is(safeSerialisation.serisalise(OutboundWebSocketFrame.batch(Arrays.asList(OutboundWebSocketFrame.jobUpdate(job2.createPublishable()),
+                                                                                              OutboundWebSocketFrame.jobUpdate(job1.createPublishable()))))));
+    }
+
+    @Test
+    public void shouldResendTheWholeOfAJobAsItWasLastPublished()
+    {
+        //Given
+        final OutboundWebSocketFrame tomPassed = jobUpdate("Tom", JobStatus.SUCCESS);
+        publisher.onMessage(jobUpdate("Tom", JobStatus.BUILDING));
+        publisher.onMessage(tomPassed);
+        final ServerWebSocket socket = socket("patchless");
+        connect(socket);
+
+        //When
+        publisher.resend(sessionRegistry.get("patchless"), "Tom");
+
+        //Then
+        assertThat(writtenText(socket), is(safeSerialisation.serisalise(OutboundWebSocketFrame.jobUpdate(job(tomPassed), 2))));
+    }
+
+    @Test
+    public void shouldGiveEachJobForThePageAsItWasLastPublishedWithItsVersion()
+    {
+        //Given
+        final FeedbackJob tom = new FeedbackJob(false, 1, new Job("Tom", "http://jenkins/job/Tom", JobStatus.BUILDING, VersionControl.GIT));
+        final FeedbackJob unpublished = new FeedbackJob(false, 1, new Job("Unpublished", "http://jenkins/job/Unpublished", JobStatus.SUCCESS, VersionControl.GIT));
+        jobRepository.add(tom);
+        jobRepository.add(unpublished);
+        final PublishableJob published = tom.createPublishable();
+        publisher.onMessage(OutboundWebSocketFrame.jobUpdate(published));
+        tom.wasUpdated(new LatestBuildInformation("abc", JobStatus.SUCCESS, 2, 5L, 100, new String[0], false, null, 10));
+
+        //When
+        final PublishedJobs publishedJobs = publisher.publishedJobs();
+
+        //Then
+        assertThat(publishedJobs.getSequence(), is(1L));
+        final PublishedJobs.PublishedJob publishedTom = publishedJobs.getJobs().stream().filter(job -> job.getJob().getName().equals("Tom")).findFirst().get();
+        assertThat(publishedTom.getJob(), is(published));
+        assertThat(publishedTom.getVersion(), is(1L));
+        assertThat(publishedTom.getJson(), is(safeSerialisation.serisalise(published)));
+        final PublishedJobs.PublishedJob publishedUnpublished =
+                publishedJobs.getJobs().stream().filter(job -> job.getJob().getName().equals("Unpublished")).findFirst().get();
+        assertThat(publishedUnpublished.getVersion(), is(0L));
+    }
+
+    private void connect(final ServerWebSocket socket)
+    {
+        publisher.handle(socket);
+        publisher.resume(sessionRegistry.get(socket.textHandlerID()), 0, publisher.publishedJobs().getSequence());
+    }
+
+    private static OutboundWebSocketFrame jobUpdate(final String name, final JobStatus jobStatus)
+    {
+        return OutboundWebSocketFrame.jobUpdate(new FeedbackJob(false, 1, new Job(name, "http://jenkins/job/" + name, jobStatus, VersionControl.GIT)).createPublishable());
+    }
+
+    private static PublishableJob job(final OutboundWebSocketFrame jobUpdate)
+    {
+        return (PublishableJob)jobUpdate.getValue();
+    }
+
+    private static ServerWebSocket socket(final String id)
+    {
+        final ServerWebSocket socket = Mockito.mock(ServerWebSocket.class);
+        given(socket.textHandlerID()).willReturn(id);
+        return socket;
+    }
+
+    private static String writtenText(final ServerWebSocket socket)
+    {
+        final ArgumentCaptor<WebSocketFrame> frame = ArgumentCaptor.forClass(WebSocketFrame.class);
+        verify(socket).writeFrame(frame.capture());
+        final List<WebSocketFrame> frames = frame.getAllValues();
+        assertThat(frames.size(), is(1));
+        assertThat(frames.get(0).isText(), is(true));
+        return frames.get(0).textData();
+    }
+
+    private static String text(final WebSocketFrame frame)
+    {
+        return frame.textData();
+    }
+}
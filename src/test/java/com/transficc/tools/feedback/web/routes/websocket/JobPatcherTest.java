@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 TransFICC Ltd.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work
+ * for additional information regarding copyright ownership.  The ASF licenses this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.transficc.tools.feedback.web.routes.websocket;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.transficc.tools.feedback.domain.JobStatus;
+import com.transficc.tools.feedback.util.Counters;
+import com.transficc.tools.feedback.util.SafeSerialisation;
+import com.transficc.tools.feedback.web.messaging.JobPatch;
+import com.transficc.tools.feedback.web.messaging.PublishableJob;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class JobPatcherTest
+{
+    private static final String[] COMMENTS = {"Fixed the build", "Broke the build", "Fixed the build again"};
+    private final ObjectMapper objectMapper = new ObjectMapper().setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+    private final SafeSerialisation safeSerialisation = new SafeSerialisation(objectMapper);
+    private final Counters counters = new Counters();
+    private final JobPatcher jobPatcher = new JobPatcher(safeSerialisation, counters);
+
+    @Test
+    public void shouldPublishTheWholeJobTheFirstTime()
+    {
+        //Given
+        final PublishableJob job = job("Tom", 10);
+
+        //When
+        final OutboundWebSocketFrame frame = jobPatcher.patch(OutboundWebSocketFrame.jobUpdate(job));
+
+        //Then
+        assertThat(frame.getType(), is(FrameType.JOB_UPDATE));
+        assertThat(frame.getValue(), sameInstance(job));
+        assertThat(frame.getVersion(), is(1L));
+    }
+
+    @Test
+    public void shouldOnlyPublishTheFieldsWhichChanged()
+    {
+        //Given
+        jobPatcher.patch(OutboundWebSocketFrame.jobUpdate(job("Tom", 10)));
+        final PublishableJob progressed = job("Tom", 11);
+
+        //When
+        final OutboundWebSocketFrame frame = jobPatcher.patch(OutboundWebSocketFrame.jobUpdate(progressed));
+
+        //Then
+        assertThat(frame.getType(), is(FrameType.JOB_PATCH));
+        assertThat(frame.getVersion(), is(2L));
+        final JobPatch patch = (JobPatch)frame.getValue();
+        assertThat(patch.getName(), is("Tom"));
+        assertThat(patch.getChanges().size(), is(1));
+        assertThat(patch.getChanges().get("jobCompletionPercentage").asDouble(), is(11.0));
+        assertThat(counters.get("feedback.publishing.patches"), is(1L));
+        final JsonNode serialised = safeSerialisation.toTree(frame);
+        assertThat(serialised.get("value").has("job"), is(false));
+        assertThat(frame.withoutPatch().getValue(), sameInstance(progressed));
+        assertThat(frame.withoutPatch().getVersion(), is(2L));
+    }
+
+    @Test
+    public void shouldPatchEachJobInABatch()
+    {
+        //Given
+        jobPatcher.patch(OutboundWebSocketFrame.jobUpdate(job("Tom", 10)));
+
+        //When
+        final OutboundWebSocketFrame frame = jobPatcher.patch(OutboundWebSocketFrame.batch(Arrays.asList(OutboundWebSocketFrame.jobUpdate(job("Tom", 20)),
+                                                                                                            OutboundWebSocketFrame.jobUpdate(job("Chinar", 5)))));
+
+        //Then
+        @SuppressWarnings("unchecked")
+        final List<OutboundWebSocketFrame> frames = (List<OutboundWebSocketFrame>)frame.getValue();
+        assertThat(frames.get(0).getType(), is(FrameType.JOB_PATCH));
+        assertThat(frames.get(1).getType(), is(FrameType.JOB_UPDATE));
+    }
+
+    @Test
+    public void shouldPublishTheWholeJobAgainOnceItHasBeenDeleted()
+    {
+        //Given
+        jobPatcher.patch(OutboundWebSocketFrame.jobUpdate(job("Tom", 10)));
+        jobPatcher.patch(OutboundWebSocketFrame.jobDeleted("Tom"));
+
+        //When
+        final OutboundWebSocketFrame frame = jobPatcher.patch(OutboundWebSocketFrame.jobUpdate(job("Tom", 20)));
+
+        //Then
+        assertThat(frame.getType(), is(FrameType.JOB_UPDATE));
+        assertThat(frame.getVersion(), is(1L));
+        assertThat(jobPatcher.latest("Tom").get().getValue(), is(job("Tom", 20)));
+    }
+
+    private static PublishableJob job(final String name, final double jobCompletionPercentage)
+    {
+        return new PublishableJob(name, "http://jenkins/job/" + name, 0, "abc123", JobStatus.BUILDING, JobStatus.SUCCESS, 7, 1000L, jobCompletionPercentage,
+                                  COMMENTS, true, null, false, 0, 0);
+    }
+}
@@ -12,28 +12,25 @@
  */
 package com.transficc.tools.feedback.web.routes.websocket;
 
-import java.util.Collections;
-
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.transficc.tools.feedback.JobRepository;
-import com.transficc.tools.feedback.ci.FeedbackJob;
-import com.transficc.tools.feedback.domain.Job;
-import com.transficc.tools.feedback.domain.JobStatus;
-import com.transficc.tools.feedback.domain.VersionControl;
+import com.transficc.tools.feedback.util.Counters;
 import com.transficc.tools.feedback.util.SafeSerialisation;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
 
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.http.ServerWebSocket;
 import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
 
 public class WebSocketFrameHandlerTest
@@ -44,13 +41,19 @@ public class WebSocketFrameHandlerTest
     private final EventBus eventBus = Mockito.mock(EventBus.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final SafeSerialisation safeSerialisation = new SafeSerialisation(objectMapper);
-    private final JobRepository jobRepository = new JobRepository(Collections.emptyMap());
-    private final WebSocketFrameHandler handler = new WebSocketFrameHandler(SESSION_ID, eventBus, safeSerialisation, () -> CLOCK_TIME, jobRepository, START_UP_TIME);
+    private final UpdateSubscriptions updateSubscriptions = Mockito.mock(UpdateSubscriptions.class);
+    private final ServerWebSocket socket = Mockito.mock(ServerWebSocket.class);
+    private final SessionRegistry sessionRegistry = new SessionRegistry(100, safeSerialisation, new Counters());
+    private Session session;
+    private WebSocketFrameHandler handler;
 
     @Before
     public void setUp()
     {
         objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        given(socket.textHandlerID()).willReturn(SESSION_ID);
+        session = sessionRegistry.register(socket, 0);
+        handler = new WebSocketFrameHandler(session, eventBus, safeSerialisation, () -> CLOCK_TIME, updateSubscriptions, START_UP_TIME);
     }
 
     @Test
@@ -64,25 +67,59 @@ public class WebSocketFrameHandlerTest
 
         //then
         verify(eventBus).send(SESSION_ID, safeSerialisation.serisalise(OutboundWebSocketFrame.heartbeat(new HeartbeatMessage(CLOCK_TIME, START_UP_TIME))));
+        assertThat(session.getLastHeartbeat(), is((long)CLOCK_TIME));
     }
 
     @Test
-    public void shouldSendASnapshotForAllJobsWhenReceivingASnapshotRequest()
+    public void shouldSubscribeWithASnapshotWhenReceivingASnapshotRequest()
     {
         //given
-        final FeedbackJob job1 = new FeedbackJob(false, 1, new Job("blah", "http://www.google.com", JobStatus.DISABLED, VersionControl.GIT));
-        final FeedbackJob job2 = new FeedbackJob(false, 2, new Job("Judd", "http://www.google.com", JobStatus.SUCCESS, VersionControl.GIT));
-        jobRepository.add(job1);
-        jobRepository.add(job2);
         final WebSocketFrameImpl frame = new WebSocketFrameImpl("snapshot");
 
         //when
         handler.handle(frame);
 
         //then
-        final InOrder inOrder = Mockito.inOrder(eventBus);
-        inOrder.verify(eventBus).send(SESSION_ID, safeSerialisation.serisalise(OutboundWebSocketFrame.jobUpdate(job2.createPublishable())));
-        inOrder.verify(eventBus).send(SESSION_ID, safeSerialisation.serisalise(OutboundWebSocketFrame.jobUpdate(job1.createPublishable())));
+        verify(updateSubscriptions).snapshot(session);
+    }
+
+    @Test
+    public void shouldResumeFromTheLastUpdateReceivedWhenReceivingAResumeRequest()
+    {
+        //given
+        final WebSocketFrameImpl frame = new WebSocketFrameImpl("resume " + START_UP_TIME + " 42");
+
+        //when
+        handler.handle(frame);
+
+        //then
+        verify(updateSubscriptions).resume(session, START_UP_TIME, 42);
+    }
+
+    @Test
+    public void shouldSubscribeWithASnapshotWhenAResumeRequestCannotBeRead()
+    {
+        //given
+        final WebSocketFrameImpl frame = new WebSocketFrameImpl("resume undefined");
+
+        //when
+        handler.handle(frame);
+
+        //then
+        verify(updateSubscriptions).snapshot(session);
+    }
+
+    @Test
+    public void shouldResendAJobWhenReceivingAJobRequest()
+    {
+        //given
+        final WebSocketFrameImpl frame = new WebSocketFrameImpl("job Judd");
+
+        //when
+        handler.handle(frame);
+
+        //then
+        verify(updateSubscriptions).resend(session, "Judd");
     }
 
     @Test
@@ -93,6 +130,6 @@ public class WebSocketFrameHandlerTest
         //when
         handler.handle(frame);
 
-        verifyZeroInteractions(eventBus);
+        verifyZeroInteractions(eventBus, updateSubscriptions);
     }
 }
\ No newline at end of file